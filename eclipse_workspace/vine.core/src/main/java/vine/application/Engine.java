@@ -5,10 +5,15 @@ import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import vine.device.input.Input;
+import vine.game.Transform;
 import vine.game.World;
 import vine.graphics.GraphicsProvider;
 import vine.graphics.RenderStack;
+import vine.physics.PhysicsEngine;
 import vine.util.Log;
+import vine.util.job.FrameGraph;
+import vine.util.job.JobSystem;
+import vine.util.time.FixedTimestep;
 import vine.util.time.Stopwatch;
 import vine.util.time.TimerManager;
 import vine.window.Window;
@@ -19,19 +24,47 @@ import vine.window.Window;
  */
 public class Engine implements EngineLifecycle
 {
-    private static final long  MAX_UPDATE_DURATION  = 16L * (long) 1e6;
-    private static final long  MAX_PHYSICS_DURATION = (long) (1000f / 3000f * 1e6);
-    private static final long  MAX_FRAME_DURATION   = (long) (1000f / 3000f * 1e6);
+    /**
+     * Default number of fixed simulation steps per second.
+     */
+    public static final int    DEFAULT_UPDATE_RATE      = 60;
+    /**
+     * Default maximum number of rendered frames per second.
+     */
+    public static final int    DEFAULT_FRAME_RATE_LIMIT = 144;
+    /**
+     * Steps that exceed this number in one frame are dropped.
+     */
+    private static final int   MAX_STEPS_PER_FRAME      = 5;
+    private static final long  MAX_UPDATE_DURATION      = 16L * (long) 1e6;
+
+    /**
+     * Names of the stages of the frame graph.
+     */
+    public static final String TIMER_STAGE              = "timers";
+    public static final String WORLD_STAGE              = "world";
+    public static final String INTEGRATION_STAGE        = "physics-integration";
+    public static final String BROADPHASE_STAGE         = "physics-broadphase";
+    public static final String NARROWPHASE_STAGE        = "physics-narrowphase";
 
     private final World        world;
     private final Input        input;
 
-    private volatile boolean   running              = true;
+    private volatile boolean   running                  = true;
     private volatile boolean   idle;
 
+    private boolean            fixedTimestep            = true;
+    private int                updateRate               = Engine.DEFAULT_UPDATE_RATE;
+    private long               frameDuration            = Engine.rateToDuration(Engine.DEFAULT_FRAME_RATE_LIMIT);
+    private FixedTimestep      timestep;
+    private JobSystem          jobs;
+    private FrameGraph         frameGraph;
+    private long               stepLimit;
+
     private final RenderStack  renderStack;
     private final List<Thread> workThreads          = new ArrayList<>(2);
     private final Window       window;
+    private final boolean      headless;
 
     /**
      * @param application
@@ -46,19 +79,112 @@ public class Engine implements EngineLifecycle
         this.input = input;
         this.world = world;
         this.renderStack = renderStack;
+        headless = renderStack == null;
         PerformanceMonitor.logGargabeCollector();
     }
 
+    /**
+     * Creates an engine, that runs headless. The world is simulated as fast
+     * as possible on the thread, that starts the engine, without rendering
+     * and input.
+     *
+     * @param world
+     *            The world, that is simulated
+     */
+    public Engine(final World world)
+    {
+        this(null, null, world, null);
+    }
+
+    /**
+     * @return True, if the engine runs without window, input and rendering.
+     */
+    public boolean isHeadless()
+    {
+        return headless;
+    }
+
+    /**
+     * @return The window or null, if the engine runs headless.
+     */
     public Window getWindow()
     {
         return window;
     }
 
+    /**
+     * @return The input or null, if the engine runs headless.
+     */
     public Input getInput()
     {
         return input;
     }
 
+    /**
+     * @return The stages, that are executed every simulation step. Available
+     *         after the engine is created. Subsystems can add their own
+     *         stages.
+     */
+    public FrameGraph getFrameGraph()
+    {
+        return frameGraph;
+    }
+
+    /**
+     * Has to be set before the engine is created.
+     *
+     * @param fixedTimestep
+     *            If true, logic and physics are simulated in steps of
+     *            constant duration and rendering interpolates between the
+     *            last two steps. Otherwise every thread passes the measured
+     *            time since its last tick.
+     */
+    public final synchronized void setFixedTimestep(final boolean fixedTimestep)
+    {
+        this.fixedTimestep = fixedTimestep;
+    }
+
+    /**
+     * Has to be set before the engine is created.
+     *
+     * @param updateRate
+     *            The number of fixed simulation steps per second.
+     */
+    public final synchronized void setUpdateRate(final int updateRate)
+    {
+        if (updateRate > 0)
+        {
+            this.updateRate = updateRate;
+        }
+    }
+
+    /**
+     * Only used in headless mode.
+     *
+     * @param stepLimit
+     *            The number of simulation steps, after which the engine
+     *            stops. Zero or less simulates until the engine is stopped.
+     */
+    public final synchronized void setStepLimit(final long stepLimit)
+    {
+        this.stepLimit = stepLimit;
+    }
+
+    /**
+     * @param frameRateLimit
+     *            The maximum number of frames rendered per second. Zero or
+     *            less disables the limit.
+     */
+    public final synchronized void setFrameRateLimit(final int frameRateLimit)
+    {
+        frameDuration = Engine.rateToDuration(frameRateLimit);
+    }
+
+    private static long rateToDuration(final int rate)
+    {
+        return rate <= 0 ? 0 : (long) (1e9 / rate);
+    }
+
     @Override
     public final synchronized void stop()
     {
@@ -80,6 +206,11 @@ public class Engine implements EngineLifecycle
     @Override
     public final synchronized void start()
     {
+        if (headless)
+        {
+            runHeadless();
+            return;
+        }
         workThreads.forEach(thread -> thread.start());
         while (running)
         {
@@ -96,17 +227,44 @@ public class Engine implements EngineLifecycle
     public synchronized void create()
     {
         world.changeLevel("default-level");
-        GraphicsProvider.getGraphics().makeContext(0L);
-        if (RuntimeInfo.getProcessorCoreCount() > 2)
+        if (!headless)
+        {
+            GraphicsProvider.getGraphics().makeContext(0L);
+        }
+        if (fixedTimestep)
+        {
+            timestep = new FixedTimestep(1000f / updateRate, Engine.MAX_STEPS_PER_FRAME);
+            world.setTimestep(timestep);
+        }
+        final int cores = RuntimeInfo.getProcessorCoreCount();
+        // The render thread keeps one core for itself, the simulation thread
+        // waits while the workers execute the frame graph.
+        jobs = new JobSystem(headless ? cores : cores > 2 ? cores - 1 : 1);
+        world.setJobSystem(jobs);
+        frameGraph = createFrameGraph();
+        if (headless)
         {
-            workThreads.add(createLogicThread());
+            return;
+        }
+        if (cores > 2)
+        {
+            workThreads.add(createSimulationThread());
             workThreads.add(createRenderThread());
-            workThreads.add(createPhysicThread());
         } else
         {
             workThreads.add(createSingleThreadExecution());
         }
+    }
 
+    private final FrameGraph createFrameGraph()
+    {
+        final PhysicsEngine physics = world.getPhysics();
+        return new FrameGraph(jobs)
+                .addStage(Engine.TIMER_STAGE, delta -> TimerManager.get().tick(delta))
+                .addStage(Engine.WORLD_STAGE, world::update, Engine.TIMER_STAGE)
+                .addStage(Engine.INTEGRATION_STAGE, physics::integrate, Engine.WORLD_STAGE)
+                .addStage(Engine.BROADPHASE_STAGE, delta -> physics.detectCollisions(), Engine.INTEGRATION_STAGE)
+                .addStage(Engine.NARROWPHASE_STAGE, physics::resolveCollisions, Engine.BROADPHASE_STAGE);
     }
 
     @Override
@@ -123,6 +281,10 @@ public class Engine implements EngineLifecycle
                 Log.exception("Interrupted worker thread by joining them at start end", e);
             }
         });
+        if (jobs != null)
+        {
+            jobs.shutdown();
+        }
     }
 
     private final static void waitTick(final long sleepTime)
@@ -136,7 +298,33 @@ public class Engine implements EngineLifecycle
         }
     }
 
-    private final Thread createLogicThread()
+    /**
+     * Simulates all steps, that are due according to the fixed timestep, and
+     * hands the resulting frame to the render thread.
+     *
+     * @param delta
+     *            The time in milliseconds that passed since the last call.
+     */
+    private final void simulateFixedSteps(final float delta)
+    {
+        final int steps = timestep.advance(delta);
+        final float stepDuration = timestep.getStepDuration();
+        for (int i = 0; i < steps; i++)
+        {
+            Transform.beginSimulationStep();
+            frameGraph.execute(stepDuration);
+        }
+        if (steps > 0)
+        {
+            world.publishFrame();
+        }
+    }
+
+    /**
+     * Drives the frame graph. Logic and physics are executed as stages of the
+     * graph on the job system, so they scale with the number of cores.
+     */
+    private final Thread createSimulationThread()
     {
         return new Thread(() ->
         {
@@ -144,33 +332,58 @@ public class Engine implements EngineLifecycle
             final Stopwatch stopwatch = new Stopwatch(true);
             while (running)
             {
-                if (!idle)
+                final float delta = stopwatch.stop() / 1000000f;
+                if (fixedTimestep)
                 {
-                    final float delta = stopwatch.stop() / 1000000f;
-                    TimerManager.get().tick(delta);
-                    world.update(delta);
+                    if (!idle)
+                    {
+                        simulateFixedSteps(delta);
+                    }
+                    Engine.waitTick(timestep.getTimeUntilNextStep() - stopwatch.layover());
+                } else
+                {
+                    if (!idle)
+                    {
+                        frameGraph.execute(delta);
+                        world.publishFrame();
+                    }
+                    Engine.waitTick(Engine.MAX_UPDATE_DURATION - stopwatch.layover());
                 }
-                Engine.waitTick(Engine.MAX_UPDATE_DURATION - stopwatch.layover());
             }
         });
     }
 
-    private final Thread createPhysicThread()
+    /**
+     * Simulates the world on the calling thread without waiting between the
+     * steps. Fixed steps are simulated back to back, so the simulated time
+     * passes faster than real time.
+     */
+    private final void runHeadless()
     {
-        return new Thread(() ->
+        Log.lifecycle("Simulating headless");
+        final Stopwatch stopwatch = new Stopwatch(true);
+        final Stopwatch total = new Stopwatch(true);
+        long steps = 0;
+        while (running && (stepLimit <= 0 || steps < stepLimit))
         {
-            Thread.currentThread().setName(RuntimeInfo.PHYSIC_THREAD_NAME);
-            final Stopwatch stopwatch = new Stopwatch(true);
-            while (running)
+            final float delta = stopwatch.stop() / 1000000f;
+            if (idle)
             {
-                if (!idle)
-                {
-                    final float delta = stopwatch.stop() / 1000000f;
-                    world.simulatePhysics(delta);
-                }
-                Engine.waitTick(Engine.MAX_PHYSICS_DURATION - stopwatch.layover());
+                Engine.waitTick(Engine.MAX_UPDATE_DURATION);
+                continue;
             }
-        });
+            if (fixedTimestep)
+            {
+                Transform.beginSimulationStep();
+                frameGraph.execute(timestep.getStepDuration());
+            } else
+            {
+                frameGraph.execute(delta);
+            }
+            steps++;
+        }
+        final float seconds = total.layover() / 1e9f;
+        Log.lifecycle("Simulated " + steps + " steps in " + seconds + " seconds");
     }
 
     private final Thread createRenderThread()
@@ -188,8 +401,7 @@ public class Engine implements EngineLifecycle
                 {
                     renderStack.render();
                 }
-                // Engine.waitTick(Engine.MAX_FRAME_DURATION -
-                // stopwatch.layover());
+                Engine.waitTick(frameDuration - stopwatch.layover());
                 PerformanceMonitor.endFrame();
             }
         });
@@ -205,14 +417,26 @@ public class Engine implements EngineLifecycle
             while (running)
             {
                 PerformanceMonitor.startFrame();
+                final long delta = stopwatch.stop();
                 if (!idle)
                 {
-                    final long delta = stopwatch.stop();
-                    TimerManager.get().tick(delta / (float) 1e6);
-                    world.update(delta / (float) 1e6);
+                    if (fixedTimestep)
+                    {
+                        simulateFixedSteps(delta / (float) 1e6);
+                    } else
+                    {
+                        frameGraph.execute(delta / (float) 1e6);
+                        world.publishFrame();
+                    }
                     renderStack.render();
                 }
-                Engine.waitTick(Engine.MAX_UPDATE_DURATION - stopwatch.layover());
+                if (fixedTimestep)
+                {
+                    Engine.waitTick(Math.min(frameDuration, timestep.getTimeUntilNextStep()) - stopwatch.layover());
+                } else
+                {
+                    Engine.waitTick(Engine.MAX_UPDATE_DURATION - stopwatch.layover());
+                }
                 PerformanceMonitor.endFrame();
             }
         });
@@ -0,0 +1,118 @@
+package vine.application;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+import vine.util.Log;
+import vine.util.settings.Configurable;
+
+/**
+ * Implements the Configurable for Configuration of the engine loop.
+ */
+public class EngineConfig extends Configurable
+{
+    /**
+     * @param engine
+     *            The engine, that is configured
+     */
+    public EngineConfig(final Engine engine)
+    {
+        super();
+        if (engine == null)
+        {
+            throw new IllegalArgumentException("The engine of EngineConfig must be valid.");
+        }
+        final SettingHandler fixedTimestep = EngineConfig.fixedTimestepHandler(engine);
+        properties.put(fixedTimestep.getKey(), fixedTimestep);
+        final SettingHandler updateRate = EngineConfig
+                .rateHandler("Update_Rate", Engine.DEFAULT_UPDATE_RATE, engine::setUpdateRate);
+        properties.put(updateRate.getKey(), updateRate);
+        final SettingHandler frameRate = EngineConfig
+                .rateHandler("Frame_Rate_Limit", Engine.DEFAULT_FRAME_RATE_LIMIT, engine::setFrameRateLimit);
+        properties.put(frameRate.getKey(), frameRate);
+    }
+
+    /**
+     * Constructs the SettingHandler, that switches the engine between fixed
+     * and variable time steps.
+     */
+    private final static SettingHandler fixedTimestepHandler(final Engine engine)
+    {
+        return new SettingHandler()
+        {
+            private boolean        value   = true;
+
+            private final String[] options = new String[] { Boolean.TRUE.toString(), Boolean.FALSE.toString() };
+
+            @Override
+            public final void apply(final String value)
+            {
+                this.value = Boolean.parseBoolean(value);
+                engine.setFixedTimestep(this.value);
+            }
+
+            @Override
+            public final String getKey()
+            {
+                return "Fixed_Timestep";
+            }
+
+            @Override
+            public final String getCurrentValue()
+            {
+                return Boolean.toString(value);
+            }
+
+            @Override
+            public final List<String> getOptions()
+            {
+                return Arrays.asList(options);
+            }
+        };
+    }
+
+    /**
+     * Constructs a SettingHandler for a rate in hertz. Rates equal or below
+     * zero are passed on, the engine treats them as unlimited.
+     */
+    private final static SettingHandler rateHandler(final String key, final int defaultRate, final IntConsumer setter)
+    {
+        return new SettingHandler()
+        {
+            private int value = defaultRate;
+
+            @Override
+            public final void apply(final String value)
+            {
+                try
+                {
+                    this.value = Integer.parseInt(value);
+                    setter.accept(this.value);
+                } catch (final NumberFormatException e)
+                {
+                    Log.exception("Invalid value for setting " + key + ":" + value, e);
+                }
+            }
+
+            @Override
+            public final String getKey()
+            {
+                return key;
+            }
+
+            @Override
+            public final String getCurrentValue()
+            {
+                return Integer.toString(value);
+            }
+
+            @Override
+            public final List<String> getOptions()
+            {
+                return Collections.emptyList();
+            }
+        };
+    }
+}
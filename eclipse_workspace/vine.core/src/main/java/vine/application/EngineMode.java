@@ -21,5 +21,11 @@ public enum EngineMode
     /**
      * 
      */
-    BENCHMARK
+    BENCHMARK,
+    /**
+     * Simulates the world as fast as possible without a window, input or
+     * graphics context. Used for dedicated servers, performance runs and
+     * offline simulation.
+     */
+    HEADLESS
 }
@@ -16,6 +16,7 @@ import vine.game.screen.GameScreen;
 import vine.game.screen.Screen;
 import vine.graphics.Graphics;
 import vine.graphics.GraphicsProvider;
+import vine.graphics.HeadlessGraphics;
 import vine.graphics.RenderStack;
 import vine.graphics.SceneLayer;
 import vine.util.Log;
@@ -29,6 +30,10 @@ import vine.window.WindowConfig;
  */
 public final class Launch
 {
+    private static final String MODE_OPTION     = "-mode=";
+    private static final String HEADLESS_OPTION = "--headless";
+    private static final String STEPS_OPTION    = "-steps=";
+
     private Launch()
     {
         // Only instantiate through main method.
@@ -45,11 +50,56 @@ public final class Launch
         Launch.run(args);
     }
 
+    /**
+     * @param commandLine
+     *            The arguments of the application. The mode is selected with
+     *            -mode=&lt;mode&gt; or with --headless.
+     * @return The selected engine mode. Debug if no mode is given.
+     */
     private static EngineMode parseEngineMode(final String... commandLine)
     {
+        for (final String argument : commandLine)
+        {
+            if (Launch.HEADLESS_OPTION.equals(argument))
+            {
+                return EngineMode.HEADLESS;
+            }
+            if (argument.startsWith(Launch.MODE_OPTION))
+            {
+                final String mode = argument.substring(Launch.MODE_OPTION.length());
+                try
+                {
+                    return EngineMode.valueOf(mode.toUpperCase());
+                } catch (final IllegalArgumentException e)
+                {
+                    Log.exception("Unknown engine mode " + mode, e);
+                }
+            }
+        }
         return EngineMode.DEBUG;
     }
 
+    /**
+     * @return The number of steps given with -steps=&lt;steps&gt; or zero.
+     */
+    private static long parseStepLimit(final String... commandLine)
+    {
+        for (final String argument : commandLine)
+        {
+            if (argument.startsWith(Launch.STEPS_OPTION))
+            {
+                try
+                {
+                    return Long.parseLong(argument.substring(Launch.STEPS_OPTION.length()));
+                } catch (final NumberFormatException e)
+                {
+                    Log.exception("Invalid number of steps " + argument, e);
+                }
+            }
+        }
+        return 0;
+    }
+
     /**
      * Begin the game loop.
      */
@@ -75,6 +125,11 @@ public final class Launch
         Log.lifecycle("   \\  //     || ||   \\ || ||");
         Log.lifecycle("    \\//      || ||    \\|| ||//////");
         Log.lifecycle("Started application");
+        if (Launch.parseEngineMode(commandLine) == EngineMode.HEADLESS)
+        {
+            Launch.runHeadless(commandLine);
+            return;
+        }
         Log.lifecycle("Resolving application platform dependencies.");
         Log.lifecycle("Checking display device.");
         final Display display = PlatformResolver.getDisplay("vine.platform.lwjgl3.GLFWDisplay");
@@ -120,13 +175,14 @@ public final class Launch
         });
         // dispatcher.registerListener(debugKeyEventListener);
 
+        final Engine runner = new Engine(window, input, game, renderStack);
+
         Log.lifecycle("Load configuration settings");
         final Configuration configuration = new Configuration("res/settings.ini");
         configuration.addConfigurable(new WindowConfig(window));
+        configuration.addConfigurable(new EngineConfig(runner));
         configuration.load();
         configuration.apply();
-
-        final Engine runner = new Engine(window, input, game, renderStack);
         Runtime.getRuntime().addShutdownHook(new Thread(() ->
         {
             Thread.currentThread().setName(RuntimeInfo.SHUTDOWN_THREAD_NAME);
@@ -142,7 +198,35 @@ public final class Launch
             Log.lifecycle("Highest fps:" + PerformanceMonitor.getHighestFps());
         }, "shutdown"));
         runner.create();
-        gui.addWidget(game.instantiate(Text.class));
+        gui.addWidget(World.getObject(game.instantiate(Text.class), Text.class));
+        Log.lifecycle("Start the game");
+        runner.start();
+    }
+
+    /**
+     * Runs the game without window, input and graphics context.
+     */
+    private static void runHeadless(final String... commandLine)
+    {
+        Log.lifecycle("Assign headless graphics provider.");
+        GraphicsProvider.setGraphics(new HeadlessGraphics());
+        Log.lifecycle("Creating game.");
+        final World game = new World(new GameScreen(null, 960, 540));
+        final Engine runner = new Engine(game);
+        runner.setStepLimit(Launch.parseStepLimit(commandLine));
+
+        Log.lifecycle("Load configuration settings");
+        final Configuration configuration = new Configuration("res/settings.ini");
+        configuration.addConfigurable(new EngineConfig(runner));
+        configuration.load();
+        configuration.apply();
+        Runtime.getRuntime().addShutdownHook(new Thread(() ->
+        {
+            Thread.currentThread().setName(RuntimeInfo.SHUTDOWN_THREAD_NAME);
+            runner.destroy();
+            Log.lifecycle("Total run time:" + PerformanceMonitor.getRunningTime() / 1000f + "seconds");
+        }, "shutdown"));
+        runner.create();
         Log.lifecycle("Start the game");
         runner.start();
     }
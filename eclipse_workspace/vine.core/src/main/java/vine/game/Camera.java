@@ -18,7 +18,7 @@ public class Camera extends Component
     private float              shakeScaling = 1;
     private float              shakeDuration;
     private boolean            smooth;
-    private int                shakeTimer;
+    private long               shakeTimer   = TimerManager.INVALID_HANDLE;
 
     /**
      * @param duration
@@ -34,7 +34,9 @@ public class Camera extends Component
      */
     public void shake(final float duration, final float shakeIntensity, final int shakes, final boolean smooth)
     {
-        TimerManager.get().createTimer(duration, 1, () -> shakeTimer = 0);
+        final TimerManager timers = TimerManager.get();
+        timers.cancelTimer(shakeTimer);
+        shakeTimer = timers.createTimer(duration, 1, () -> shakeTimer = TimerManager.INVALID_HANDLE);
         this.shakeIntensity = GMath.min(5, GMath.max(0, shakeIntensity));
         shakeScaling = GMath.PIF * shakes / duration * 2;
         shakeDuration = duration;
@@ -50,9 +52,25 @@ public class Camera extends Component
         {
             return translation;
         }
-        if (shakeTimer == 0)
+        return getTranslation(entity.getWorld().getInterpolationAlpha());
+    }
+
+    /**
+     * @param alpha
+     *            The factor to interpolate between the previous and the
+     *            current simulation step.
+     * @return The world translation of the camera.
+     */
+    public final Vec3f getTranslation(final float alpha)
+    {
+        if (entity == null)
+        {
+            return translation;
+        }
+        final float x = entity.getTransform().getInterpolatedX(alpha);
+        if (shakeTimer == TimerManager.INVALID_HANDLE)
         {
-            translation.setX(entity.getXPosition());
+            translation.setX(x);
 
         } else
         {
@@ -62,9 +80,10 @@ public class Camera extends Component
             {
                 shakeOffset *= -GMath.fastPow((remainingShakeDuration / shakeDuration - 0.5f) * 2, 2) + 1;
             }
-            translation.setX(shakeOffset * GMath.sin(remainingShakeDuration * shakeScaling) + entity.getXPosition());
+            translation.setX(
+                    shakeOffset * GMath.sin(remainingShakeDuration * shakeScaling) + x);
         }
-        translation.setY(entity.getYPosition());
+        translation.setY(entity.getTransform().getInterpolatedY(alpha));
         return translation;
     }
 
@@ -95,11 +114,4 @@ public class Camera extends Component
         // TODO Auto-generated method stub
 
     }
-
-    @Override
-    public void onUpdate(final float delta)
-    {
-        // TODO Auto-generated method stub
-
-    }
 }
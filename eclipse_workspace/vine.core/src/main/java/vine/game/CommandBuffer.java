@@ -0,0 +1,270 @@
+package vine.game;
+
+import java.util.Arrays;
+
+import vine.game.scene.Component;
+import vine.game.scene.GameEntity;
+
+/**
+ * Records mutations of the world, that must not be executed while entities are
+ * updated in parallel, and executes them later at a sync point on the
+ * simulation thread.
+ * <p>
+ * Every part of a parallel update records into its own buffer, so a buffer is
+ * only written by one thread. The buffers are applied in the order of the
+ * parts, which keeps the result independent of the thread scheduling.
+ * Destruction, component changes and position changes of other entities are
+ * recorded automatically, if they happen during a parallel update.
+ * </p>
+ */
+public final class CommandBuffer
+{
+    private static final ThreadLocal<CommandBuffer> ACTIVE           = new ThreadLocal<>();
+    private static final int                        INITIAL_CAPACITY = 16;
+
+    private static final byte                       DESTROY          = 0;
+    private static final byte                       TRANSLATE        = 1;
+    private static final byte                       SET_POSITION     = 2;
+    private static final byte                       ATTACH           = 3;
+    private static final byte                       DETACH           = 4;
+    private static final byte                       SPAWN            = 5;
+    private static final byte                       EXECUTE          = 6;
+
+    private byte[]                                  operations       = new byte[CommandBuffer.INITIAL_CAPACITY];
+    private Object[]                                targets          = new Object[CommandBuffer.INITIAL_CAPACITY];
+    private Object[]                                arguments        = new Object[CommandBuffer.INITIAL_CAPACITY];
+    private float[]                                 values           = new float[CommandBuffer.INITIAL_CAPACITY * 2];
+    private int                                     count;
+    private GameObject                              updatedObject;
+
+    /**
+     * Initializes an entity, that was spawned by a command.
+     *
+     * @param <T>
+     *            The type of the spawned entity
+     */
+    @FunctionalInterface
+    public interface SpawnInitializer<T extends GameEntity>
+    {
+        /**
+         * @param entity
+         *            The spawned entity
+         */
+        void initialize(T entity);
+    }
+
+    /**
+     * @return The buffer, the calling thread records into or null, if the
+     *         calling thread doesn't execute a parallel update.
+     */
+    public static CommandBuffer getActive()
+    {
+        return CommandBuffer.ACTIVE.get();
+    }
+
+    /**
+     * Makes this buffer the one, the calling thread records into, until
+     * deactivate is called.
+     */
+    void activate()
+    {
+        CommandBuffer.ACTIVE.set(this);
+    }
+
+    void deactivate()
+    {
+        updatedObject = null;
+        CommandBuffer.ACTIVE.remove();
+    }
+
+    /**
+     * @param object
+     *            The object, whose update is currently executed with this
+     *            buffer active. The object can change its own state
+     *            immediately.
+     */
+    public void setUpdatedObject(final GameObject object)
+    {
+        updatedObject = object;
+    }
+
+    /**
+     * @param object
+     *            A game object
+     * @return True, if changes of the given object have to be recorded,
+     *         because they would be executed from a parallel update of
+     *         another object.
+     */
+    public boolean isForeign(final GameObject object)
+    {
+        return object != updatedObject;
+    }
+
+    /**
+     * @return The number of recorded commands.
+     */
+    public int size()
+    {
+        return count;
+    }
+
+    /**
+     * @param object
+     *            The object, that is destroyed at the sync point.
+     */
+    public void destroy(final GameObject object)
+    {
+        add(CommandBuffer.DESTROY, object, null, 0, 0);
+    }
+
+    /**
+     * @param entity
+     *            The entity, that is moved at the sync point.
+     * @param x
+     *            The moved distance along the x axis
+     * @param y
+     *            The moved distance along the y axis
+     */
+    public void addPosition(final GameEntity entity, final float x, final float y)
+    {
+        add(CommandBuffer.TRANSLATE, entity, null, x, y);
+    }
+
+    /**
+     * @param entity
+     *            The entity, that is placed at the sync point.
+     * @param x
+     *            The new x position in worldspace
+     * @param y
+     *            The new y position in worldspace
+     */
+    public void setPosition(final GameEntity entity, final float x, final float y)
+    {
+        add(CommandBuffer.SET_POSITION, entity, null, x, y);
+    }
+
+    /**
+     * @param entity
+     *            The entity, the component is attached to at the sync point.
+     * @param component
+     *            The attached component
+     */
+    public void attachComponent(final GameEntity entity, final Component component)
+    {
+        add(CommandBuffer.ATTACH, entity, component, 0, 0);
+    }
+
+    /**
+     * @param entity
+     *            The entity, the component is detached from at the sync
+     *            point.
+     * @param component
+     *            The detached component
+     */
+    public void detachComponent(final GameEntity entity, final Component component)
+    {
+        add(CommandBuffer.DETACH, entity, component, 0, 0);
+    }
+
+    /**
+     * Spawns a new entity in the scene of the world at the sync point.
+     *
+     * @param type
+     *            The type of the spawned entity
+     * @param x
+     *            The x position of the spawned entity
+     * @param y
+     *            The y position of the spawned entity
+     * @param initializer
+     *            Called with the spawned entity. Can be null.
+     */
+    public <T extends GameEntity> void spawn(
+            final Class<T> type,
+            final float x,
+            final float y,
+            final SpawnInitializer<T> initializer)
+    {
+        add(CommandBuffer.SPAWN, type, initializer, x, y);
+    }
+
+    /**
+     * @param command
+     *            Arbitrary work, that is executed at the sync point.
+     */
+    public void execute(final Runnable command)
+    {
+        add(CommandBuffer.EXECUTE, command, null, 0, 0);
+    }
+
+    private void add(final byte operation, final Object target, final Object argument, final float x, final float y)
+    {
+        if (count == operations.length)
+        {
+            final int capacity = count * 2;
+            operations = Arrays.copyOf(operations, capacity);
+            targets = Arrays.copyOf(targets, capacity);
+            arguments = Arrays.copyOf(arguments, capacity);
+            values = Arrays.copyOf(values, capacity * 2);
+        }
+        operations[count] = operation;
+        targets[count] = target;
+        arguments[count] = argument;
+        values[count * 2] = x;
+        values[count * 2 + 1] = y;
+        count++;
+    }
+
+    /**
+     * Executes all recorded commands in the order they were recorded and
+     * clears the buffer. Has to be called on the simulation thread, while no
+     * parallel update runs.
+     *
+     * @param world
+     *            The world the commands are executed in
+     */
+    @SuppressWarnings("unchecked")
+    public void flush(final World world)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            final Object target = targets[i];
+            final float x = values[i * 2];
+            final float y = values[i * 2 + 1];
+            switch (operations[i]) {
+            case DESTROY:
+                ((GameObject) target).destroy();
+            break;
+            case TRANSLATE:
+                ((GameEntity) target).addPosition(x, y);
+            break;
+            case SET_POSITION:
+                ((GameEntity) target).setPosition(x, y);
+            break;
+            case ATTACH:
+                ((GameEntity) target).attachComponent((Component) arguments[i]);
+            break;
+            case DETACH:
+                ((GameEntity) target).detachComponent((Component) arguments[i]);
+            break;
+            case SPAWN:
+                final GameEntity entity = World.getObject(
+                        world.getScene().spawn((Class<? extends GameEntity>) target, x, y, true),
+                        GameEntity.class);
+                final SpawnInitializer<GameEntity> initializer = (SpawnInitializer<GameEntity>) arguments[i];
+                if (entity != null && initializer != null)
+                {
+                    initializer.initialize(entity);
+                }
+            break;
+            case EXECUTE:
+                ((Runnable) target).run();
+            break;
+            default:
+            break;
+            }
+        }
+        Arrays.fill(targets, 0, count, null);
+        Arrays.fill(arguments, 0, count, null);
+        count = 0;
+    }
+}
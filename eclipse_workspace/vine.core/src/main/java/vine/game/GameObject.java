@@ -1,14 +1,12 @@
 package vine.game;
 
-import java.lang.ref.WeakReference;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.WeakHashMap;
 
 import vine.util.Log;
-import vine.util.reflection.VineClass;
-import vine.util.reflection.ReflectUtils;
 import vine.util.time.TimerManager;
 
 /**
@@ -29,6 +27,12 @@ public abstract class GameObject implements Comparable<GameObject>
     private static final byte             ACTIVE_FLAG        = 2;
     private static final byte             DESTROYED_FLAG     = 4;
     private static final byte             PERSISTENCE_FLAG   = 8;
+    /**
+     * If this flag is set, the gameobject can be updated in parallel with
+     * other gameobjects.
+     */
+    private static final byte             PARALLEL_FLAG      = 16;
+    private long                          id                 = ObjectTable.INVALID_HANDLE;
     private String                        name;
     private byte                          flags              = GameObject.ACTIVE_FLAG;
 
@@ -55,15 +59,36 @@ public abstract class GameObject implements Comparable<GameObject>
     }
 
     /**
-     * @return The name identifier of this object. The name is the unique
-     *         identifier to get a gameobject throughout the game. As said, the
-     *         name has to be unique. If you try to create an object, that
-     *         correspond to the name of an existing object, the instantiation
-     *         fails.
+     * @param id
+     *            The handle of the gameobject in the object table.
+     */
+    void setId(final long id)
+    {
+        this.id = id;
+    }
+
+    /**
+     * @return The name identifier of this object. Only objects, that were
+     *         instantiated with a name, can be found by it. The name has to be
+     *         unique. If you try to create an object, that correspond to the
+     *         name of an existing object, the instantiation fails. Unnamed
+     *         objects return a name built from their type and id.
      */
     public final String getName()
     {
-        return this.name;
+        return this.name == null
+                ? getClass().getSimpleName() + ReferenceManager.ID_QUALIFIER + ObjectTable.index(this.id)
+                : this.name;
+    }
+
+    /**
+     * @return The handle of this object. Unique among all objects, that exist
+     *         at the same time, and never reused for an object of the same
+     *         slot.
+     */
+    public final long getId()
+    {
+        return this.id;
     }
 
     /**
@@ -139,6 +164,34 @@ public abstract class GameObject implements Comparable<GameObject>
         disableFlags(GameObject.PERSISTENCE_FLAG);
     }
 
+    /**
+     * @return True, if the gameobject can be updated in parallel.
+     */
+    public final boolean isParallelUpdate()
+    {
+        return (this.flags & GameObject.PARALLEL_FLAG) == GameObject.PARALLEL_FLAG;
+    }
+
+    /**
+     * Objects, that update in parallel, must only change their own state in
+     * their update. Changes of other objects have to be recorded with
+     * {@link World#commands()}.
+     *
+     * @param parallel
+     *            True, if the gameobject can be updated in parallel with
+     *            other gameobjects.
+     */
+    public final void setParallelUpdate(final boolean parallel)
+    {
+        if (parallel)
+        {
+            enableFlags(GameObject.PARALLEL_FLAG);
+        } else
+        {
+            disableFlags(GameObject.PARALLEL_FLAG);
+        }
+    }
+
     /**
      * @param callback
      *            Callback for destruction
@@ -185,12 +238,61 @@ public abstract class GameObject implements Comparable<GameObject>
 
     public abstract void construct();
 
+    /**
+     * Called, when a destroyed gameobject of a pooled type is recycled, before
+     * it is instantiated again. Has to restore the state of a new object of
+     * the class.
+     */
+    protected void onReset()
+    {
+        //
+    }
+
+    /**
+     * Returns a destroyed gameobject to the state of a new object, so it can
+     * be instantiated again.
+     */
+    final void reset()
+    {
+        this.flags = (byte) (GameObject.ACTIVE_FLAG | this.flags & GameObject.PARALLEL_FLAG);
+        synchronized (this)
+        {
+            this.onDestroyCallbacks.clear();
+        }
+        this.name = null;
+        this.id = ObjectTable.INVALID_HANDLE;
+        onReset();
+    }
+
     /**
      * Use this method to destroy a GameObject that you don't need anymore. If
      * you don't use it, the GameObject remains in memory, causing a memory
-     * leak.
+     * leak. If called during a parallel update, the gameobject is destroyed
+     * at the next sync point.
      */
     public final void destroy()
+    {
+        final CommandBuffer commands = CommandBuffer.getActive();
+        if (commands != null)
+        {
+            commands.destroy(this);
+            return;
+        }
+        if (isDestroyed())
+        {
+            return;
+        }
+        markDestroyed();
+        // Remove the hardreference of the gameobject
+        ReferenceManager.release(this);
+        Log.debug("Destroyed GameObject: %s", this);
+        ReferenceManager.POOL.retire(this);
+    }
+
+    /**
+     * Sets the destroyed flag and notifies the object and its callbacks.
+     */
+    private void markDestroyed()
     {
         enableFlags(GameObject.DESTROYED_FLAG);
         onDestroy();
@@ -200,45 +302,36 @@ public abstract class GameObject implements Comparable<GameObject>
             {
                 callback.changedState(this);
             }
-            // Remove the hardreference of the gameobject
-            ReferenceManager.OBJECTS.remove(this.name);
-            Log.debug("Destroyed GameObject: " + toString());
         }
     }
 
+    /**
+     * Gameobjects are only equal to themselves. The handle isn't used, because
+     * it changes, when a pooled object is recycled, while the object can
+     * still be contained in hashed collections.
+     */
     @Override
     public boolean equals(final Object object)
     {
-        return object != null && object instanceof GameObject ? //
-                this.name.equals(((GameObject) object).getName())//
-                : //
-                false;
+        return this == object;
     }
 
     @Override
     public int compareTo(final GameObject o)
     {
-        if (o.getName().equals(getName()))
-        {
-            return 0;
-        }
-        if (o.hashCode() > hashCode())
-        {
-            return -1;
-        }
-        return 1;
+        return Long.compare(this.id, o.id);
     }
 
     @Override
     public int hashCode()
     {
-        return this.name.hashCode();
+        return System.identityHashCode(this);
     }
 
     @Override
     public String toString()
     {
-        return this.getClass().getSimpleName() + "@" + this.name;
+        return this.getClass().getSimpleName() + "@" + getName();
     }
 
     /**
@@ -252,58 +345,142 @@ public abstract class GameObject implements Comparable<GameObject>
          */
         protected static final String                  ID_QUALIFIER = "?id";
 
-        private static long                            nameGenCount;
         /**
          * All independent gameobjects that are currently in the game.
          */
-        protected static final Map<String, GameObject> OBJECTS      = new WeakHashMap<>(1000);
+        protected static final ObjectTable             OBJECTS      = new ObjectTable();
+        /**
+         * Destroyed gameobjects, that are kept for reuse.
+         */
+        static final ObjectPool                        POOL         = new ObjectPool();
+        /**
+         * The gameobjects, that were instantiated with a name, by their name.
+         */
+        private static final Map<String, GameObject>   NAMES        = new HashMap<>();
 
         private ReferenceManager()
         {
         }
 
         /**
+         * @param world
+         *            The world, the object is instantiated in.
          * @param type
          *            The type of the instantiate gameobject.
-         * @return A valid gameobject name id.
-         */
-        protected static final synchronized <T extends GameObject> String generateObjectName(final Class<T> type)
-        {
-            final String name = type.getSimpleName() + ReferenceManager.ID_QUALIFIER + ReferenceManager.nameGenCount;
-            ReferenceManager.nameGenCount++;
-            return name;
-        }
-
-        /**
          * @param name
-         *            The name used to identify the object in the game.
-         * @param type
-         *            The type of the instantiate gameobject.
+         *            The name used to identify the object in the game or null,
+         *            if the object can only be found by its handle.
          * @param params
          *            The optional arguments of the construct method of the
          *            instantiated type.
-         * @return The instantated gameobject or null on failure
+         * @return The handle of the instantated gameobject or
+         *         {@link ObjectTable#INVALID_HANDLE} on failure
          */
-        protected static final <T extends GameObject> WeakReference<T> instantiate(
+        protected static final <T extends GameObject> long instantiate(
                 final World world,
                 final Class<T> type,
                 final String name,
                 final Object... params)
         {
-            final VineClass<T> objectClass = new VineClass<>(type);
-            final T object = objectClass.instantiate();
-            if (object != null)
+            final ObjectFactory<T> factory = ObjectFactory.of(type);
+            final T pooled = ReferenceManager.POOL.obtain(type);
+            final T object = pooled == null ? factory.create() : pooled;
+            if (object == null)
             {
+                return ObjectTable.INVALID_HANDLE;
+            }
+            if (name != null)
+            {
+                synchronized (ReferenceManager.NAMES)
+                {
+                    if (ReferenceManager.NAMES.putIfAbsent(name, object) != null)
+                    {
+                        return ObjectTable.INVALID_HANDLE;
+                    }
+                }
                 object.setName(name);
-                ReferenceManager.OBJECTS.put(name, object);
-                objectClass.getMethod(GameObject.CONSTRUCT_METHOD)
-                        .ifPresent(method -> ReflectUtils.invokeMethodOn(method, object, params));
-                if (objectClass.hasMethodImplemented(GameObject.UPDATE_METHOD, float.class))
+            }
+            object.setId(ReferenceManager.OBJECTS.add(object));
+            factory.construct(object, params);
+            if (factory.isUpdatable())
+            {
+                world.addObject(object);
+            }
+            return object.getId();
+        }
+
+        /**
+         * Removes the object from the table and the name index. Its handle
+         * becomes invalid.
+         *
+         * @param object
+         *            The destroyed object
+         */
+        static void release(final GameObject object)
+        {
+            ReferenceManager.OBJECTS.remove(object.id);
+            if (object.name != null)
+            {
+                synchronized (ReferenceManager.NAMES)
                 {
-                    world.addObject(object);
+                    ReferenceManager.NAMES.remove(object.name, object);
                 }
             }
-            return new WeakReference<>(object);
+        }
+
+        /**
+         * Destroys all given objects at once. Every object is notified like
+         * on {@link GameObject#destroy()}, but the object table is only
+         * locked once for all of them.
+         *
+         * @param objects
+         *            The destroyed objects
+         */
+        static void destroyAll(final List<? extends GameObject> objects)
+        {
+            for (final GameObject object : objects)
+            {
+                if (!object.isDestroyed())
+                {
+                    object.markDestroyed();
+                }
+            }
+            synchronized (ReferenceManager.OBJECTS)
+            {
+                for (final GameObject object : objects)
+                {
+                    ReferenceManager.OBJECTS.remove(object.id);
+                }
+            }
+            synchronized (ReferenceManager.NAMES)
+            {
+                for (final GameObject object : objects)
+                {
+                    if (object.name != null)
+                    {
+                        ReferenceManager.NAMES.remove(object.name, object);
+                    }
+                }
+            }
+            for (final GameObject object : objects)
+            {
+                ReferenceManager.POOL.retire(object);
+            }
+            Log.debug("Destroyed %d GameObjects", Integer.valueOf(objects.size()));
+        }
+
+        /**
+         * @param name
+         *            The name of a gameobject, that was instantiated with a
+         *            name
+         * @return The gameobject or null, if no object has the given name.
+         */
+        static GameObject getByName(final String name)
+        {
+            synchronized (ReferenceManager.NAMES)
+            {
+                return ReferenceManager.NAMES.get(name);
+            }
         }
 
         /**
@@ -314,7 +491,7 @@ public abstract class GameObject implements Comparable<GameObject>
         static boolean isValidGameObjectName(final String name)
         {
             return name != null && !name.contains(GameObject.ReferenceManager.ID_QUALIFIER)
-                    && !ReferenceManager.OBJECTS.containsKey(name);
+                    && ReferenceManager.getByName(name) == null;
         }
     }
 
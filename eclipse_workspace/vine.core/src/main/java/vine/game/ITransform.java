@@ -84,6 +84,24 @@ public interface ITransform
      */
     Vec2f getWorldPosition();
 
+    /**
+     * @param alpha
+     *            The interpolation factor between the state of the previous
+     *            and the current simulation step in the range [0,1].
+     * @return The interpolated x coordinate of this transform relative to the
+     *         world.
+     */
+    float getInterpolatedX(float alpha);
+
+    /**
+     * @param alpha
+     *            The interpolation factor between the state of the previous
+     *            and the current simulation step in the range [0,1].
+     * @return The interpolated y coordinate of this transform relative to the
+     *         world.
+     */
+    float getInterpolatedY(float alpha);
+
     /**
      * @return The rotation of this transform in degree relative to its parent.
      */
@@ -49,13 +49,14 @@ public class LevelLoader
                 indices[i] = new Tile(water, new Color(0, 0, 0, 0), false, 0.5f);
             }
         }
-        final TileMapSceneProxy to = world
-                .instantiate(TileMapSceneProxy.class, new UniformTileMap(200, indices, chipset)).get();
+        final TileMapSceneProxy to = World.getObject(
+                world.instantiate(TileMapSceneProxy.class, new UniformTileMap(200, indices, chipset)),
+                TileMapSceneProxy.class);
         world.getScene().addEntity(to);
         world.getScene().addMap(to);
         world.getPhysics().addPhysicBody(to);
         to.attachComponent(water);
-        final PlayerPawn entity = world.instantiate(PlayerPawn.class, "player").get();
+        final PlayerPawn entity = World.getObject(world.instantiate(PlayerPawn.class, "player"), PlayerPawn.class);
         final Camera camera = world.getScene().getCameras().createCamera();
         entity.attachComponent(camera);
         world.getScene().getCameras().activate(camera);
@@ -103,20 +104,19 @@ public class LevelLoader
         rb.ignoreMass();
         rb.setDamping(1);
         entity.attachComponent(rb);
-        for (int i = 0; i < 200000; i++)
+        final StaticSprite heroSprite = new StaticSprite(AssetManager.loadSync("hero", RgbaTexture.class), 0, 0, 16,
+                32, 32, 64);
+        world.getScene().spawnBatch(GameEntity.class, 200000, (entity1, i) ->
         {
-            final GameEntity entity1 = world.getScene()
-                    .spawn(GameEntity.class, GMath.randomInteger(400), GMath.randomInteger(400), false).get();
-            final StaticSprite sprite1 = new StaticSprite(AssetManager.loadSync("hero", RgbaTexture.class), 0, 0, 16,
-                    32, 32, 64);
-            entity1.attachComponent(sprite1);
+            entity1.setPosition(GMath.randomInteger(400), GMath.randomInteger(400));
+            entity1.attachComponent(new StaticSprite(heroSprite));
             /*
              * bp = new BoxPrimitive(); entity1.attachComponent(bp); rb = new
              * RigidBody(); rb.addPrimitive(bp); rb.setInvMass(0);
              * rb.ignoreMass(); entity1.attachComponent(rb);
              */
             // entity1.attachComponent(new EnemyAI());
-        }
+        });
 
         Log.debug("Finished level loading");
         Log.debug("GameObject count:" + GameObject.ReferenceManager.OBJECTS.size());
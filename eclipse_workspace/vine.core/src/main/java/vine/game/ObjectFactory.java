@@ -0,0 +1,95 @@
+package vine.game;
+
+import java.lang.invoke.MethodHandle;
+import java.util.function.Supplier;
+
+import vine.game.scene.GameEntity;
+import vine.util.Log;
+import vine.util.reflection.Factories;
+
+/**
+ * Creates gameobjects of one class. Everything, that has to be looked up by
+ * reflection, is looked up once per class, when the first object of the class
+ * is instantiated.
+ *
+ * @param <T>
+ *            The type of the created objects
+ */
+final class ObjectFactory<T extends GameObject>
+{
+    private static final ClassValue<ObjectFactory<?>> FACTORIES = new ClassValue<ObjectFactory<?>>()
+    {
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        @Override
+        protected ObjectFactory<?> computeValue(final Class<?> type)
+        {
+            return new ObjectFactory(type);
+        }
+    };
+
+    private final Class<T>                            type;
+    private final Supplier<T>                         constructor;
+    /**
+     * The construct methods of the class by their number of parameters.
+     */
+    private final MethodHandle[]                      constructs;
+    private final boolean                             updatable;
+
+    private ObjectFactory(final Class<T> type)
+    {
+        this.type = type;
+        constructor = Factories.createConstructor(type);
+        constructs = Factories.findMethodsByArity(type, GameObject.CONSTRUCT_METHOD);
+        // Entities inherit an empty update, so only an override makes them
+        // updatable
+        updatable = GameEntity.class.isAssignableFrom(type)
+                ? Factories.overridesMethod(type, GameEntity.class, GameObject.UPDATE_METHOD, float.class)
+                : Factories.declaresMethod(type, GameObject.UPDATE_METHOD, float.class);
+    }
+
+    /**
+     * @param type
+     *            The class of the created objects
+     * @return The cached factory of the class
+     */
+    @SuppressWarnings("unchecked")
+    static <T extends GameObject> ObjectFactory<T> of(final Class<T> type)
+    {
+        return (ObjectFactory<T>) ObjectFactory.FACTORIES.get(type);
+    }
+
+    /**
+     * @return A new object or null, if the class can't be instantiated.
+     */
+    T create()
+    {
+        return constructor == null ? null : constructor.get();
+    }
+
+    /**
+     * Calls the construct method of the object, that takes the given number
+     * of arguments.
+     */
+    void construct(final T object, final Object... params)
+    {
+        final int arity = params == null ? 0 : params.length;
+        if (arity < constructs.length && constructs[arity] != null)
+        {
+            Factories.invoke(constructs[arity], object, params == null ? new Object[0] : params);
+        } else
+        {
+            Log.exception(
+                    "The class " + type.toString() + " has no construct method, that takes " + arity
+                            + " arguments.",
+                    null);
+        }
+    }
+
+    /**
+     * @return True, if the class implements the update method itself.
+     */
+    boolean isUpdatable()
+    {
+        return updatable;
+    }
+}
@@ -0,0 +1,98 @@
+package vine.game;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps destroyed gameobjects of pooled types, so later instantiations of the
+ * same type reuse them instead of allocating new objects.
+ * <p>
+ * Destroyed objects are still referenced by the world until the next sync
+ * point, so they are only reset and made available by {@link #recycle()},
+ * which is called after the world removed them.
+ * </p>
+ */
+final class ObjectPool
+{
+    private final Map<Class<?>, ArrayDeque<GameObject>> free       = new IdentityHashMap<>();
+    private final Map<Class<?>, Integer>                capacities = new IdentityHashMap<>();
+    /**
+     * The number of free and retired objects of every type.
+     */
+    private final Map<Class<?>, int[]>                  counts     = new IdentityHashMap<>();
+    private final List<GameObject>                      retired    = new ArrayList<>();
+
+    /**
+     * @param type
+     *            The exact type of the pooled objects
+     * @param capacity
+     *            The maximum number of kept objects of the type. Zero
+     *            disables pooling of the type.
+     */
+    synchronized void setCapacity(final Class<? extends GameObject> type, final int capacity)
+    {
+        capacities.put(type, Math.max(0, capacity));
+        final ArrayDeque<GameObject> objects = free.get(type);
+        while (objects != null && objects.size() > capacity)
+        {
+            objects.pop();
+            counts.get(type)[0]--;
+        }
+    }
+
+    /**
+     * @param object
+     *            A destroyed object
+     * @return True, if the object is kept for reuse.
+     */
+    synchronized boolean retire(final GameObject object)
+    {
+        final Integer capacity = capacities.get(object.getClass());
+        if (capacity == null)
+        {
+            return false;
+        }
+        final int[] count = counts.computeIfAbsent(object.getClass(), type -> new int[1]);
+        if (count[0] >= capacity)
+        {
+            return false;
+        }
+        count[0]++;
+        retired.add(object);
+        return true;
+    }
+
+    /**
+     * Resets all retired objects and makes them available for reuse. Has to
+     * be called at a sync point, after destroyed objects were removed from
+     * the world.
+     */
+    synchronized void recycle()
+    {
+        for (final GameObject object : retired)
+        {
+            object.reset();
+            free.computeIfAbsent(object.getClass(), type -> new ArrayDeque<>()).push(object);
+        }
+        retired.clear();
+    }
+
+    /**
+     * @param type
+     *            The exact type of the requested object
+     * @return A reset object of the given type or null, if there is none.
+     */
+    synchronized <T extends GameObject> T obtain(final Class<T> type)
+    {
+        final ArrayDeque<GameObject> objects = free.get(type);
+        if (objects == null || objects.isEmpty())
+        {
+            return null;
+        }
+        counts.get(type)[0]--;
+        return type.cast(objects.pop());
+    }
+}
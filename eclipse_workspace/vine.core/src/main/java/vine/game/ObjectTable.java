@@ -0,0 +1,235 @@
+package vine.game;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Dense table of all gameobjects, that are alive. Every object is identified
+ * by a 64 bit handle, that consists of the index of its slot in the upper and
+ * the generation of the slot in the lower 32 bits. Slots are reused after an
+ * object is released, with an increased generation, so handles of released
+ * objects never resolve to a newer object.
+ * <p>
+ * Live objects are additionally kept in a packed array, so iterating them
+ * doesn't touch free slots.
+ * </p>
+ * <p>
+ * Adding and removing objects is synchronized. Lookups by handle don't lock.
+ * They read the slots and their generations through one volatile reference,
+ * that is replaced, when the table grows, so a lookup never sees arrays of
+ * different lengths. A lookup, that races with the addition or removal of the
+ * same object, may or may not find it. Objects, that were added before the
+ * last sync point of the job system, are always found.
+ * </p>
+ */
+final class ObjectTable
+{
+    /**
+     * A handle, that never resolves to an object.
+     */
+    static final long        INVALID_HANDLE   = -1;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private volatile Slots   slots            = new Slots(new GameObject[ObjectTable.INITIAL_CAPACITY],
+            new int[ObjectTable.INITIAL_CAPACITY]);
+    /**
+     * The position of every occupied slot in the dense array.
+     */
+    private int[]            densePositions   = new int[ObjectTable.INITIAL_CAPACITY];
+    private GameObject[]     dense            = new GameObject[ObjectTable.INITIAL_CAPACITY];
+    private int[]            denseSlots       = new int[ObjectTable.INITIAL_CAPACITY];
+    private int              size;
+    private int[]            freeSlots        = new int[ObjectTable.INITIAL_CAPACITY];
+    private int              freeCount;
+    private int              slotCount;
+    private final TypeIndex  types            = new TypeIndex();
+
+    /**
+     * The objects of the slots and the generations of the slots, that are
+     * replaced together, when the table grows.
+     */
+    private static final class Slots
+    {
+        final GameObject[] objects;
+        final int[]        generations;
+
+        Slots(final GameObject[] objects, final int[] generations)
+        {
+            this.objects = objects;
+            this.generations = generations;
+        }
+
+        Slots grow(final int capacity)
+        {
+            return new Slots(Arrays.copyOf(objects, capacity), Arrays.copyOf(generations, capacity));
+        }
+    }
+
+    static int index(final long handle)
+    {
+        return (int) (handle >>> 32);
+    }
+
+    static int generation(final long handle)
+    {
+        return (int) handle;
+    }
+
+    private static long handle(final int index, final int generation)
+    {
+        return (long) index << 32 | generation & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Grows the table, so the given number of objects can be added without
+     * further growth.
+     *
+     * @param count
+     *            The number of objects, that are about to be added
+     */
+    synchronized void reserve(final int count)
+    {
+        final int required = size + count;
+        if (required > slots.objects.length)
+        {
+            int capacity = slots.objects.length;
+            while (capacity < required)
+            {
+                capacity *= 2;
+            }
+            slots = slots.grow(capacity);
+            densePositions = Arrays.copyOf(densePositions, capacity);
+            dense = Arrays.copyOf(dense, capacity);
+            denseSlots = Arrays.copyOf(denseSlots, capacity);
+        }
+    }
+
+    /**
+     * @param object
+     *            The object, that is stored in the table
+     * @return The handle of the object
+     */
+    synchronized long add(final GameObject object)
+    {
+        final int index;
+        if (freeCount > 0)
+        {
+            index = freeSlots[--freeCount];
+        } else
+        {
+            if (slotCount == slots.objects.length)
+            {
+                final int capacity = slotCount * 2;
+                slots = slots.grow(capacity);
+                densePositions = Arrays.copyOf(densePositions, capacity);
+                dense = Arrays.copyOf(dense, capacity);
+                denseSlots = Arrays.copyOf(denseSlots, capacity);
+            }
+            index = slotCount++;
+        }
+        final Slots current = slots;
+        current.objects[index] = object;
+        densePositions[index] = size;
+        dense[size] = object;
+        denseSlots[size] = index;
+        size++;
+        types.add(object, index);
+        return ObjectTable.handle(index, current.generations[index]);
+    }
+
+    /**
+     * Frees the slot of the object. The handle becomes invalid.
+     *
+     * @param handle
+     *            The handle of the released object
+     * @return True, if the handle was valid.
+     */
+    synchronized boolean remove(final long handle)
+    {
+        if (!contains(handle))
+        {
+            return false;
+        }
+        final int index = ObjectTable.index(handle);
+        final Slots current = slots;
+        types.remove(current.objects[index], index);
+        final int position = densePositions[index];
+        final int last = --size;
+        dense[position] = dense[last];
+        denseSlots[position] = denseSlots[last];
+        densePositions[denseSlots[position]] = position;
+        dense[last] = null;
+        current.objects[index] = null;
+        current.generations[index]++;
+        if (freeCount == freeSlots.length)
+        {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = index;
+        return true;
+    }
+
+    /**
+     * @param handle
+     *            The handle of an object
+     * @return True, if the handle refers to an object, that is alive.
+     */
+    boolean contains(final long handle)
+    {
+        return get(handle) != null;
+    }
+
+    /**
+     * @param handle
+     *            The handle of an object
+     * @return The object or null, if the handle is invalid.
+     */
+    GameObject get(final long handle)
+    {
+        final Slots current = slots;
+        final int index = ObjectTable.index(handle);
+        if (handle == ObjectTable.INVALID_HANDLE || index < 0 || index >= current.objects.length)
+        {
+            return null;
+        }
+        final GameObject object = current.objects[index];
+        return current.generations[index] == ObjectTable.generation(handle) ? object : null;
+    }
+
+    /**
+     * Adds all live objects of the given class and its subclasses to the
+     * list.
+     */
+    synchronized <T> void collect(final Class<T> type, final List<? super T> list)
+    {
+        types.collect(type, list);
+    }
+
+    /**
+     * @return The number of live objects of the given class and its
+     *         subclasses.
+     */
+    synchronized int count(final Class<?> type)
+    {
+        return types.count(type);
+    }
+
+    /**
+     * @return The number of objects, that are alive.
+     */
+    int size()
+    {
+        return size;
+    }
+
+    /**
+     * @param position
+     *            A position in the range [0,size)
+     * @return The object at the given position of the dense array. Positions
+     *         change, when objects are removed.
+     */
+    GameObject getDense(final int position)
+    {
+        return dense[position];
+    }
+}
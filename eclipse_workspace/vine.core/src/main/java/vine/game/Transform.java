@@ -12,23 +12,125 @@ import vine.math.vector.MutableVec2f;
 import vine.math.vector.Vec2f;
 
 /**
+ * Position, rotation and parent of an object. The values are stored in the
+ * slot of this transform in the {@link TransformStore}, the transform object
+ * only caches the matrices and vectors, that are handed out. World values of
+ * transforms with a parent are updated once per frame by the store.
+ * 
  * @author Steffen Kromm, first created on 03.05.2016
  *
  */
 public class Transform implements ITransform
 {
-    private ITransform            parent;
-    private final Set<ITransform> children      = new HashSet<>();
+    /**
+     * Counts the fixed simulation steps. Used to detect the first change of a
+     * transform in a step, so the previous state can be captured lazily.
+     */
+    private static volatile long        simulationStep;
+
+    private final TransformStore        store         = TransformStore.get();
+    private int                         index         = store.allocate();
+    private TransformStore.Page         page          = store.getPage(index);
+    private int                         offset        = index & TransformStore.PAGE_MASK;
+    private volatile boolean            released;
+
+    private ITransform                  parent;
+    private final Set<ITransform>       children      = new HashSet<>();
 
-    private final MutableMat3f    localToWorld  = new MutableMat3f();
-    private final MutableMat3f    worldToLocal  = new MutableMat3f();
+    private final MutableMat3f          localToWorld  = new MutableMat3f();
+    private final MutableMat3f          worldToLocal  = new MutableMat3f();
 
-    private final MutableVec2f    localPosition = new MutableVec2f();
-    private final MutableVec2f    worldPosition = new MutableVec2f();
-    private float                 worldRotation;
-    private float                 localRotation;
+    private final MutableVec2f          localPosition = new MutableVec2f();
+    private final MutableVec2f          worldPosition = new MutableVec2f();
 
-    private boolean               dirty;
+    private ChangeListener              listener;
+
+    /**
+     * Is notified, when the local values or the parent of a transform change.
+     */
+    @FunctionalInterface
+    public interface ChangeListener
+    {
+        /**
+         * Called by the thread, that changed the transform.
+         *
+         * @param transform
+         *            The changed transform
+         */
+        void changed(Transform transform);
+    }
+
+    /**
+     * Begins a new fixed simulation step. The local positions of all
+     * transforms, that are changed in this step, are kept as previous state
+     * for interpolation.
+     */
+    public static void beginSimulationStep()
+    {
+        Transform.simulationStep++;
+    }
+
+    /**
+     * @param listener
+     *            Notified of every change of this transform or null
+     */
+    public final void setChangeListener(final ChangeListener listener)
+    {
+        this.listener = listener;
+    }
+
+    /**
+     * @return The slot of this transform in the transform store.
+     */
+    public final int getIndex()
+    {
+        return index;
+    }
+
+    /**
+     * Frees the slot of this transform. Has to be called, when the owner of
+     * the transform is destroyed. Changes of a released transform are
+     * ignored. Children become roots.
+     */
+    public final void release()
+    {
+        if (!released)
+        {
+            for (final ITransform child : children.toArray(new ITransform[children.size()]))
+            {
+                child.setParent(null);
+            }
+            released = true;
+            store.release(index);
+        }
+    }
+
+    /**
+     * Returns this transform to the state of a new transform. A released
+     * transform gets a new slot in the store.
+     */
+    public final void reset()
+    {
+        if (released)
+        {
+            index = store.allocate();
+            page = store.getPage(index);
+            offset = index & TransformStore.PAGE_MASK;
+            released = false;
+        } else
+        {
+            page.localX[offset] = 0;
+            page.localY[offset] = 0;
+            page.localRotation[offset] = 0;
+            page.capturedStep[offset] = -1;
+        }
+        setParent(null);
+        for (final ITransform child : children.toArray(new ITransform[children.size()]))
+        {
+            child.setParent(null);
+        }
+        setDirty();
+    }
 
     @Override
     public final ITransform getParent()
@@ -45,47 +147,83 @@ public class Transform implements ITransform
     @Override
     public final Mat3f getLocalToWorld()
     {
-        recalculateLocalToWorld();
+        localToWorld.setRotation(page.worldRotation[offset]);
+        localToWorld.setTranslation(page.worldX[offset], page.worldY[offset]);
         return localToWorld;
     }
 
     @Override
     public final Mat3f getWorldToLocal()
     {
-        recalculateLocalToWorld();
+        worldToLocal.setRotation(-page.worldRotation[offset]);
+        worldToLocal.setTranslation(-page.worldX[offset], -page.worldY[offset]);
         return worldToLocal;
     }
 
     @Override
     public final Vec2f getLocalPosition()
     {
+        localPosition.set(page.localX[offset], page.localY[offset]);
         return localPosition;
     }
 
     @Override
     public final Vec2f getWorldPosition()
     {
-        if (parent == null)
-        {
-            return localPosition;
-        } else
-        {
-            recalculateLocalToWorld();
-            return worldPosition;
-        }
+        worldPosition.set(getWorldX(), getWorldY());
+        return worldPosition;
+    }
+
+    /**
+     * @return The x position in world space. Doesn't touch any vector.
+     */
+    public final float getWorldX()
+    {
+        return page.worldX[offset];
+    }
+
+    /**
+     * @return The y position in world space. Doesn't touch any vector.
+     */
+    public final float getWorldY()
+    {
+        return page.worldY[offset];
     }
 
     @Override
     public final float getLocalRotation()
     {
-        return localRotation;
+        return page.localRotation[offset];
     }
 
     @Override
     public final float getWorldRotation()
     {
-        recalculateLocalToWorld();
-        return worldRotation;
+        return page.worldRotation[offset];
+    }
+
+    @Override
+    public final float getInterpolatedX(final float alpha)
+    {
+        float x = page.localX[offset];
+        if (page.capturedStep[offset] == Transform.simulationStep)
+        {
+            final float previous = page.previousX[offset];
+            x = previous + (x - previous) * alpha;
+        }
+        return parent == null ? x : parent.getInterpolatedX(alpha) + x;
+    }
+
+    @Override
+    public final float getInterpolatedY(final float alpha)
+    {
+        float y = page.localY[offset];
+        if (page.capturedStep[offset] == Transform.simulationStep)
+        {
+            final float previous = page.previousY[offset];
+            y = previous + (y - previous) * alpha;
+        }
+        return parent == null ? y : parent.getInterpolatedY(alpha) + y;
     }
 
     @Override
@@ -99,12 +237,29 @@ public class Transform implements ITransform
     @Override
     public final boolean setParent(final ITransform transform)
     {
-        if (transform.equals(parent))
+        if (transform == parent)
         {
             return true;
         }
+        if (!released && !store.setParent(index,
+                transform instanceof Transform ? ((Transform) transform).index : TransformStore.NO_PARENT))
+        {
+            // The transform would become its own ancestor
+            return false;
+        }
+        if (parent instanceof Transform)
+        {
+            ((Transform) parent).children.remove(this);
+        }
         parent = transform;
-        transform.addChild(this);
+        if (released)
+        {
+            return true;
+        }
+        if (transform != null)
+        {
+            transform.addChild(this);
+        }
         setDirty();
         return true;
     }
@@ -112,55 +267,60 @@ public class Transform implements ITransform
     @Override
     public final void translate(final float x, final float y)
     {
-        localPosition.add(x, y);
+        if (released)
+        {
+            return;
+        }
+        capturePreviousState();
+        page.localX[offset] += x;
+        page.localY[offset] += y;
         setDirty();
     }
 
     @Override
     public final void rotate(final float degrees)
     {
-        localRotation += degrees;
-        setDirty();
-    }
-
-    private final void recalculateLocalToWorld()
-    {
-        if (!dirty)
+        if (released)
         {
             return;
         }
+        page.localRotation[offset] += degrees;
+        setDirty();
+    }
 
-        // Local to world
-        localToWorld.setRotation(localRotation);
-        localToWorld.setTranslation(localPosition.getX(), localPosition.getY());
-        if (parent != null)
-        {
-            final Mat3f parentToWorld = parent.getLocalToWorld();
-            localToWorld.rightMultiply(parentToWorld);
-            worldPosition.set(parent.getWorldPosition());
-            worldPosition.add(localPosition);
-            worldRotation = parent.getWorldRotation();
-            worldRotation += localRotation;
-        }
-        // World to local
-        worldToLocal.setRotation(-localRotation);
-        worldToLocal.setTranslation(-localPosition.getX(), -localPosition.getY());
-
-        if (parent != null)
+    private final void capturePreviousState()
+    {
+        final long step = Transform.simulationStep;
+        if (page.capturedStep[offset] != step)
         {
-            worldToLocal.leftMultiply(parent.getWorldToLocal());
+            page.previousX[offset] = page.localX[offset];
+            page.previousY[offset] = page.localY[offset];
+            page.capturedStep[offset] = step;
         }
-        //
-        dirty = false;
     }
 
+    /**
+     * Marks the local values as changed. Children are updated by the next
+     * pass of the store over the flattened hierarchy.
+     */
     @Override
     public final void setDirty()
     {
-        dirty = true;
-        for (final ITransform t : children)
+        if (released)
+        {
+            return;
+        }
+        if (parent == null)
+        {
+            // Roots keep their world values up to date
+            page.worldX[offset] = page.localX[offset];
+            page.worldY[offset] = page.localY[offset];
+            page.worldRotation[offset] = page.localRotation[offset];
+        }
+        page.dirty[offset] = true;
+        if (listener != null)
         {
-            t.setDirty();
+            listener.changed(this);
         }
     }
 }
@@ -0,0 +1,423 @@
+package vine.game;
+
+import java.util.Arrays;
+
+import vine.util.job.JobSystem;
+import vine.util.job.JobSystem.RangeJob;
+
+/**
+ * Struct of arrays storage of all transforms. Every transform occupies one
+ * slot, its position, rotation and parent are stored in parallel arrays, so
+ * passes over the positions of many transforms read contiguous memory.
+ * <p>
+ * Slots are grouped into pages of fixed size. Pages never move, when the
+ * store grows, so a slot stays readable by other threads, while new slots are
+ * allocated. World values of transforms without a parent are always up to
+ * date. World values of child transforms are calculated by
+ * {@link #updateWorldTransforms()}, so reading them is a plain array access.
+ * </p>
+ * <p>
+ * The hierarchy is flattened into arrays, that list every tree level by
+ * level, so every parent precedes its children. A single pass over these arrays
+ * updates all children, whose parent or own local values changed. The trees
+ * are independent, so the pass can be split across workers by tree.
+ * </p>
+ */
+public final class TransformStore
+{
+    /**
+     * Parent index of transforms without parent.
+     */
+    public static final int             NO_PARENT    = -1;
+    static final int                    PAGE_SHIFT   = 10;
+    static final int                    PAGE_SIZE    = 1 << TransformStore.PAGE_SHIFT;
+    static final int                    PAGE_MASK    = TransformStore.PAGE_SIZE - 1;
+    /**
+     * Minimal number of trees, that are updated by one job.
+     */
+    private static final int            TREE_GRAIN   = 64;
+    private static final int            NONE         = -1;
+
+    private static final TransformStore INSTANCE     = new TransformStore();
+
+    private volatile Page[]             pages        = new Page[0];
+    private int                         slotCount;
+    private int[]                       freeSlots    = new int[TransformStore.PAGE_SIZE];
+    private int                         freeCount;
+    private int                         size;
+
+    /**
+     * True, if a parent changed since the flattened hierarchy was built.
+     */
+    private volatile boolean            hierarchyChanged;
+    /**
+     * The slots of all transforms, that have a parent or children, tree by
+     * tree.
+     */
+    private int[]                       order        = new int[0];
+    /**
+     * The position of the parent of every entry of the order or -1 for roots.
+     */
+    private int[]                       orderParents = new int[0];
+    /**
+     * True for every entry of the order, whose world values changed in the
+     * current pass.
+     */
+    private boolean[]                   changed      = new boolean[0];
+    /**
+     * The position of the root of every tree in the order, followed by the
+     * length of the order.
+     */
+    private int[]                       treeStarts   = new int[1];
+    private int                         treeCount;
+    private final RangeJob              treeJob      = this::updateTrees;
+
+    /**
+     * One page of slots.
+     */
+    static final class Page
+    {
+        final float[]   localX        = new float[TransformStore.PAGE_SIZE];
+        final float[]   localY        = new float[TransformStore.PAGE_SIZE];
+        final float[]   localRotation = new float[TransformStore.PAGE_SIZE];
+        final float[]   worldX        = new float[TransformStore.PAGE_SIZE];
+        final float[]   worldY        = new float[TransformStore.PAGE_SIZE];
+        final float[]   worldRotation = new float[TransformStore.PAGE_SIZE];
+        final float[]   previousX     = new float[TransformStore.PAGE_SIZE];
+        final float[]   previousY     = new float[TransformStore.PAGE_SIZE];
+        final long[]    capturedStep  = new long[TransformStore.PAGE_SIZE];
+        final int[]     parents       = new int[TransformStore.PAGE_SIZE];
+        final int[]     firstChildren = new int[TransformStore.PAGE_SIZE];
+        final int[]     nextSiblings  = new int[TransformStore.PAGE_SIZE];
+        final int[]     prevSiblings  = new int[TransformStore.PAGE_SIZE];
+        /**
+         * True, if the local values changed since the last pass.
+         */
+        final boolean[] dirty         = new boolean[TransformStore.PAGE_SIZE];
+        final boolean[] used          = new boolean[TransformStore.PAGE_SIZE];
+    }
+
+    private TransformStore()
+    {
+    }
+
+    /**
+     * @return The store of all transforms.
+     */
+    public static TransformStore get()
+    {
+        return TransformStore.INSTANCE;
+    }
+
+    /**
+     * @return The index of a new slot at the origin without parent.
+     */
+    synchronized int allocate()
+    {
+        final int index;
+        if (freeCount > 0)
+        {
+            index = freeSlots[--freeCount];
+        } else
+        {
+            index = slotCount++;
+            if (index >> TransformStore.PAGE_SHIFT == pages.length)
+            {
+                final Page[] grown = Arrays.copyOf(pages, pages.length + 1);
+                grown[pages.length] = new Page();
+                pages = grown;
+            }
+        }
+        final Page page = getPage(index);
+        final int offset = index & TransformStore.PAGE_MASK;
+        page.localX[offset] = 0;
+        page.localY[offset] = 0;
+        page.localRotation[offset] = 0;
+        page.worldX[offset] = 0;
+        page.worldY[offset] = 0;
+        page.worldRotation[offset] = 0;
+        page.capturedStep[offset] = -1;
+        page.parents[offset] = TransformStore.NO_PARENT;
+        page.firstChildren[offset] = TransformStore.NONE;
+        page.nextSiblings[offset] = TransformStore.NONE;
+        page.prevSiblings[offset] = TransformStore.NONE;
+        page.dirty[offset] = false;
+        page.used[offset] = true;
+        size++;
+        return index;
+    }
+
+    /**
+     * Frees the slot, so it can be reused by a new transform. Children of the
+     * transform become roots at their local position.
+     */
+    synchronized void release(final int index)
+    {
+        final Page page = getPage(index);
+        final int offset = index & TransformStore.PAGE_MASK;
+        if (!page.used[offset])
+        {
+            return;
+        }
+        setParent(index, TransformStore.NO_PARENT);
+        while (page.firstChildren[offset] != TransformStore.NONE)
+        {
+            final int child = page.firstChildren[offset];
+            setParent(child, TransformStore.NO_PARENT);
+            final Page childPage = getPage(child);
+            final int childOffset = child & TransformStore.PAGE_MASK;
+            childPage.worldX[childOffset] = childPage.localX[childOffset];
+            childPage.worldY[childOffset] = childPage.localY[childOffset];
+            childPage.worldRotation[childOffset] = childPage.localRotation[childOffset];
+        }
+        page.used[offset] = false;
+        if (freeCount == freeSlots.length)
+        {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = index;
+        size--;
+    }
+
+    /**
+     * Moves the transform below the given parent.
+     *
+     * @param index
+     *            The slot of the transform
+     * @param parent
+     *            The slot of the new parent or {@link #NO_PARENT}
+     * @return False, if the parent is the transform itself or one of its
+     *         descendants.
+     */
+    synchronized boolean setParent(final int index, final int parent)
+    {
+        for (int ancestor = parent; ancestor != TransformStore.NO_PARENT; ancestor = getParent(ancestor))
+        {
+            if (ancestor == index)
+            {
+                return false;
+            }
+        }
+        final Page page = getPage(index);
+        final int offset = index & TransformStore.PAGE_MASK;
+        final int previousParent = page.parents[offset];
+        if (previousParent == parent)
+        {
+            return true;
+        }
+        final int previous = page.prevSiblings[offset];
+        final int next = page.nextSiblings[offset];
+        if (previous != TransformStore.NONE)
+        {
+            getPage(previous).nextSiblings[previous & TransformStore.PAGE_MASK] = next;
+        } else if (previousParent != TransformStore.NO_PARENT)
+        {
+            getPage(previousParent).firstChildren[previousParent & TransformStore.PAGE_MASK] = next;
+        }
+        if (next != TransformStore.NONE)
+        {
+            getPage(next).prevSiblings[next & TransformStore.PAGE_MASK] = previous;
+        }
+        page.prevSiblings[offset] = TransformStore.NONE;
+        page.nextSiblings[offset] = TransformStore.NONE;
+        if (parent != TransformStore.NO_PARENT)
+        {
+            final Page parentPage = getPage(parent);
+            final int parentOffset = parent & TransformStore.PAGE_MASK;
+            final int first = parentPage.firstChildren[parentOffset];
+            if (first != TransformStore.NONE)
+            {
+                getPage(first).prevSiblings[first & TransformStore.PAGE_MASK] = index;
+            }
+            page.nextSiblings[offset] = first;
+            parentPage.firstChildren[parentOffset] = index;
+        }
+        page.parents[offset] = parent;
+        page.dirty[offset] = true;
+        hierarchyChanged = true;
+        return true;
+    }
+
+    Page getPage(final int index)
+    {
+        return pages[index >> TransformStore.PAGE_SHIFT];
+    }
+
+    /**
+     * @return The number of transforms, that are alive.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return The upper bound of all slot indices, that were allocated.
+     */
+    public int getCapacity()
+    {
+        return slotCount;
+    }
+
+    /**
+     * @return True, if the slot is occupied by a transform.
+     */
+    public boolean isUsed(final int index)
+    {
+        return getPage(index).used[index & TransformStore.PAGE_MASK];
+    }
+
+    public float getLocalX(final int index)
+    {
+        return getPage(index).localX[index & TransformStore.PAGE_MASK];
+    }
+
+    public float getLocalY(final int index)
+    {
+        return getPage(index).localY[index & TransformStore.PAGE_MASK];
+    }
+
+    public float getLocalRotation(final int index)
+    {
+        return getPage(index).localRotation[index & TransformStore.PAGE_MASK];
+    }
+
+    /**
+     * @return The index of the parent slot or {@link #NO_PARENT}.
+     */
+    public int getParent(final int index)
+    {
+        return getPage(index).parents[index & TransformStore.PAGE_MASK];
+    }
+
+    /**
+     * @return The world space x position of the transform, as of the last
+     *         update of the world transforms, if it has a parent.
+     */
+    public float getWorldX(final int index)
+    {
+        return getPage(index).worldX[index & TransformStore.PAGE_MASK];
+    }
+
+    /**
+     * @return The world space y position of the transform, as of the last
+     *         update of the world transforms, if it has a parent.
+     */
+    public float getWorldY(final int index)
+    {
+        return getPage(index).worldY[index & TransformStore.PAGE_MASK];
+    }
+
+    /**
+     * @return The world space rotation of the transform in degrees.
+     */
+    public float getWorldRotation(final int index)
+    {
+        return getPage(index).worldRotation[index & TransformStore.PAGE_MASK];
+    }
+
+    /**
+     * Calculates the world values of all transforms, whose parent or local
+     * values changed, in one pass. Has to be called at a sync point.
+     */
+    public void updateWorldTransforms()
+    {
+        flatten();
+        updateTrees(0, treeCount);
+    }
+
+    /**
+     * Calculates the world values of all changed transforms. The trees are
+     * distributed across the jobs.
+     *
+     * @param jobs
+     *            The job system, that executes the pass
+     */
+    public void updateWorldTransforms(final JobSystem jobs)
+    {
+        flatten();
+        jobs.parallelFor(treeCount, TransformStore.TREE_GRAIN, treeJob);
+    }
+
+    /**
+     * Rebuilds the flattened hierarchy, if a parent changed.
+     */
+    private synchronized void flatten()
+    {
+        if (!hierarchyChanged)
+        {
+            return;
+        }
+        hierarchyChanged = false;
+        if (order.length < slotCount)
+        {
+            order = new int[slotCount];
+            orderParents = new int[slotCount];
+            changed = new boolean[slotCount];
+        }
+        treeCount = 0;
+        int length = 0;
+        for (int root = 0; root < slotCount; root++)
+        {
+            final Page page = getPage(root);
+            final int offset = root & TransformStore.PAGE_MASK;
+            if (!page.used[offset] || page.parents[offset] != TransformStore.NO_PARENT
+                    || page.firstChildren[offset] == TransformStore.NONE)
+            {
+                continue;
+            }
+            if (treeCount + 1 == treeStarts.length)
+            {
+                treeStarts = Arrays.copyOf(treeStarts, treeStarts.length * 2);
+            }
+            treeStarts[treeCount++] = length;
+            order[length] = root;
+            orderParents[length] = TransformStore.NONE;
+            length++;
+            // The entries of the tree, that are already listed, are visited in
+            // order and append their children, so parents precede children.
+            for (int position = length - 1; position < length; position++)
+            {
+                final int parent = order[position];
+                int child = getPage(parent).firstChildren[parent & TransformStore.PAGE_MASK];
+                while (child != TransformStore.NONE)
+                {
+                    order[length] = child;
+                    orderParents[length] = position;
+                    length++;
+                    child = getPage(child).nextSiblings[child & TransformStore.PAGE_MASK];
+                }
+            }
+        }
+        treeStarts[treeCount] = length;
+    }
+
+    /**
+     * Updates the world values of the given trees. Every entry is updated, if
+     * its own local values or the world values of its parent changed.
+     */
+    private void updateTrees(final int firstTree, final int lastTree)
+    {
+        final Page[] current = pages;
+        for (int i = treeStarts[firstTree]; i < treeStarts[lastTree]; i++)
+        {
+            final int index = order[i];
+            final Page page = current[index >> TransformStore.PAGE_SHIFT];
+            final int offset = index & TransformStore.PAGE_MASK;
+            final int parentPosition = orderParents[i];
+            boolean update = page.dirty[offset];
+            if (parentPosition != TransformStore.NONE && (update || changed[parentPosition]))
+            {
+                final int parent = order[parentPosition];
+                final Page parentPage = current[parent >> TransformStore.PAGE_SHIFT];
+                final int parentOffset = parent & TransformStore.PAGE_MASK;
+                page.worldX[offset] = parentPage.worldX[parentOffset] + page.localX[offset];
+                page.worldY[offset] = parentPage.worldY[parentOffset] + page.localY[offset];
+                page.worldRotation[offset] = parentPage.worldRotation[parentOffset] + page.localRotation[offset];
+                update = true;
+            }
+            changed[i] = update;
+            page.dirty[offset] = false;
+        }
+    }
+}
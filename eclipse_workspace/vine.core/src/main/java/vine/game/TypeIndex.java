@@ -0,0 +1,144 @@
+package vine.game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of all live gameobjects by their class and all of its superclasses up
+ * to {@link GameObject}. Every class has a sparse set, that maps the slot of
+ * an object in the object table to its position in a packed array, so objects
+ * are added and removed in constant time and all objects of a type are read
+ * without visiting other objects.
+ * <p>
+ * Not thread safe, the object table synchronizes the access.
+ * </p>
+ */
+final class TypeIndex
+{
+    private static final ClassValue<Class<?>[]> HIERARCHIES = new ClassValue<Class<?>[]>()
+    {
+        @Override
+        protected Class<?>[] computeValue(final Class<?> type)
+        {
+            final List<Class<?>> hierarchy = new ArrayList<>();
+            for (Class<?> current = type; current != null
+                    && GameObject.class.isAssignableFrom(current); current = current.getSuperclass())
+            {
+                hierarchy.add(current);
+            }
+            return hierarchy.toArray(new Class<?>[hierarchy.size()]);
+        }
+    };
+
+    private final Map<Class<?>, Bucket> buckets = new IdentityHashMap<>();
+
+    /**
+     * The objects of one class.
+     */
+    private static final class Bucket
+    {
+        private GameObject[] dense      = new GameObject[16];
+        private int[]        denseSlots = new int[16];
+        /**
+         * Position of every slot in the dense array plus one. Zero marks
+         * slots, that aren't part of the bucket.
+         */
+        private int[]        positions  = new int[16];
+        private int          size;
+
+        void add(final GameObject object, final int slot)
+        {
+            if (slot >= positions.length)
+            {
+                positions = Arrays.copyOf(positions, Math.max(slot + 1, positions.length * 2));
+            }
+            if (size == dense.length)
+            {
+                dense = Arrays.copyOf(dense, size * 2);
+                denseSlots = Arrays.copyOf(denseSlots, size * 2);
+            }
+            dense[size] = object;
+            denseSlots[size] = slot;
+            positions[slot] = ++size;
+        }
+
+        void remove(final int slot)
+        {
+            if (slot >= positions.length || positions[slot] == 0)
+            {
+                return;
+            }
+            final int position = positions[slot] - 1;
+            final int last = --size;
+            dense[position] = dense[last];
+            denseSlots[position] = denseSlots[last];
+            positions[denseSlots[position]] = position + 1;
+            dense[last] = null;
+            positions[slot] = 0;
+        }
+    }
+
+    /**
+     * @param object
+     *            The object, that is indexed
+     * @param slot
+     *            The slot of the object in the object table
+     */
+    void add(final GameObject object, final int slot)
+    {
+        for (final Class<?> type : TypeIndex.HIERARCHIES.get(object.getClass()))
+        {
+            Bucket bucket = buckets.get(type);
+            if (bucket == null)
+            {
+                bucket = new Bucket();
+                buckets.put(type, bucket);
+            }
+            bucket.add(object, slot);
+        }
+    }
+
+    /**
+     * @param object
+     *            The object, that is removed from the index
+     * @param slot
+     *            The slot of the object in the object table
+     */
+    void remove(final GameObject object, final int slot)
+    {
+        for (final Class<?> type : TypeIndex.HIERARCHIES.get(object.getClass()))
+        {
+            buckets.get(type).remove(slot);
+        }
+    }
+
+    /**
+     * @param type
+     *            A class
+     * @return The number of live objects of the class and its subclasses.
+     */
+    int count(final Class<?> type)
+    {
+        final Bucket bucket = buckets.get(type);
+        return bucket == null ? 0 : bucket.size;
+    }
+
+    /**
+     * Adds all live objects of the class and its subclasses to the list.
+     */
+    <T> void collect(final Class<T> type, final List<? super T> list)
+    {
+        final Bucket bucket = buckets.get(type);
+        if (bucket == null)
+        {
+            return;
+        }
+        for (int i = 0; i < bucket.size; i++)
+        {
+            list.add(type.cast(bucket.dense[i]));
+        }
+    }
+}
@@ -1,19 +1,26 @@
 package vine.game;
 
-import java.lang.ref.WeakReference;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Deque;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import vine.game.GameObject.GameObjectCallback;
 import vine.game.GameObject.ReferenceManager;
+import vine.game.scene.GameEntity;
 import vine.game.scene.Scene;
 import vine.game.screen.Screen;
+import vine.graphics.FrameExchange;
+import vine.graphics.FramePacket;
 import vine.physics.PhysicsEngine;
 import vine.util.ConcurrentManagedSet;
+import vine.util.job.JobSystem;
+import vine.util.job.JobSystem.RangeJob;
 import vine.util.settings.Configuration;
+import vine.util.time.FixedTimestep;
 
 /**
  * Manages the gameplay on a global level. That is managing level changer
@@ -28,22 +35,52 @@ import vine.util.settings.Configuration;
  * name parameter is not used for a gameobject already though or the
  * instantiation of the gameobject will fail.
  * 
+ * Every gameobject is identified by a handle. Handles of destroyed objects
+ * stay invalid, even if the storage of the object is reused, so a handle can
+ * be kept instead of a reference to check, if an object still exists.
+ * 
  * @author Steffen
  *
  */
 public final class World
 {
-    private final Configuration   configuration;
-    private final Screen          screen;
-    private final Scene           scene;
-    private final PhysicsEngine   physics;
-    private final Player          player;
-    private final GameState       gameState;
-    private final WorldSettings   worldSettings;
+    /**
+     * Returned by instantiate, if no object could be created.
+     */
+    public static final long             INVALID_HANDLE   = ObjectTable.INVALID_HANDLE;
+    private final Configuration          configuration;
+    private final Screen                 screen;
+    private final Scene                  scene;
+    private final PhysicsEngine          physics;
+    private final Player                 player;
+    private final GameState              gameState;
+    private final WorldSettings          worldSettings;
+    private volatile FixedTimestep       timestep;
+    private JobSystem                    jobs             = new JobSystem(1);
+    private final FrameExchange          frames           = new FrameExchange();
+    /**
+     * The maximum number of objects of one chunk, that are updated together
+     * by one job.
+     */
+    private static final int             SLICE_SIZE       = 2048;
+    /**
+     * The number of destroyed entities, that are kept for reuse.
+     */
+    public static final int              ENTITY_POOL_SIZE = 4096;
+    private boolean                      parallelUpdate   = true;
+    private final CommandBuffer          commands         = new CommandBuffer();
+    private final List<List<GameObject>> partitions       = new ArrayList<>();
+    private final List<GameObject>       serialObjects    = new ArrayList<>();
+    private final List<CommandBuffer>    sliceCommands    = new ArrayList<>();
+    private int[]                        slices           = new int[0];
+    private int                          sliceCount;
+    private float                        sliceDelta;
+    private final RangeJob               sliceJob         = this::updateSlices;
 
-    private final Set<GameObject> updatableObjects = new ConcurrentManagedSet<>(new HashSet<>());
-    final Deque<GameObject>       addList          = new ArrayDeque<>(100);
-    final Deque<GameObject>       removeList       = new ArrayDeque<>(100);
+    private final Set<GameObject>        updatableObjects = new ConcurrentManagedSet<>(new HashSet<>());
+    final Deque<GameObject>              addList          = new ArrayDeque<>(100);
+    final Deque<GameObject>              removeList       = new ArrayDeque<>(100);
+    private final GameObjectCallback     removeCallback   = removeList::add;
 
     /**
      * @param screen
@@ -61,6 +98,23 @@ public final class World
         gameState = new GameState();
         worldSettings = new WorldSettings();
         configuration = new Configuration("res/settings.ini");
+        setPoolCapacity(GameEntity.class, World.ENTITY_POOL_SIZE);
+    }
+
+    /**
+     * Destroyed objects of pooled types are reset and reused by later
+     * instantiations of the same type. Subclasses with own state have to
+     * restore it in {@link GameObject#onReset()}, before they are pooled.
+     *
+     * @param type
+     *            The exact type of the pooled objects
+     * @param capacity
+     *            The maximum number of kept objects. Zero disables pooling of
+     *            the type.
+     */
+    public void setPoolCapacity(final Class<? extends GameObject> type, final int capacity)
+    {
+        ReferenceManager.POOL.setCapacity(type, capacity);
     }
 
     public final PhysicsEngine getPhysics()
@@ -109,6 +163,82 @@ public final class World
         return configuration;
     }
 
+    /**
+     * @param jobs
+     *            The job system, that subsystems of the world use to split
+     *            their work into parallel jobs.
+     */
+    public void setJobSystem(final JobSystem jobs)
+    {
+        this.jobs = jobs;
+        physics.setJobSystem(jobs);
+    }
+
+    /**
+     * @return The job system to submit parallel work to.
+     */
+    public JobSystem getJobSystem()
+    {
+        return jobs;
+    }
+
+    /**
+     * @param timestep
+     *            The fixed timestep the world is simulated with or null, if
+     *            the world is updated with variable time steps.
+     */
+    public void setTimestep(final FixedTimestep timestep)
+    {
+        this.timestep = timestep;
+    }
+
+    /**
+     * @return The factor to interpolate between the previous and the current
+     *         simulation step. Always 1, if the world isn't simulated with a
+     *         fixed timestep.
+     */
+    public float getInterpolationAlpha()
+    {
+        final FixedTimestep step = timestep;
+        return step == null ? 1 : step.getAlpha();
+    }
+
+    /**
+     * @param stepTimestamp
+     *            The system time in nanoseconds, at which a simulated state
+     *            was reached.
+     * @return The factor to interpolate between the previous and the given
+     *         simulation step.
+     */
+    public float getInterpolationAlpha(final long stepTimestamp)
+    {
+        final FixedTimestep step = timestep;
+        return step == null ? 1 : step.getAlpha(stepTimestamp);
+    }
+
+    /**
+     * @return The exchange, that hands the render state from the logic
+     *         thread to the render thread.
+     */
+    public FrameExchange getFrames()
+    {
+        return frames;
+    }
+
+    /**
+     * Builds a snapshot of the render relevant state of the scene and hands
+     * it to the render thread. Has to be called by the logic thread after the
+     * update of a frame is finished.
+     */
+    public void publishFrame()
+    {
+        final FramePacket packet = frames.begin();
+        final FixedTimestep step = timestep;
+        packet.setStepTimestamp(step == null ? 0 : step.getStepTimestamp());
+        scene.writeFramePacket(packet);
+        frames.publish();
+    }
+
     private void preUpdate()
     {
         if (!addList.isEmpty())
@@ -125,7 +255,35 @@ public final class World
     public void addObject(final GameObject object)
     {
         addList.add(object);
-        object.registerDestructionCallback(o -> removeList.add(object));
+        object.registerDestructionCallback(removeCallback);
+    }
+
+    /**
+     * @param parallelUpdate
+     *            If true, entities that allow it are updated in parallel,
+     *            partitioned by the chunks of the scene. Otherwise all
+     *            objects are updated one after another.
+     */
+    public void setParallelUpdate(final boolean parallelUpdate)
+    {
+        this.parallelUpdate = parallelUpdate;
+    }
+
+    public boolean isParallelUpdate()
+    {
+        return parallelUpdate;
+    }
+
+    /**
+     * @return The buffer to record changes of other objects into. During a
+     *         parallel update this is the buffer of the calling job, otherwise
+     *         the buffer of the world. All buffers are applied at the end of
+     *         the update.
+     */
+    public CommandBuffer commands()
+    {
+        final CommandBuffer active = CommandBuffer.getActive();
+        return active == null ? commands : active;
     }
 
     /**
@@ -135,21 +293,168 @@ public final class World
     public void update(final float delta)
     {
         preUpdate();
-        scene.prepareUpdate();
-        for (final GameObject object : updatableObjects)
+        scene.prepareUpdate(delta);
+        if (parallelUpdate && jobs.getParallelism() > 1)
         {
-            object.update(delta);
+            updateParallel(delta);
+        } else
+        {
+            for (final GameObject object : updatableObjects)
+            {
+                World.updateObject(object, delta);
+            }
         }
+        updateScene(delta);
         postUpdate();
     }
 
+    /**
+     * Ages the entities of the scene, executes their payloads and updates
+     * their components. Changes of the entity structure are recorded into the
+     * command buffer of the world and applied in the post update.
+     */
+    private void updateScene(final float delta)
+    {
+        commands.activate();
+        try
+        {
+            scene.update(delta);
+        } finally
+        {
+            commands.deactivate();
+        }
+    }
+
+    /**
+     * Updates the objects, that allow it, in parallel jobs. Every job updates
+     * a slice of the objects of one chunk and records changes of other
+     * objects into its own command buffer. The buffers are applied in order
+     * afterwards, then the remaining objects are updated one after another.
+     */
+    private void updateParallel(final float delta)
+    {
+        partition();
+        sliceDelta = delta;
+        jobs.parallelFor(sliceCount, 1, sliceJob);
+        for (int i = 0; i < sliceCount; i++)
+        {
+            sliceCommands.get(i).flush(this);
+        }
+        for (int i = 0; i < serialObjects.size(); i++)
+        {
+            World.updateObject(serialObjects.get(i), delta);
+        }
+    }
+
+    /**
+     * Updates the object, unless it is an entity of a sleeping chunk. Entities
+     * of a chunk, that just woke up, catch up the time they slept.
+     */
+    private static void updateObject(final GameObject object, final float delta)
+    {
+        if (object instanceof GameEntity)
+        {
+            final GameEntity entity = (GameEntity) object;
+            if (!entity.isSleeping())
+            {
+                entity.update(delta + entity.getCatchUpTime());
+            }
+            return;
+        }
+        object.update(delta);
+    }
+
+    /**
+     * Sorts the updatable objects into the partitions of their chunks and
+     * divides the partitions into slices. The scene assigned the chunks at
+     * the beginning of the frame.
+     */
+    private void partition()
+    {
+        for (int i = 0; i < partitions.size(); i++)
+        {
+            partitions.get(i).clear();
+        }
+        serialObjects.clear();
+        for (final GameObject object : updatableObjects)
+        {
+            if (object.isParallelUpdate() && object instanceof GameEntity
+                    && ((GameEntity) object).getScene() == scene && ((GameEntity) object).getChunkIndex() >= 0)
+            {
+                final GameEntity entity = (GameEntity) object;
+                if (entity.isSleeping())
+                {
+                    continue;
+                }
+                final int index = entity.getChunkIndex();
+                while (partitions.size() <= index)
+                {
+                    partitions.add(new ArrayList<>());
+                }
+                partitions.get(index).add(object);
+            } else
+            {
+                serialObjects.add(object);
+            }
+        }
+        sliceCount = 0;
+        for (int i = 0; i < partitions.size(); i++)
+        {
+            final int size = partitions.get(i).size();
+            for (int start = 0; start < size; start += World.SLICE_SIZE)
+            {
+                addSlice(i, start, Math.min(size, start + World.SLICE_SIZE));
+            }
+        }
+    }
+
+    private void addSlice(final int partition, final int start, final int end)
+    {
+        if (slices.length < (sliceCount + 1) * 3)
+        {
+            slices = Arrays.copyOf(slices, (sliceCount + 1) * 6);
+        }
+        slices[sliceCount * 3] = partition;
+        slices[sliceCount * 3 + 1] = start;
+        slices[sliceCount * 3 + 2] = end;
+        if (sliceCommands.size() == sliceCount)
+        {
+            sliceCommands.add(new CommandBuffer());
+        }
+        sliceCount++;
+    }
+
+    private void updateSlices(final int first, final int last)
+    {
+        for (int slice = first; slice < last; slice++)
+        {
+            final List<GameObject> objects = partitions.get(slices[slice * 3]);
+            final CommandBuffer buffer = sliceCommands.get(slice);
+            buffer.activate();
+            try
+            {
+                for (int i = slices[slice * 3 + 1]; i < slices[slice * 3 + 2]; i++)
+                {
+                    final GameObject object = objects.get(i);
+                    buffer.setUpdatedObject(object);
+                    World.updateObject(object, sliceDelta);
+                }
+            } finally
+            {
+                buffer.deactivate();
+            }
+        }
+    }
+
     private void postUpdate()
     {
+        commands.flush(this);
         if (!removeList.isEmpty())
         {
             updatableObjects.removeAll(removeList);
             removeList.clear();
         }
+        ReferenceManager.POOL.recycle();
     }
 
     /**
@@ -158,14 +463,25 @@ public final class World
      */
     public void changeLevel(final String level)
     {
-        World.getObjectsByType(GameObject.class).stream().forEach(object ->
+        unloadLevel();
+        LevelLoader.loadScene(level, this);
+    }
+
+    /**
+     * Destroys all gameobjects, that aren't level persistent, in one pass.
+     */
+    public void unloadLevel()
+    {
+        final List<GameObject> objects = World.getObjectsByType(GameObject.class);
+        final List<GameObject> level = new ArrayList<>(objects.size());
+        for (final GameObject object : objects)
         {
             if (!object.isLevelPersistent())
             {
-                object.destroy();
+                level.add(object);
             }
-        });
-        LevelLoader.loadScene(level, this);
+        }
+        ReferenceManager.destroyAll(level);
     }
 
     /**
@@ -174,12 +490,12 @@ public final class World
      * @param params
      *            The optional arguments of the construct method of the
      *            instantiated type.
-     * @return Returns all GameObjects in the Game of the given type.
+     * @return The handle of the newly created gameobject or
+     *         {@link #INVALID_HANDLE} on failure.
      */
-    public <T extends GameObject> WeakReference<T> instantiate(final Class<T> type, final Object... params)
+    public <T extends GameObject> long instantiate(final Class<T> type, final Object... params)
     {
-        return type == null ? null
-                : ReferenceManager.instantiate(this, type, ReferenceManager.generateObjectName(type), params);
+        return type == null ? World.INVALID_HANDLE : ReferenceManager.instantiate(this, type, null, params);
     }
 
     /**
@@ -192,35 +508,86 @@ public final class World
      * @param params
      *            The optinal arguments of the construct method of the
      *            instantiated type.
-     * @return the newly created gameobject
+     * @return The handle of the newly created gameobject or
+     *         {@link #INVALID_HANDLE} on failure.
      */
-    public <T extends GameObject> WeakReference<T> instantiate(
-            final Class<T> type,
-            final String name,
-            final Object... params)
+    public <T extends GameObject> long instantiate(final Class<T> type, final String name, final Object... params)
     {
-        return !GameObject.ReferenceManager.isValidGameObjectName(name) || type == null ? null
+        return !GameObject.ReferenceManager.isValidGameObjectName(name) || type == null ? World.INVALID_HANDLE
                 : ReferenceManager.instantiate(this, type, name, params);
     }
 
+    /**
+     * Preallocates the storage for the given number of objects, that are
+     * instantiated next.
+     *
+     * @param count
+     *            The number of objects, that are about to be instantiated
+     */
+    public void reserveObjects(final int count)
+    {
+        ReferenceManager.OBJECTS.reserve(count);
+    }
+
+    /**
+     * @param handle
+     *            The handle of a gameobject
+     * @return The gameobject or null, if the object was destroyed.
+     */
+    public static GameObject getObject(final long handle)
+    {
+        return ReferenceManager.OBJECTS.get(handle);
+    }
+
+    /**
+     * @param handle
+     *            The handle of a gameobject
+     * @param type
+     *            The expected type of the gameobject
+     * @return The gameobject or null, if the object was destroyed or is not
+     *         of the given type.
+     */
+    public static <T extends GameObject> T getObject(final long handle, final Class<T> type)
+    {
+        final GameObject object = ReferenceManager.OBJECTS.get(handle);
+        return type.isInstance(object) ? type.cast(object) : null;
+    }
+
     /**
      * @param type
      *            Class that is used to look for objects of.
-     * @return A stream object with all gameobject of the given type.
+     * @return All live gameobjects of the given class and its subclasses.
      */
     public static <T extends GameObject> List<T> getObjectsByType(final Class<T> type)
     {
-        final List<T> list = new ArrayList<>();
-        for (final GameObject object : ReferenceManager.OBJECTS.values())
-        {
-            if (object.getClass() == type)
-            {
-                list.add(type.cast(object));
-            }
-        }
+        final List<T> list = new ArrayList<>(ReferenceManager.OBJECTS.count(type));
+        ReferenceManager.OBJECTS.collect(type, list);
         return list;
     }
 
+    /**
+     * @param type
+     *            Class that is used to look for objects of.
+     * @param list
+     *            The list, all live gameobjects of the given class and its
+     *            subclasses are added to.
+     */
+    public static <T extends GameObject> void getObjectsByType(final Class<T> type, final List<? super T> list)
+    {
+        ReferenceManager.OBJECTS.collect(type, list);
+    }
+
+    /**
+     * @param type
+     *            A gameobject class
+     * @return The number of live gameobjects of the given class and its
+     *         subclasses.
+     */
+    public static int countObjectsByType(final Class<? extends GameObject> type)
+    {
+        return ReferenceManager.OBJECTS.count(type);
+    }
+
     /**
      * @param name
      *            Name identifier that is look up for a object.
@@ -228,7 +595,7 @@ public final class World
      */
     public static GameObject getObjectByName(final String name)
     {
-        return ReferenceManager.OBJECTS.get(name);
+        return ReferenceManager.getByName(name);
     }
 
     public void simulatePhysics(final float delta)
@@ -39,9 +39,9 @@ public class GameUserInterface implements Layer
      * @param widget
      *            Widget that is added to the screen
      */
-    public <T extends Widget> void addWidget(final WeakReference<T> widget)
+    public void addWidget(final Widget widget)
     {
-        widgets.add(new WeakReference<Widget>(widget.get()));
+        widgets.add(new WeakReference<>(widget));
     }
 
     public Screen getScreen()
@@ -15,11 +15,6 @@ public class BoxPrimitive extends Component implements Primitive
     Vec2f     boundingBox = new Vec2f(32, 64);
     Transform transform   = new Transform();
 
-    @Override
-    public void onUpdate(final float delta)
-    {//
-    }
-
     @Override
     public void onAttach()
     {
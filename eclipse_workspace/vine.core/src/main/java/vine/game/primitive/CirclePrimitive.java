@@ -19,13 +19,6 @@ public class CirclePrimitive extends Component implements Primitive
         return null;
     }
 
-    @Override
-    public void onUpdate(final float delta)
-    {
-        // TODO Auto-generated method stub
-
-    }
-
     @Override
     public void onAttach()
     {
@@ -0,0 +1,953 @@
+package vine.game.scene;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import vine.game.scene.SceneTracer.EntityTraverseCheck;
+
+/**
+ * A dynamic bounding volume hierarchy over the bounding boxes of the entities
+ * of a scene. Every leaf stores a fat box, that is larger than the box of its
+ * entity by {@link #MARGIN}, so entities, that move a little, don't change the
+ * tree. The tree is kept balanced by rotations, so box and ray queries visit
+ * a logarithmic number of nodes.
+ * <p>
+ * The nodes are stored in parallel arrays and reused through a free list.
+ * Changes aren't thread safe and happen at sync points, when entities are
+ * added or removed and at the beginning of a frame. The queries of the tree
+ * itself can run on any number of threads, while it doesn't change, but their
+ * visitors read the current positions of the entities. Only the queries of
+ * the published {@link SpatialSnapshot} are consistent, while the entities
+ * move.
+ * </p>
+ */
+final class AabbTree
+{
+    /**
+     * The distance, that the fat box of a leaf extends beyond the box of its
+     * entity on every side.
+     */
+    static final float                      MARGIN    = 16;
+    /**
+     * Returned by {@link #intersectRay}, if the ray misses the box.
+     */
+    static final float                      MISS      = -1;
+    static final int                        NONE      = -1;
+
+    static final ThreadLocal<Stack>         STACKS    = ThreadLocal.withInitial(Stack::new);
+
+    private int                             root      = AabbTree.NONE;
+    private float[]                         minX      = new float[16];
+    private float[]                         minY      = new float[16];
+    private float[]                         maxX      = new float[16];
+    private float[]                         maxY      = new float[16];
+    private int[]                           parents   = new int[16];
+    private int[]                           children  = new int[32];
+    /**
+     * The height of the subtree of every node. Leaves have the height 0, free
+     * nodes -1.
+     */
+    private int[]                           heights   = new int[16];
+    private GameEntity[]                    entities  = new GameEntity[16];
+    /**
+     * The tags and component types of the entities in the subtree of every
+     * node, as summarized by {@link EntityFilter}.
+     */
+    private long[]                          summaries = new long[16];
+    private int                             nodeCount;
+    private int                             freeList  = AabbTree.NONE;
+    private int                             leafCount;
+
+    /**
+     * The nodes, whose copies in the snapshots are outdated, because they
+     * changed since the last publication.
+     */
+    private int[]  changed = new int[16];
+    private int    changedCount;
+    /**
+     * The number of the frame, in which every node was last recorded in the
+     * changed nodes, so it's recorded only once.
+     */
+    private long[] stamps  = new long[16];
+
+    private final AtomicReference<SpatialSnapshot> published = new AtomicReference<>(new SpatialSnapshot());
+    /**
+     * Former snapshots, that are reused, when no thread reads them anymore.
+     */
+    private final List<SpatialSnapshot>            retired   = new ArrayList<>();
+    private long                                   frame;
+
+    /**
+     * Receives the entities, whose fat box is hit by a ray.
+     */
+    @FunctionalInterface
+    interface RayCallback
+    {
+        /**
+         * @param entity
+         *            An entity, whose fat box is hit within the distance
+         * @param distance
+         *            The current length of the ray
+         * @return The new length of the ray. Return the passed distance to
+         *         visit all entities along the ray or a shorter one to only
+         *         visit entities, that could be nearer.
+         */
+        float hit(GameEntity entity, float distance);
+    }
+
+    /**
+     * The traversal stack of a querying thread. Visitors can start nested
+     * traversals, which push their nodes above the pending nodes of the
+     * traversals, that called them.
+     */
+    static final class Stack
+    {
+        int[] nodes = new int[64];
+        /**
+         * The number of slots used by the running traversals.
+         */
+        int   top;
+
+        /**
+         * @return The nodes with room for two nodes above the given count.
+         */
+        int[] reserve(final int count)
+        {
+            if (count + 2 > nodes.length)
+            {
+                nodes = Arrays.copyOf(nodes, Math.max(nodes.length * 2, count + 2));
+            }
+            return nodes;
+        }
+    }
+
+    /**
+     * @return The number of entities in the tree.
+     */
+    int size()
+    {
+        return leafCount;
+    }
+
+    /**
+     * @return The height of the tree, -1, if it's empty.
+     */
+    int getHeight()
+    {
+        return root == AabbTree.NONE ? -1 : heights[root];
+    }
+
+    /**
+     * Adds the entity with a fat box around its current bounding box.
+     */
+    void add(final GameEntity entity)
+    {
+        if (entity.treeProxy != AabbTree.NONE)
+        {
+            return;
+        }
+        final int leaf = allocate();
+        entities[leaf] = entity;
+        heights[leaf] = 0;
+        summaries[leaf] = EntityFilter.summarize(entity);
+        fatten(leaf, entity);
+        insertLeaf(leaf);
+        entity.treeProxy = leaf;
+        leafCount++;
+    }
+
+    /**
+     * Adds many entities at once. A batch, that is at least as large as the
+     * tree, rebuilds the whole tree top down, which is cheaper than inserting
+     * every leaf and yields a balanced tree. Smaller batches are inserted one
+     * by one.
+     *
+     * @param batch
+     *            The entities to add. Entities, that are already in the tree,
+     *            are skipped.
+     * @param count
+     *            The number of entities at the beginning of the array
+     */
+    void addAll(final GameEntity[] batch, final int count)
+    {
+        if (count < leafCount)
+        {
+            for (int i = 0; i < count; i++)
+            {
+                add(batch[i]);
+            }
+            return;
+        }
+        final int[] leaves = new int[leafCount + count];
+        int leafTotal = 0;
+        for (int node = 0; node < nodeCount; node++)
+        {
+            if (heights[node] == 0)
+            {
+                leaves[leafTotal++] = node;
+            } else if (heights[node] > 0)
+            {
+                free(node);
+            }
+        }
+        for (int i = 0; i < count; i++)
+        {
+            final GameEntity entity = batch[i];
+            if (entity.treeProxy != AabbTree.NONE)
+            {
+                continue;
+            }
+            final int leaf = allocate();
+            entities[leaf] = entity;
+            heights[leaf] = 0;
+            summaries[leaf] = EntityFilter.summarize(entity);
+            fatten(leaf, entity);
+            entity.treeProxy = leaf;
+            leafCount++;
+            leaves[leafTotal++] = leaf;
+        }
+        root = leafTotal == 0 ? AabbTree.NONE : build(leaves, 0, leafTotal);
+        if (root != AabbTree.NONE)
+        {
+            parents[root] = AabbTree.NONE;
+        }
+    }
+
+    void remove(final GameEntity entity)
+    {
+        final int leaf = entity.treeProxy;
+        if (leaf == AabbTree.NONE)
+        {
+            return;
+        }
+        removeLeaf(leaf);
+        free(leaf);
+        entity.treeProxy = AabbTree.NONE;
+        leafCount--;
+    }
+
+    /**
+     * Moves the leaf of the entity, if its bounding box left the fat box.
+     *
+     * @return True, if the tree changed.
+     */
+    boolean update(final GameEntity entity)
+    {
+        final int leaf = entity.treeProxy;
+        if (leaf == AabbTree.NONE)
+        {
+            return false;
+        }
+        // The snapshots keep the exact box of the entity
+        mark(leaf);
+        final float x = entity.getXPosition();
+        final float y = entity.getYPosition();
+        if (minX[leaf] <= x && minY[leaf] <= y && x + entity.getXExtends() <= maxX[leaf]
+                && y + entity.getYExtends() <= maxY[leaf])
+        {
+            return false;
+        }
+        removeLeaf(leaf);
+        fatten(leaf, entity);
+        insertLeaf(leaf);
+        return true;
+    }
+
+    /**
+     * Updates the summary of the leaf of the entity and its ancestors after
+     * its tags or components changed.
+     */
+    void refreshSummary(final GameEntity entity)
+    {
+        int node = entity.treeProxy;
+        if (node == AabbTree.NONE)
+        {
+            return;
+        }
+        summaries[node] = EntityFilter.summarize(entity);
+        mark(node);
+        for (node = parents[node]; node != AabbTree.NONE; node = parents[node])
+        {
+            final long summary = summaries[children[node * 2]] | summaries[children[node * 2 + 1]];
+            if (summary == summaries[node])
+            {
+                return;
+            }
+            summaries[node] = summary;
+            mark(node);
+        }
+    }
+
+    /**
+     * Publishes a snapshot of the tree, whose leaves contain the current
+     * bounding boxes of the entities. Has to be called at a sync point after
+     * the tree was updated. A reused snapshot only copies the nodes, that
+     * changed since it was published last, so only the leaves of the entities,
+     * that moved, are read.
+     */
+    void publish()
+    {
+        SpatialSnapshot snapshot = null;
+        for (int i = 0; i < retired.size(); i++)
+        {
+            if (!retired.get(i).isPinned())
+            {
+                snapshot = retired.get(i);
+                retired.set(i, retired.get(retired.size() - 1));
+                retired.remove(retired.size() - 1);
+                break;
+            }
+        }
+        if (snapshot == null)
+        {
+            snapshot = new SpatialSnapshot();
+        }
+        // The other snapshots miss the changes of this frame, when they are
+        // reused
+        published.get().invalidate(changed, changedCount);
+        for (int i = 0; i < retired.size(); i++)
+        {
+            retired.get(i).invalidate(changed, changedCount);
+        }
+        snapshot.invalidate(changed, changedCount);
+        changedCount = 0;
+        snapshot.reserve(nodeCount);
+        if (snapshot.outdated)
+        {
+            copyAll(snapshot);
+        } else
+        {
+            for (int i = 0; i < snapshot.staleCount; i++)
+            {
+                copy(snapshot, snapshot.stale[i]);
+            }
+        }
+        snapshot.outdated = false;
+        snapshot.staleCount = 0;
+        snapshot.root = root;
+        snapshot.size = leafCount;
+        snapshot.frame = ++frame;
+        retired.add(published.getAndSet(snapshot));
+    }
+
+    private void copyAll(final SpatialSnapshot snapshot)
+    {
+        System.arraycopy(minX, 0, snapshot.minX, 0, nodeCount);
+        System.arraycopy(minY, 0, snapshot.minY, 0, nodeCount);
+        System.arraycopy(maxX, 0, snapshot.maxX, 0, nodeCount);
+        System.arraycopy(maxY, 0, snapshot.maxY, 0, nodeCount);
+        System.arraycopy(children, 0, snapshot.children, 0, nodeCount * 2);
+        System.arraycopy(heights, 0, snapshot.heights, 0, nodeCount);
+        System.arraycopy(summaries, 0, snapshot.summaries, 0, nodeCount);
+        System.arraycopy(entities, 0, snapshot.entities, 0, nodeCount);
+        // Leaves get the exact boxes, so queries don't read the entities
+        for (int node = 0; node < nodeCount; node++)
+        {
+            if (heights[node] == 0)
+            {
+                copyExactBox(snapshot, node);
+            }
+        }
+    }
+
+    private void copy(final SpatialSnapshot snapshot, final int node)
+    {
+        snapshot.children[node * 2] = children[node * 2];
+        snapshot.children[node * 2 + 1] = children[node * 2 + 1];
+        snapshot.heights[node] = heights[node];
+        snapshot.summaries[node] = summaries[node];
+        snapshot.entities[node] = entities[node];
+        if (heights[node] == 0)
+        {
+            copyExactBox(snapshot, node);
+        } else
+        {
+            snapshot.minX[node] = minX[node];
+            snapshot.minY[node] = minY[node];
+            snapshot.maxX[node] = maxX[node];
+            snapshot.maxY[node] = maxY[node];
+        }
+    }
+
+    private void copyExactBox(final SpatialSnapshot snapshot, final int leaf)
+    {
+        final GameEntity entity = entities[leaf];
+        snapshot.minX[leaf] = entity.getXPosition();
+        snapshot.minY[leaf] = entity.getYPosition();
+        snapshot.maxX[leaf] = snapshot.minX[leaf] + entity.getXExtends();
+        snapshot.maxY[leaf] = snapshot.minY[leaf] + entity.getYExtends();
+    }
+
+    /**
+     * Returns the latest published snapshot and adds the calling thread to
+     * its readers, so it isn't reused before its release.
+     */
+    SpatialSnapshot acquire()
+    {
+        while (true)
+        {
+            final SpatialSnapshot snapshot = published.get();
+            snapshot.pin();
+            // The snapshot could have been retired and reused between reading
+            // and pinning it
+            if (published.get() == snapshot)
+            {
+                return snapshot;
+            }
+            snapshot.release();
+        }
+    }
+
+    /**
+     * Visits every entity, whose fat box overlaps the given box. The visitor
+     * has to test the exact bounds itself.
+     */
+    void query(
+            final float queryMinX,
+            final float queryMinY,
+            final float queryMaxX,
+            final float queryMaxY,
+            final EntityTraverseCheck visitor)
+    {
+        if (root == AabbTree.NONE)
+        {
+            return;
+        }
+        final Stack stack = AabbTree.STACKS.get();
+        final int base = stack.top;
+        int[] nodes = stack.reserve(base);
+        int count = base;
+        nodes[count++] = root;
+        try
+        {
+            while (count > base)
+            {
+                final int node = nodes[--count];
+                if (minX[node] > queryMaxX || minY[node] > queryMaxY || maxX[node] < queryMinX
+                        || maxY[node] < queryMinY)
+                {
+                    continue;
+                }
+                if (heights[node] == 0)
+                {
+                    stack.top = count;
+                    visitor.traverseEntity(entities[node]);
+                    nodes = stack.nodes;
+                    continue;
+                }
+                nodes = stack.reserve(count);
+                nodes[count++] = children[node * 2];
+                nodes[count++] = children[node * 2 + 1];
+            }
+        } finally
+        {
+            stack.top = base;
+        }
+    }
+
+    /**
+     * Visits the entities, whose fat box is hit by the ray, in no particular
+     * order. The length of the ray shrinks with the distances returned by the
+     * callback, so subtrees behind the nearest hit are skipped.
+     *
+     * @param directionX
+     *            The x coordinate of the normalized direction
+     * @param directionY
+     *            The y coordinate of the normalized direction
+     * @param distance
+     *            The length of the ray
+     */
+    void rayCast(
+            final float originX,
+            final float originY,
+            final float directionX,
+            final float directionY,
+            final float distance,
+            final RayCallback callback)
+    {
+        rayCast(originX, originY, directionX, directionY, distance, 0, 0, callback);
+    }
+
+    /**
+     * Sweeps a box, that is centered on the ray, through the tree. Visits the
+     * entities, whose fat box is touched by the swept box, in no particular
+     * order.
+     *
+     * @param halfWidth
+     *            Half the width of the swept box
+     * @param halfHeight
+     *            Half the height of the swept box
+     * @see #rayCast(float, float, float, float, float, RayCallback)
+     */
+    void rayCast(
+            final float originX,
+            final float originY,
+            final float directionX,
+            final float directionY,
+            final float distance,
+            final float halfWidth,
+            final float halfHeight,
+            final RayCallback callback)
+    {
+        if (root == AabbTree.NONE)
+        {
+            return;
+        }
+        final float iDirectionX = 1 / directionX;
+        final float iDirectionY = 1 / directionY;
+        float length = distance;
+        final Stack stack = AabbTree.STACKS.get();
+        final int base = stack.top;
+        int[] nodes = stack.reserve(base);
+        int count = base;
+        nodes[count++] = root;
+        try
+        {
+            while (count > base)
+            {
+                final int node = nodes[--count];
+                if (AabbTree.intersectRay(originX, originY, iDirectionX, iDirectionY, length, minX[node] - halfWidth,
+                        minY[node] - halfHeight, maxX[node] + halfWidth, maxY[node] + halfHeight) == AabbTree.MISS)
+                {
+                    continue;
+                }
+                if (heights[node] == 0)
+                {
+                    stack.top = count;
+                    length = callback.hit(entities[node], length);
+                    nodes = stack.nodes;
+                    continue;
+                }
+                nodes = stack.reserve(count);
+                nodes[count++] = children[node * 2];
+                nodes[count++] = children[node * 2 + 1];
+            }
+        } finally
+        {
+            stack.top = base;
+        }
+    }
+
+    /**
+     * @return The distance along the ray to the bounding box of the entity or
+     *         {@link #MISS}.
+     */
+    static float intersectRay(
+            final float originX,
+            final float originY,
+            final float iDirectionX,
+            final float iDirectionY,
+            final float length,
+            final GameEntity entity)
+    {
+        final float x = entity.getXPosition();
+        final float y = entity.getYPosition();
+        return AabbTree.intersectRay(
+                originX,
+                originY,
+                iDirectionX,
+                iDirectionY,
+                length,
+                x,
+                y,
+                x + entity.getXExtends(),
+                y + entity.getYExtends());
+    }
+
+    /**
+     * Intersects a ray with a box. Axes, that the ray is parallel to, have an
+     * infinite inversed direction and only test the origin.
+     *
+     * @return The distance from the origin to the entry point of the ray, 0
+     *         if the origin is inside the box, or {@link #MISS}, if the box
+     *         isn't hit within the given length.
+     */
+    static float intersectRay(
+            final float originX,
+            final float originY,
+            final float iDirectionX,
+            final float iDirectionY,
+            final float length,
+            final float boxMinX,
+            final float boxMinY,
+            final float boxMaxX,
+            final float boxMaxY)
+    {
+        float near = 0;
+        float far = length;
+        if (Float.isInfinite(iDirectionX))
+        {
+            if (originX < boxMinX || originX > boxMaxX)
+            {
+                return AabbTree.MISS;
+            }
+        } else
+        {
+            final float t1 = (boxMinX - originX) * iDirectionX;
+            final float t2 = (boxMaxX - originX) * iDirectionX;
+            near = Math.max(near, Math.min(t1, t2));
+            far = Math.min(far, Math.max(t1, t2));
+        }
+        if (Float.isInfinite(iDirectionY))
+        {
+            if (originY < boxMinY || originY > boxMaxY)
+            {
+                return AabbTree.MISS;
+            }
+        } else
+        {
+            final float t1 = (boxMinY - originY) * iDirectionY;
+            final float t2 = (boxMaxY - originY) * iDirectionY;
+            near = Math.max(near, Math.min(t1, t2));
+            far = Math.min(far, Math.max(t1, t2));
+        }
+        return near <= far ? near : AabbTree.MISS;
+    }
+
+    private void fatten(final int leaf, final GameEntity entity)
+    {
+        mark(leaf);
+        final float x = entity.getXPosition();
+        final float y = entity.getYPosition();
+        minX[leaf] = x - AabbTree.MARGIN;
+        minY[leaf] = y - AabbTree.MARGIN;
+        maxX[leaf] = x + entity.getXExtends() + AabbTree.MARGIN;
+        maxY[leaf] = y + entity.getYExtends() + AabbTree.MARGIN;
+    }
+
+    /**
+     * Inserts the leaf next to the sibling, that increases the perimeters of
+     * the tree the least, and rebalances the path to the root.
+     */
+    private void insertLeaf(final int leaf)
+    {
+        if (root == AabbTree.NONE)
+        {
+            root = leaf;
+            parents[leaf] = AabbTree.NONE;
+            return;
+        }
+        int index = root;
+        while (heights[index] > 0)
+        {
+            final int child1 = children[index * 2];
+            final int child2 = children[index * 2 + 1];
+            final float perimeter = perimeter(index);
+            final float combined = unionPerimeter(index, leaf);
+            // Cost of making a new parent for this node and the leaf
+            final float cost = 2 * combined;
+            // Minimum cost of pushing the leaf further down the tree
+            final float inheritance = 2 * (combined - perimeter);
+            final float cost1 = descendCost(child1, leaf) + inheritance;
+            final float cost2 = descendCost(child2, leaf) + inheritance;
+            if (cost < cost1 && cost < cost2)
+            {
+                break;
+            }
+            index = cost1 < cost2 ? child1 : child2;
+        }
+        final int sibling = index;
+        final int oldParent = parents[sibling];
+        final int newParent = allocate();
+        parents[newParent] = oldParent;
+        entities[newParent] = null;
+        heights[newParent] = heights[sibling] + 1;
+        union(newParent, sibling, leaf);
+        children[newParent * 2] = sibling;
+        children[newParent * 2 + 1] = leaf;
+        parents[sibling] = newParent;
+        parents[leaf] = newParent;
+        if (oldParent == AabbTree.NONE)
+        {
+            root = newParent;
+        } else
+        {
+            replaceChild(oldParent, sibling, newParent);
+        }
+        refit(newParent);
+    }
+
+    /**
+     * Builds a balanced subtree over the given leaves by splitting them at the
+     * median of their centers along the longer axis of the centers.
+     *
+     * @return The root of the subtree
+     */
+    private int build(final int[] leaves, final int start, final int end)
+    {
+        if (end - start == 1)
+        {
+            return leaves[start];
+        }
+        float lowX = Float.POSITIVE_INFINITY;
+        float lowY = Float.POSITIVE_INFINITY;
+        float highX = Float.NEGATIVE_INFINITY;
+        float highY = Float.NEGATIVE_INFINITY;
+        for (int i = start; i < end; i++)
+        {
+            final int leaf = leaves[i];
+            lowX = Math.min(lowX, center(leaf, true));
+            highX = Math.max(highX, center(leaf, true));
+            lowY = Math.min(lowY, center(leaf, false));
+            highY = Math.max(highY, center(leaf, false));
+        }
+        final boolean alongX = highX - lowX >= highY - lowY;
+        final int middle = start + end >>> 1;
+        select(leaves, start, end, middle, alongX);
+        final int child1 = build(leaves, start, middle);
+        final int child2 = build(leaves, middle, end);
+        final int node = allocate();
+        entities[node] = null;
+        children[node * 2] = child1;
+        children[node * 2 + 1] = child2;
+        parents[child1] = node;
+        parents[child2] = node;
+        heights[node] = 1 + Math.max(heights[child1], heights[child2]);
+        union(node, child1, child2);
+        return node;
+    }
+
+    /**
+     * Reorders the nodes in the range [start,end), so the node at the given
+     * position has the center, that it would have, if they were sorted, and
+     * no node before it has a greater and no node after it a smaller center.
+     */
+    private void select(final int[] nodes, final int start, final int end, final int position, final boolean alongX)
+    {
+        int low = start;
+        int high = end - 1;
+        while (low < high)
+        {
+            final float pivot = center(nodes[low + high >>> 1], alongX);
+            int i = low;
+            int j = high;
+            while (i <= j)
+            {
+                while (center(nodes[i], alongX) < pivot)
+                {
+                    i++;
+                }
+                while (center(nodes[j], alongX) > pivot)
+                {
+                    j--;
+                }
+                if (i <= j)
+                {
+                    final int swapped = nodes[i];
+                    nodes[i++] = nodes[j];
+                    nodes[j--] = swapped;
+                }
+            }
+            if (position <= j)
+            {
+                high = j;
+            } else if (position >= i)
+            {
+                low = i;
+            } else
+            {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return Twice the center of the box of the node on the given axis.
+     */
+    private float center(final int node, final boolean alongX)
+    {
+        return alongX ? minX[node] + maxX[node] : minY[node] + maxY[node];
+    }
+
+    private float descendCost(final int child, final int leaf)
+    {
+        final float combined = unionPerimeter(child, leaf);
+        return heights[child] == 0 ? combined : combined - perimeter(child);
+    }
+
+    private void removeLeaf(final int leaf)
+    {
+        if (leaf == root)
+        {
+            root = AabbTree.NONE;
+            return;
+        }
+        final int parent = parents[leaf];
+        final int grandParent = parents[parent];
+        final int sibling = children[parent * 2] == leaf ? children[parent * 2 + 1] : children[parent * 2];
+        parents[sibling] = grandParent;
+        free(parent);
+        if (grandParent == AabbTree.NONE)
+        {
+            root = sibling;
+        } else
+        {
+            replaceChild(grandParent, parent, sibling);
+            refit(grandParent);
+        }
+    }
+
+    /**
+     * Balances the nodes from the given one up to the root and recalculates
+     * their boxes and heights.
+     */
+    private void refit(final int start)
+    {
+        int index = start;
+        while (index != AabbTree.NONE)
+        {
+            index = balance(index);
+            final int child1 = children[index * 2];
+            final int child2 = children[index * 2 + 1];
+            heights[index] = 1 + Math.max(heights[child1], heights[child2]);
+            union(index, child1, child2);
+            index = parents[index];
+        }
+    }
+
+    /**
+     * Rotates the higher grandchild of an unbalanced node up.
+     *
+     * @return The node, that took the place of the given one
+     */
+    private int balance(final int a)
+    {
+        if (heights[a] < 2)
+        {
+            return a;
+        }
+        final int b = children[a * 2];
+        final int c = children[a * 2 + 1];
+        final int difference = heights[c] - heights[b];
+        if (difference > 1)
+        {
+            return rotate(a, c, a * 2 + 1);
+        }
+        if (difference < -1)
+        {
+            return rotate(a, b, a * 2);
+        }
+        return a;
+    }
+
+    /**
+     * Moves the higher child of the given child of the node up into the
+     * place of the node. The node keeps its other child and takes the lower
+     * grandchild instead.
+     */
+    private int rotate(final int node, final int child, final int childSlot)
+    {
+        final int first = children[child * 2];
+        final int second = children[child * 2 + 1];
+        final int other = children[node * 2 + 1 - (childSlot - node * 2)];
+        children[child * 2] = node;
+        parents[child] = parents[node];
+        parents[node] = child;
+        if (parents[child] == AabbTree.NONE)
+        {
+            root = child;
+        } else
+        {
+            replaceChild(parents[child], node, child);
+        }
+        final int higher = heights[first] > heights[second] ? first : second;
+        final int lower = higher == first ? second : first;
+        children[child * 2 + 1] = higher;
+        children[childSlot] = lower;
+        parents[lower] = node;
+        union(node, other, lower);
+        union(child, node, higher);
+        heights[node] = 1 + Math.max(heights[other], heights[lower]);
+        heights[child] = 1 + Math.max(heights[node], heights[higher]);
+        return child;
+    }
+
+    private void replaceChild(final int parent, final int oldChild, final int newChild)
+    {
+        mark(parent);
+        if (children[parent * 2] == oldChild)
+        {
+            children[parent * 2] = newChild;
+        } else
+        {
+            children[parent * 2 + 1] = newChild;
+        }
+    }
+
+    private void union(final int target, final int a, final int b)
+    {
+        mark(target);
+        minX[target] = Math.min(minX[a], minX[b]);
+        minY[target] = Math.min(minY[a], minY[b]);
+        maxX[target] = Math.max(maxX[a], maxX[b]);
+        maxY[target] = Math.max(maxY[a], maxY[b]);
+        summaries[target] = summaries[a] | summaries[b];
+    }
+
+    private float perimeter(final int node)
+    {
+        return 2 * (maxX[node] - minX[node] + maxY[node] - minY[node]);
+    }
+
+    private float unionPerimeter(final int a, final int b)
+    {
+        return 2 * (Math.max(maxX[a], maxX[b]) - Math.min(minX[a], minX[b]) + Math.max(maxY[a], maxY[b])
+                - Math.min(minY[a], minY[b]));
+    }
+
+    private int allocate()
+    {
+        if (freeList != AabbTree.NONE)
+        {
+            final int node = freeList;
+            freeList = parents[node];
+            return node;
+        }
+        if (nodeCount == heights.length)
+        {
+            final int size = nodeCount * 2;
+            minX = Arrays.copyOf(minX, size);
+            minY = Arrays.copyOf(minY, size);
+            maxX = Arrays.copyOf(maxX, size);
+            maxY = Arrays.copyOf(maxY, size);
+            parents = Arrays.copyOf(parents, size);
+            children = Arrays.copyOf(children, size * 2);
+            heights = Arrays.copyOf(heights, size);
+            entities = Arrays.copyOf(entities, size);
+            summaries = Arrays.copyOf(summaries, size);
+            stamps = Arrays.copyOf(stamps, size);
+        }
+        return nodeCount++;
+    }
+
+    private void free(final int node)
+    {
+        mark(node);
+        entities[node] = null;
+        heights[node] = -1;
+        parents[node] = freeList;
+        freeList = node;
+    }
+
+    /**
+     * Records a node, that changed since the last publication. Every node,
+     * whose box, children, height, summary or entity changes, is recorded.
+     */
+    private void mark(final int node)
+    {
+        // The frame of the next publication
+        final long next = frame + 1;
+        if (stamps[node] == next)
+        {
+            return;
+        }
+        stamps[node] = next;
+        if (changedCount == changed.length)
+        {
+            changed = Arrays.copyOf(changed, changedCount * 2);
+        }
+        changed[changedCount++] = node;
+    }
+}
@@ -0,0 +1,207 @@
+package vine.game.scene;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Contiguous storage of all entities of a scene, that have the same set of
+ * component types. Every component type of the archetype has its own column,
+ * the components of one entity share the same row in all columns.
+ * <p>
+ * If an entity has more than one component of a type, the column contains the
+ * first of them. All components are still available through the entity.
+ * </p>
+ */
+public final class Archetype
+{
+    private static final int                                 INITIAL_CAPACITY = 16;
+    private static final int                                 MISSING          = -1;
+
+    private final Class<? extends Component>[]               types;
+    private final Component[][]                              columns;
+    private GameEntity[]                                     entities;
+    private int                                              size;
+    /**
+     * The archetypes an entity moves to, if a component of a type, that isn't
+     * part of this archetype, is attached or a type of this archetype is
+     * removed.
+     */
+    private final Map<Class<? extends Component>, Archetype> additions        = new IdentityHashMap<>();
+    private final Map<Class<? extends Component>, Archetype> removals         = new IdentityHashMap<>();
+    /**
+     * Column of every looked up type, including supertypes and types, that
+     * aren't part of this archetype. Read concurrently by parallel updates.
+     */
+    private final Map<Class<?>, Integer>                     lookup           = new ConcurrentHashMap<>();
+
+    Archetype(final Class<? extends Component>[] types)
+    {
+        this.types = types;
+        columns = new Component[types.length][Archetype.INITIAL_CAPACITY];
+        entities = new GameEntity[Archetype.INITIAL_CAPACITY];
+    }
+
+    /**
+     * @return The number of entities in this archetype.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @param row
+     *            A row in the range [0,size)
+     * @return The entity, that occupies the row. Rows change, when entities
+     *         leave the archetype.
+     */
+    public GameEntity getEntity(final int row)
+    {
+        return entities[row];
+    }
+
+    /**
+     * @return The number of component types of this archetype.
+     */
+    public int getTypeCount()
+    {
+        return types.length;
+    }
+
+    /**
+     * @param column
+     *            A column in the range [0,getTypeCount())
+     * @return The component type stored in the column.
+     */
+    public Class<? extends Component> getType(final int column)
+    {
+        return types[column];
+    }
+
+    /**
+     * @param type
+     *            A component type or one of its supertypes
+     * @return The first column, that stores components of the given type or
+     *         -1, if the archetype doesn't contain such components.
+     */
+    public int getColumn(final Class<?> type)
+    {
+        final Integer column = lookup.get(type);
+        if (column != null)
+        {
+            return column;
+        }
+        int found = Archetype.MISSING;
+        for (int i = 0; i < types.length; i++)
+        {
+            if (type.isAssignableFrom(types[i]))
+            {
+                found = i;
+                break;
+            }
+        }
+        lookup.put(type, found);
+        return found;
+    }
+
+    /**
+     * @param column
+     *            The column of the component type
+     * @param row
+     *            The row of the entity
+     * @return The component of the entity in the given column.
+     */
+    public Component getComponent(final int column, final int row)
+    {
+        return columns[column][row];
+    }
+
+    boolean contains(final Class<? extends Component> type)
+    {
+        return Arrays.binarySearch(types, type, ComponentStore.TYPE_ORDER) >= 0;
+    }
+
+    Class<? extends Component>[] getTypes()
+    {
+        return types;
+    }
+
+    Archetype getAddition(final Class<? extends Component> type)
+    {
+        return additions.get(type);
+    }
+
+    void setAddition(final Class<? extends Component> type, final Archetype archetype)
+    {
+        additions.put(type, archetype);
+    }
+
+    Archetype getRemoval(final Class<? extends Component> type)
+    {
+        return removals.get(type);
+    }
+
+    void setRemoval(final Class<? extends Component> type, final Archetype archetype)
+    {
+        removals.put(type, archetype);
+    }
+
+    /**
+     * Adds the entity in a new row and fills its columns with the first
+     * component of the entity of every type.
+     *
+     * @return The row of the entity
+     */
+    int add(final GameEntity entity)
+    {
+        if (size == entities.length)
+        {
+            final int capacity = size * 2;
+            entities = Arrays.copyOf(entities, capacity);
+            for (int i = 0; i < columns.length; i++)
+            {
+                columns[i] = Arrays.copyOf(columns[i], capacity);
+            }
+        }
+        entities[size] = entity;
+        for (int i = 0; i < types.length; i++)
+        {
+            columns[i][size] = entity.findComponent(types[i]);
+        }
+        return size++;
+    }
+
+    /**
+     * Removes the row by moving the last row into it.
+     *
+     * @return The entity, that was moved into the removed row or null, if the
+     *         removed row was the last one.
+     */
+    GameEntity remove(final int row)
+    {
+        final int last = --size;
+        GameEntity moved = null;
+        if (row != last)
+        {
+            moved = entities[last];
+            entities[row] = moved;
+            for (final Component[] column : columns)
+            {
+                column[row] = column[last];
+            }
+        }
+        entities[last] = null;
+        for (final Component[] column : columns)
+        {
+            column[last] = null;
+        }
+        return moved;
+    }
+
+    void setComponent(final Class<? extends Component> type, final int row, final Component component)
+    {
+        columns[Arrays.binarySearch(types, type, ComponentStore.TYPE_ORDER)][row] = component;
+    }
+}
@@ -1,43 +1,68 @@
 package vine.game.scene;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 import vine.math.GMath;
 
 /**
+ * A cell of the {@link SpatialHash} of a scene.
+ * 
  * @author Steffen
  *
  */
 public class Chunk
 {
-    boolean                               isActive;
-    int                                   width;
-    int                                   height;
-    final int                             tileWidth;
-    final int                             tileHeight;
-    final int                             divisionX;
-    final int                             divisionY;
-    final List<List<GameEntity>>          spatialGraph;
+    boolean                        isActive;
+    int                            width;
+    int                            height;
+    final int                      tileWidth;
+    final int                      tileHeight;
+    final int                      divisionX;
+    final int                      divisionY;
+    final List<List<GameEntity>>   spatialGraph;
+    private final int              cellX;
+    private final int              cellY;
     /**
-     * Entities of the chunk.
+     * The index of the chunk in the dense array of its spatial hash.
      */
-    private Collection<GameEntity>        entities       = new ArrayList<>();
-    private final Map<String, GameEntity> entitiesMapped = new ConcurrentHashMap<>();
+    int                            index;
+    /**
+     * Entities of the chunk. Every entity knows its slot, so it's removed by
+     * moving the last entity into its place.
+     */
+    private final List<GameEntity> entities = new ArrayList<>();
+    /**
+     * True, if the chunk is too far away from all cameras and players to be
+     * simulated.
+     */
+    private boolean                sleeping;
+    /**
+     * The time, that passed since the chunk fell asleep.
+     */
+    private float                  dormantTime;
+    /**
+     * The time, that the entities of the chunk have to catch up in the
+     * current frame, because the chunk woke up.
+     */
+    private float                  catchUpTime;
 
-    public Chunk(final int width, final int height, final int divisionX, final int divisionY)
+    Chunk(
+            final int cellX,
+            final int cellY,
+            final int width,
+            final int height,
+            final int divisionX,
+            final int divisionY)
     {
+        this.cellX = cellX;
+        this.cellY = cellY;
         this.width = width;
         this.height = height;
         this.divisionX = divisionX;
         this.divisionY = divisionY;
-        assert this.width % divisionX == 0
-                && this.height % divisionY == 0 : "Chunk can only be divided into even parts";
-        tileWidth = this.width / divisionX;
-        tileHeight = this.height / divisionY;
+        tileWidth = (this.width + divisionX - 1) / divisionX;
+        tileHeight = (this.height + divisionY - 1) / divisionY;
         spatialGraph = new ArrayList<>(divisionX * divisionY);
         for (int j = 0; j < divisionY; j++)
         {
@@ -55,10 +80,10 @@ public class Chunk
         {
             createSubdivisionGraph();
         }
-        final int x = (int) (posX % width);
-        final int y = (int) (posY % height);
-        final int index = GMath.clamp(x / tileWidth + y / tileHeight * divisionX, 0, divisionX * divisionY);
-        return spatialGraph.get(index);
+        final int x = (int) (posX - (float) cellX * width);
+        final int y = (int) (posY - (float) cellY * height);
+        final int tile = GMath.clamp(x / tileWidth + y / tileHeight * divisionX, 0, divisionX * divisionY - 1);
+        return spatialGraph.get(tile);
     }
 
     public void createSubdivisionGraph()
@@ -83,19 +108,88 @@ public class Chunk
         }
     }
 
-    public void add(final GameEntity entity)
+    void add(final GameEntity entity)
+    {
+        entity.chunkSlot = entities.size();
+        entities.add(entity);
+    }
+
+    void remove(final GameEntity entity)
+    {
+        final GameEntity last = entities.remove(entities.size() - 1);
+        if (last != entity)
+        {
+            entities.set(entity.chunkSlot, last);
+            last.chunkSlot = entity.chunkSlot;
+        }
+        entity.chunkSlot = -1;
+    }
+
+    /**
+     * @return The x coordinate of the cell in multiples of the chunk width.
+     */
+    public int getCellX()
     {
-        entitiesMapped.put(entity.getName(), entity);
-        entities = entitiesMapped.values();
+        return cellX;
     }
 
-    public void remove(final GameEntity entity)
+    /**
+     * @return The y coordinate of the cell in multiples of the chunk height.
+     */
+    public int getCellY()
     {
-        entitiesMapped.remove(entity.getName());
-        entities = entitiesMapped.values();
+        return cellY;
     }
 
-    public Collection<GameEntity> getEntities()
+    public boolean isEmpty()
+    {
+        return entities.isEmpty();
+    }
+
+    /**
+     * Lets the chunk sleep or wakes it up at the beginning of a frame.
+     *
+     * @param awake
+     *            True, if the chunk is simulated in this frame
+     * @param delta
+     *            The time that passed since the last update
+     */
+    void updateSleeping(final boolean awake, final float delta)
+    {
+        catchUpTime = 0;
+        if (!awake)
+        {
+            sleeping = true;
+            dormantTime += delta;
+        } else if (sleeping)
+        {
+            sleeping = false;
+            catchUpTime = dormantTime;
+            dormantTime = 0;
+        }
+    }
+
+    /**
+     * @return True, if the entities of the chunk aren't simulated.
+     */
+    public boolean isSleeping()
+    {
+        return sleeping;
+    }
+
+    /**
+     * @return The time, that the entities of the chunk add to their update in
+     *         the frame, in which the chunk woke up, otherwise 0.
+     */
+    public float getCatchUpTime()
+    {
+        return catchUpTime;
+    }
+
+    /**
+     * @return The entities of the chunk. The list must not be modified.
+     */
+    public List<GameEntity> getEntities()
     {
         return entities;
     }
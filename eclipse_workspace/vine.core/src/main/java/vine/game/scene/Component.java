@@ -7,6 +7,11 @@ package vine.game.scene;
 public abstract class Component
 {
     protected GameEntity entity;
+    /**
+     * The position of this component in its batch of the component scheduler
+     * or -1, if it isn't scheduled.
+     */
+    int                  updateSlot = -1;
 
     /**
      * @return The entity this component is attached to
@@ -54,7 +59,18 @@ public abstract class Component
         return false;
     }
 
-    public abstract void onUpdate(final float delta);
+    /**
+     * Called once per frame, after the entities of the world were updated.
+     * Components of classes, that don't override this method, are never
+     * scheduled for updates.
+     *
+     * @param delta
+     *            The time that passed since the last update
+     */
+    public void onUpdate(final float delta)
+    {
+        //
+    }
 
     public abstract void onAttach();
 
@@ -63,4 +79,14 @@ public abstract class Component
     public abstract void onDeactivation();
 
     public abstract void onActivation();
+
+    /**
+     * Called, when the entity of this component is recycled. The component is
+     * detached from the entity afterwards. Release references to other
+     * objects here.
+     */
+    public void onReset()
+    {
+        //
+    }
 }
@@ -0,0 +1,112 @@
+package vine.game.scene;
+
+import java.util.Arrays;
+
+/**
+ * Iterates all entities of a component store, that have components of a fixed
+ * set of types. The matching archetypes are cached, so only archetypes, that
+ * were created since the last iteration, are checked.
+ * <p>
+ * Components must not be attached or detached during the iteration.
+ * </p>
+ */
+public final class ComponentQuery
+{
+    private final ComponentStore store;
+    private final Class<?>[]     types;
+    private Archetype[]          matches   = new Archetype[4];
+    /**
+     * The columns of the queried types in every matching archetype.
+     */
+    private int[][]              columns   = new int[4][];
+    private int                  matchCount;
+    private int                  checked;
+    private final Component[]    components;
+
+    /**
+     * Called for every entity, that matches the query.
+     */
+    @FunctionalInterface
+    public interface Visitor
+    {
+        /**
+         * @param entity
+         *            The matching entity
+         * @param components
+         *            The first component of the entity for every queried type
+         *            in the order of the query. The array is reused for the
+         *            next entity.
+         */
+        void visit(GameEntity entity, Component[] components);
+    }
+
+    ComponentQuery(final ComponentStore store, final Class<?>[] types)
+    {
+        this.store = store;
+        this.types = types.clone();
+        components = new Component[types.length];
+    }
+
+    /**
+     * @param visitor
+     *            Called for every matching entity
+     */
+    public void forEach(final Visitor visitor)
+    {
+        update();
+        for (int i = 0; i < matchCount; i++)
+        {
+            final Archetype archetype = matches[i];
+            final int[] typeColumns = columns[i];
+            for (int row = 0; row < archetype.size(); row++)
+            {
+                for (int k = 0; k < typeColumns.length; k++)
+                {
+                    components[k] = archetype.getComponent(typeColumns[k], row);
+                }
+                visitor.visit(archetype.getEntity(row), components);
+            }
+        }
+        Arrays.fill(components, null);
+    }
+
+    /**
+     * @return The number of matching entities.
+     */
+    public int count()
+    {
+        update();
+        int count = 0;
+        for (int i = 0; i < matchCount; i++)
+        {
+            count += matches[i].size();
+        }
+        return count;
+    }
+
+    private void update()
+    {
+        for (; checked < store.getArchetypeCount(); checked++)
+        {
+            final Archetype archetype = store.getArchetype(checked);
+            final int[] typeColumns = new int[types.length];
+            boolean match = true;
+            for (int k = 0; k < types.length && match; k++)
+            {
+                typeColumns[k] = archetype.getColumn(types[k]);
+                match = typeColumns[k] >= 0;
+            }
+            if (match)
+            {
+                if (matchCount == matches.length)
+                {
+                    matches = Arrays.copyOf(matches, matchCount * 2);
+                    columns = Arrays.copyOf(columns, matchCount * 2);
+                }
+                matches[matchCount] = archetype;
+                columns[matchCount] = typeColumns;
+                matchCount++;
+            }
+        }
+    }
+}
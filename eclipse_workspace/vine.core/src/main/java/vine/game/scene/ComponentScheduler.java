@@ -0,0 +1,162 @@
+package vine.game.scene;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import vine.game.CommandBuffer;
+import vine.util.reflection.Factories;
+
+/**
+ * Updates the components of a scene grouped by their class. Only classes, that
+ * override {@link Component#onUpdate(float)}, are scheduled, so components
+ * without update logic cost nothing per frame. The components of one class are
+ * updated in one loop over a packed array.
+ * <p>
+ * Structural changes are not thread safe. During the update the command buffer
+ * of the world is active, so attaching, detaching and destroying is deferred
+ * to the next sync point.
+ * </p>
+ */
+final class ComponentScheduler
+{
+    private static final ClassValue<Boolean> UPDATABLE = new ClassValue<Boolean>()
+    {
+        @Override
+        protected Boolean computeValue(final Class<?> type)
+        {
+            return Boolean.valueOf(
+                    Factories.overridesMethod(type, Component.class, "onUpdate", float.class));
+        }
+    };
+
+    private final Map<Class<?>, Batch>       batches   = new IdentityHashMap<>();
+    /**
+     * All batches in the order of their creation.
+     */
+    private final List<Batch>                ordered   = new ArrayList<>();
+
+    /**
+     * The updated components of one class.
+     */
+    private static final class Batch
+    {
+        private Component[] components = new Component[16];
+        private int         size;
+
+        void add(final Component component)
+        {
+            if (size == components.length)
+            {
+                components = Arrays.copyOf(components, size * 2);
+            }
+            component.updateSlot = size;
+            components[size++] = component;
+        }
+
+        void remove(final Component component)
+        {
+            final int slot = component.updateSlot;
+            final Component last = components[--size];
+            components[slot] = last;
+            last.updateSlot = slot;
+            components[size] = null;
+            component.updateSlot = -1;
+        }
+    }
+
+    /**
+     * @param type
+     *            A component class
+     * @return True, if the class overrides the update method of
+     *         {@link Component}.
+     */
+    static boolean isUpdatable(final Class<?> type)
+    {
+        return ComponentScheduler.UPDATABLE.get(type).booleanValue();
+    }
+
+    /**
+     * Schedules all components of the entity, that entered the scene.
+     */
+    void add(final GameEntity entity)
+    {
+        for (final Component component : entity.getComponentList())
+        {
+            attached(component);
+        }
+    }
+
+    /**
+     * Removes all components of the entity, that left the scene.
+     */
+    void remove(final GameEntity entity)
+    {
+        for (final Component component : entity.getComponentList())
+        {
+            detached(component);
+        }
+    }
+
+    /**
+     * Has to be called after the component was attached to an entity of the
+     * scene.
+     */
+    void attached(final Component component)
+    {
+        final Class<? extends Component> type = component.getClass();
+        if (component.updateSlot >= 0 || !ComponentScheduler.isUpdatable(type))
+        {
+            return;
+        }
+        Batch batch = batches.get(type);
+        if (batch == null)
+        {
+            batch = new Batch();
+            batches.put(type, batch);
+            ordered.add(batch);
+        }
+        batch.add(component);
+    }
+
+    /**
+     * Has to be called after the component was detached from an entity of the
+     * scene.
+     */
+    void detached(final Component component)
+    {
+        if (component.updateSlot >= 0)
+        {
+            batches.get(component.getClass()).remove(component);
+        }
+    }
+
+    /**
+     * Updates all scheduled components, whose entity isn't destroyed or
+     * sleeping. A command buffer has to be active.
+     *
+     * @param delta
+     *            The time that passed since the last update
+     */
+    void update(final float delta)
+    {
+        final CommandBuffer commands = CommandBuffer.getActive();
+        for (int i = 0; i < ordered.size(); i++)
+        {
+            final Batch batch = ordered.get(i);
+            final Component[] components = batch.components;
+            for (int j = 0; j < batch.size; j++)
+            {
+                final Component component = components[j];
+                final GameEntity entity = component.entity;
+                if (entity != null && !entity.isDestroyed() && !entity.isSleeping())
+                {
+                    commands.setUpdatedObject(entity);
+                    component.onUpdate(delta + entity.getCatchUpTime());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package vine.game.scene;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Groups the entities of a scene by the types of their components. Every
+ * entity of the scene is stored in exactly one archetype. Attaching or
+ * detaching a component of a new type moves the entity to another archetype,
+ * which is found by the cached transitions of its current archetype.
+ * <p>
+ * Structural changes are not thread safe. They happen, when components are
+ * attached and detached, which is deferred to the sync points during parallel
+ * updates.
+ * </p>
+ */
+public final class ComponentStore
+{
+    static final Comparator<Class<?>>            TYPE_ORDER = Comparator.comparing(Class::getName);
+
+    private final Map<List<Class<?>>, Archetype> archetypes = new HashMap<>();
+    /**
+     * All archetypes in the order of their creation. Archetypes are never
+     * removed, so queries only have to check the new ones.
+     */
+    private final List<Archetype>                ordered    = new ArrayList<>();
+    private final Archetype                      empty;
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    ComponentStore()
+    {
+        empty = getArchetype(new Class[0]);
+    }
+
+    /**
+     * @param types
+     *            The component types, all found entities have at least one
+     *            component of. Supertypes match all of their subtypes.
+     * @return A query, that iterates all matching entities of this store.
+     */
+    public ComponentQuery query(final Class<?>... types)
+    {
+        return new ComponentQuery(this, types);
+    }
+
+    /**
+     * @return The number of archetypes, that were created by this store.
+     */
+    public int getArchetypeCount()
+    {
+        return ordered.size();
+    }
+
+    /**
+     * @param index
+     *            An index in the range [0,getArchetypeCount())
+     * @return The archetype, that was created at the given position.
+     */
+    public Archetype getArchetype(final int index)
+    {
+        return ordered.get(index);
+    }
+
+    private Archetype getArchetype(final Class<? extends Component>[] types)
+    {
+        final List<Class<?>> key = Arrays.asList(types);
+        Archetype archetype = archetypes.get(key);
+        if (archetype == null)
+        {
+            archetype = new Archetype(types);
+            archetypes.put(key, archetype);
+            ordered.add(archetype);
+        }
+        return archetype;
+    }
+
+    /**
+     * Adds the entity to the archetype of its current components.
+     */
+    void add(final GameEntity entity)
+    {
+        if (entity.archetype != null)
+        {
+            return;
+        }
+        Archetype archetype = empty;
+        for (final Component component : entity.getComponentList())
+        {
+            archetype = with(archetype, component.getClass());
+        }
+        entity.archetype = archetype;
+        entity.archetypeRow = archetype.add(entity);
+    }
+
+    void remove(final GameEntity entity)
+    {
+        final Archetype archetype = entity.archetype;
+        if (archetype == null)
+        {
+            return;
+        }
+        final GameEntity moved = archetype.remove(entity.archetypeRow);
+        if (moved != null)
+        {
+            moved.archetypeRow = entity.archetypeRow;
+        }
+        entity.archetype = null;
+    }
+
+    /**
+     * Has to be called after the component was added to the entity.
+     */
+    void attached(final GameEntity entity, final Component component)
+    {
+        final Archetype archetype = entity.archetype;
+        if (archetype == null || archetype.contains(component.getClass()))
+        {
+            return;
+        }
+        move(entity, with(archetype, component.getClass()));
+    }
+
+    /**
+     * Has to be called after the component was removed from the entity.
+     */
+    void detached(final GameEntity entity, final Component component)
+    {
+        final Archetype archetype = entity.archetype;
+        final Class<? extends Component> type = component.getClass();
+        if (archetype == null || !archetype.contains(type))
+        {
+            return;
+        }
+        final Component remaining = entity.findComponent(type);
+        if (remaining != null)
+        {
+            archetype.setComponent(type, entity.archetypeRow, remaining);
+            return;
+        }
+        Archetype target = archetype.getRemoval(type);
+        if (target == null)
+        {
+            final Class<? extends Component>[] types = archetype.getTypes();
+            @SuppressWarnings({ "unchecked", "rawtypes" })
+            final Class<? extends Component>[] reduced = new Class[types.length - 1];
+            int i = 0;
+            for (final Class<? extends Component> existing : types)
+            {
+                if (existing != type)
+                {
+                    reduced[i++] = existing;
+                }
+            }
+            target = getArchetype(reduced);
+            archetype.setRemoval(type, target);
+            target.setAddition(type, archetype);
+        }
+        move(entity, target);
+    }
+
+    private Archetype with(final Archetype archetype, final Class<? extends Component> type)
+    {
+        if (archetype.contains(type))
+        {
+            return archetype;
+        }
+        Archetype target = archetype.getAddition(type);
+        if (target == null)
+        {
+            final Class<? extends Component>[] types = Arrays.copyOf(
+                    archetype.getTypes(),
+                    archetype.getTypes().length + 1);
+            types[types.length - 1] = type;
+            Arrays.sort(types, ComponentStore.TYPE_ORDER);
+            target = getArchetype(types);
+            archetype.setAddition(type, target);
+            target.setRemoval(type, archetype);
+        }
+        return target;
+    }
+
+    private void move(final GameEntity entity, final Archetype target)
+    {
+        remove(entity);
+        entity.archetype = target;
+        entity.archetypeRow = target.add(entity);
+    }
+}
@@ -0,0 +1,190 @@
+package vine.game.scene;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Selects the entities of spatial queries by their tags and component types.
+ * An entity matches, if it carries all tags and has components of all types
+ * of the filter.
+ * <p>
+ * Every filter and every node of the bounding volume hierarchy of a scene
+ * have a summary of 64 bits. The lower half contains a bit for every tag,
+ * the upper half a bit for every component type and its supertypes, both
+ * folded by their id. Subtrees, whose summary lacks a bit of the filter,
+ * can't contain a matching entity and are skipped.
+ * </p>
+ * <p>
+ * Filters are immutable and can be shared by any number of threads.
+ * </p>
+ */
+public final class EntityFilter
+{
+    /**
+     * Matches every entity.
+     */
+    public static final EntityFilter      ALL        = new EntityFilter(new int[0], new Class<?>[0]);
+
+    private static final int              TAG_BITS   = 32;
+    private static final AtomicInteger    TYPE_COUNT = new AtomicInteger();
+    /**
+     * The summary bit of every class.
+     */
+    private static final ClassValue<Long> CLASS_BITS = new ClassValue<Long>()
+    {
+        @Override
+        protected Long computeValue(final Class<?> type)
+        {
+            return 1L << EntityFilter.TAG_BITS + EntityFilter.TYPE_COUNT.getAndIncrement() % EntityFilter.TAG_BITS;
+        }
+    };
+    /**
+     * The bits of every class and all of its supertypes, so filters match
+     * subclasses of their component types.
+     */
+    private static final ClassValue<Long> TYPE_BITS  = new ClassValue<Long>()
+    {
+        @Override
+        protected Long computeValue(final Class<?> type)
+        {
+            long bits = EntityFilter.CLASS_BITS.get(type);
+            if (type.getSuperclass() != null && type.getSuperclass() != Object.class)
+            {
+                bits |= EntityFilter.TYPE_BITS.get(type.getSuperclass());
+            }
+            for (final Class<?> implemented : type.getInterfaces())
+            {
+                bits |= EntityFilter.TYPE_BITS.get(implemented);
+            }
+            return bits;
+        }
+    };
+
+    private final int[]                   tags;
+    private final Class<?>[]              types;
+    private final long                    summary;
+
+    private EntityFilter(final int[] tags, final Class<?>[] types)
+    {
+        this.tags = tags;
+        this.types = types;
+        long bits = 0;
+        for (final int tag : tags)
+        {
+            bits |= EntityFilter.tagBit(tag);
+        }
+        for (final Class<?> type : types)
+        {
+            bits |= EntityFilter.CLASS_BITS.get(type);
+        }
+        summary = bits;
+    }
+
+    /**
+     * @return A filter, that matches the entities, that carry all given tags.
+     */
+    public static EntityFilter withTags(final String... tags)
+    {
+        return EntityFilter.ALL.andTags(tags);
+    }
+
+    /**
+     * @return A filter, that matches the entities, that have components of
+     *         all given types.
+     */
+    public static EntityFilter withComponents(final Class<?>... types)
+    {
+        return EntityFilter.ALL.andComponents(types);
+    }
+
+    /**
+     * @return A filter, that additionally requires the given tags.
+     */
+    public EntityFilter andTags(final String... required)
+    {
+        final int[] combined = Arrays.copyOf(tags, tags.length + required.length);
+        for (int i = 0; i < required.length; i++)
+        {
+            combined[tags.length + i] = Tags.intern(required[i]);
+        }
+        return new EntityFilter(combined, types);
+    }
+
+    /**
+     * @return A filter, that additionally requires components of the given
+     *         types.
+     */
+    public EntityFilter andComponents(final Class<?>... required)
+    {
+        final Class<?>[] combined = Arrays.copyOf(types, types.length + required.length);
+        System.arraycopy(required, 0, combined, types.length, required.length);
+        return new EntityFilter(tags, combined);
+    }
+
+    /**
+     * @return True, if the entity carries all tags and has components of all
+     *         types of this filter.
+     */
+    public boolean matches(final GameEntity entity)
+    {
+        for (final int tag : tags)
+        {
+            if (!entity.containsTag(tag))
+            {
+                return false;
+            }
+        }
+        if (types.length == 0)
+        {
+            return true;
+        }
+        final Archetype archetype = entity.archetype;
+        if (archetype == null)
+        {
+            return false;
+        }
+        for (final Class<?> type : types)
+        {
+            if (archetype.getColumn(type) < 0)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The bits, that the summary of a subtree needs to contain a
+     *         matching entity.
+     */
+    long getSummary()
+    {
+        return summary;
+    }
+
+    /**
+     * @return The summary of the tags and component types of the entity.
+     */
+    static long summarize(final GameEntity entity)
+    {
+        long bits = 0;
+        for (int tag = entity.nextTag(0); tag >= 0; tag = entity.nextTag(tag + 1))
+        {
+            bits |= EntityFilter.tagBit(tag);
+        }
+        final Archetype archetype = entity.archetype;
+        if (archetype != null)
+        {
+            for (int i = 0; i < archetype.getTypeCount(); i++)
+            {
+                bits |= EntityFilter.TYPE_BITS.get(archetype.getType(i));
+            }
+        }
+        return bits;
+    }
+
+    private static long tagBit(final int tag)
+    {
+        return 1L << tag % EntityFilter.TAG_BITS;
+    }
+}
@@ -0,0 +1,243 @@
+package vine.game.scene;
+
+import java.util.Arrays;
+
+import vine.game.CommandBuffer;
+import vine.game.scene.GameEntity.ExecutionPayload;
+
+/**
+ * Ages the entities of a scene and executes their payloads. Entities, that
+ * live forever and have no payloads, aren't visited at all.
+ * <p>
+ * The expiration times of aging entities are kept in a binary heap, so a
+ * frame only looks at the entities, that expire. Payloads are kept in one
+ * packed array together with the handle of their entity. Payloads of
+ * entities, that left the scene, are dropped, when they would be executed
+ * next.
+ * </p>
+ * <p>
+ * Not thread safe. Changes during parallel updates are recorded into the
+ * active command buffer by the entities.
+ * </p>
+ */
+final class EntityScheduler
+{
+    private final Scene        scene;
+    /**
+     * The time, that passed since the creation of the scheduler, in the unit
+     * of the update delta.
+     */
+    private double             time;
+
+    private GameEntity[]       aging         = new GameEntity[16];
+    private int                agingCount;
+
+    private ExecutionPayload[] payloads      = new ExecutionPayload[16];
+    private GameEntity[]       payloadOwners = new GameEntity[16];
+    private long[]             ownerHandles  = new long[16];
+    private int                payloadCount;
+
+    EntityScheduler(final Scene scene)
+    {
+        this.scene = scene;
+    }
+
+    /**
+     * @return The time of the scheduler, that expiration times relate to.
+     */
+    double getTime()
+    {
+        return time;
+    }
+
+    /**
+     * Schedules the lifetime and the pending payloads of an entity, that
+     * entered the scene.
+     */
+    void add(final GameEntity entity)
+    {
+        lifetimeChanged(entity, entity.getLifetime());
+        final ExecutionPayload[] pending = entity.takePendingPayloads();
+        if (pending != null)
+        {
+            for (final ExecutionPayload payload : pending)
+            {
+                addPayload(entity, payload);
+            }
+        }
+    }
+
+    /**
+     * Stops aging of an entity, that left the scene. Its payloads are dropped
+     * lazily.
+     */
+    void remove(final GameEntity entity)
+    {
+        if (entity.lifetimeSlot >= 0)
+        {
+            entity.setRemainingLifetime((float) (entity.expiration - time));
+            removeAt(entity.lifetimeSlot);
+        }
+    }
+
+    /**
+     * Moves the entity in the heap of aging entities, after its lifetime was
+     * changed.
+     *
+     * @param entity
+     *            An entity of the scene
+     * @param lifetime
+     *            The new remaining lifetime of the entity or
+     *            {@link GameEntity#LIVE_FOREVER}
+     */
+    void lifetimeChanged(final GameEntity entity, final float lifetime)
+    {
+        if (lifetime == GameEntity.LIVE_FOREVER || entity.isDestroyed())
+        {
+            if (entity.lifetimeSlot >= 0)
+            {
+                removeAt(entity.lifetimeSlot);
+            }
+            return;
+        }
+        entity.expiration = time + lifetime;
+        if (entity.lifetimeSlot < 0)
+        {
+            if (agingCount == aging.length)
+            {
+                aging = Arrays.copyOf(aging, agingCount * 2);
+            }
+            place(entity, agingCount++);
+            siftUp(entity.lifetimeSlot);
+        } else
+        {
+            siftUp(entity.lifetimeSlot);
+            siftDown(entity.lifetimeSlot);
+        }
+    }
+
+    /**
+     * Adds a payload, that is executed every frame, until it returns true.
+     */
+    void addPayload(final GameEntity entity, final ExecutionPayload payload)
+    {
+        if (payloadCount == payloads.length)
+        {
+            payloads = Arrays.copyOf(payloads, payloadCount * 2);
+            payloadOwners = Arrays.copyOf(payloadOwners, payloadCount * 2);
+            ownerHandles = Arrays.copyOf(ownerHandles, payloadCount * 2);
+        }
+        payloads[payloadCount] = payload;
+        payloadOwners[payloadCount] = entity;
+        ownerHandles[payloadCount] = entity.getId();
+        payloadCount++;
+    }
+
+    /**
+     * Destroys all entities, whose lifetime ran out, and executes the
+     * payloads of all entities, that aren't sleeping. A command buffer has to
+     * be active.
+     *
+     * @param delta
+     *            The time that passed since the last update
+     */
+    void update(final float delta)
+    {
+        time += delta;
+        while (agingCount > 0 && aging[0].expiration <= time)
+        {
+            final GameEntity entity = aging[0];
+            removeAt(0);
+            entity.setRemainingLifetime(GameEntity.LIVE_FOREVER);
+            entity.destroy();
+        }
+        final CommandBuffer commands = CommandBuffer.getActive();
+        int i = 0;
+        while (i < payloadCount)
+        {
+            final GameEntity owner = payloadOwners[i];
+            boolean finished = owner.getId() != ownerHandles[i] || owner.getScene() != scene
+                    || owner.isDestroyed();
+            if (!finished && !owner.isSleeping())
+            {
+                commands.setUpdatedObject(owner);
+                finished = payloads[i].tick(delta + owner.getCatchUpTime());
+            }
+            if (finished)
+            {
+                final int last = --payloadCount;
+                payloads[i] = payloads[last];
+                payloadOwners[i] = payloadOwners[last];
+                ownerHandles[i] = ownerHandles[last];
+                payloads[last] = null;
+                payloadOwners[last] = null;
+            } else
+            {
+                i++;
+            }
+        }
+    }
+
+    private void removeAt(final int slot)
+    {
+        final GameEntity removed = aging[slot];
+        final int last = --agingCount;
+        if (slot != last)
+        {
+            final GameEntity moved = aging[last];
+            place(moved, slot);
+            siftUp(slot);
+            siftDown(moved.lifetimeSlot);
+        }
+        aging[last] = null;
+        removed.lifetimeSlot = -1;
+    }
+
+    private void siftUp(final int start)
+    {
+        final GameEntity entity = aging[start];
+        int slot = start;
+        while (slot > 0)
+        {
+            final int parent = slot - 1 >> 1;
+            if (aging[parent].expiration <= entity.expiration)
+            {
+                break;
+            }
+            place(aging[parent], slot);
+            slot = parent;
+        }
+        place(entity, slot);
+    }
+
+    private void siftDown(final int start)
+    {
+        final GameEntity entity = aging[start];
+        int slot = start;
+        while (true)
+        {
+            int child = slot * 2 + 1;
+            if (child >= agingCount)
+            {
+                break;
+            }
+            if (child + 1 < agingCount && aging[child + 1].expiration < aging[child].expiration)
+            {
+                child++;
+            }
+            if (entity.expiration <= aging[child].expiration)
+            {
+                break;
+            }
+            place(aging[child], slot);
+            slot = child;
+        }
+        place(entity, slot);
+    }
+
+    private void place(final GameEntity entity, final int slot)
+    {
+        aging[slot] = entity;
+        entity.lifetimeSlot = slot;
+    }
+}
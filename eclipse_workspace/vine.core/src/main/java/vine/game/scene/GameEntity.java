@@ -1,17 +1,15 @@
 package vine.game.scene;
 
-import vine.math.GMath;
 import vine.math.vector.MutableVec2f;
 import vine.math.vector.Vec2f;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
+import vine.game.CommandBuffer;
 import vine.game.GameObject;
 import vine.game.Transform;
 import vine.game.World;
@@ -33,34 +31,58 @@ public class GameEntity extends GameObject
     public static final float                            LIVE_FOREVER        = -1;
     /**
      * The lifetime of this entity. This value is literally the time the entity
-     * will live.
+     * will live. While the entity is part of a scene, the scene ages it and
+     * this is the lifetime at the time it was last set.
      */
     private float                                        lifetime            = GameEntity.LIVE_FOREVER;
+    /**
+     * The time of the scheduler of the scene, at which this entity is
+     * destroyed, and the position in its heap or -1, if it isn't aging.
+     */
+    double                                               expiration;
+    int                                                  lifetimeSlot        = -1;
     /**
      * The scene that contains this entity.
      */
     private Scene                                        scene;
     /**
-     * The gameplay tags of this entity. It's faster to search after a amount of
-     * entity that share the same tag than search after objects of the same
-     * class.
+     * The gameplay tags of this entity as bits indexed by their interned id.
+     * The scene indexes its entities by tag, so searching all entities, that
+     * share a tag, is faster than searching after objects of the same class.
      */
-    private final List<String>                           tags                = new ArrayList<>();
+    private long[]                                       tags                = GameEntity.NO_TAGS;
+    private static final long[]                          NO_TAGS             = new long[0];
     /**
      * The components of this entity. The components dynamically extend the
      * functionality of this entity.
      */
-    private final Set<Component>                         components          = new HashSet<>(10);
-    private final Map<Class<?>, Component>               componentCache      = new HashMap<>();
+    private final List<Component>                        components          = new ArrayList<>(4);
+    /**
+     * The archetype of the scene, that stores the components of this entity
+     * or null, if the entity isn't part of a scene.
+     */
+    Archetype                                            archetype;
+    int                                                  archetypeRow;
+    /**
+     * The leaf of this entity in the bounding volume hierarchy of its scene
+     * or -1.
+     */
+    int                                                  treeProxy           = -1;
+    /**
+     * True, if the entity moved or changed its bounding box since its scene
+     * last updated its chunk and its leaf.
+     */
+    boolean                                              moved;
     private final Set<Renderable>                        renderables         = new ConcurrentManagedSet<>(
             new HashSet<>());
     /**
      * The Chunk that the entity exists in.
      */
     private Chunk                                        currentChunk;
-    private int                                          chunkX              = -1;
-    private int                                          chunkY              = -1;
-    private final int                                    numberOfChunks      = 10;
+    /**
+     * The slot of this entity in the entities of its chunk or -1.
+     */
+    int                                                  chunkSlot           = -1;
 
     // Position
     private final Transform                              transform           = new Transform();
@@ -79,20 +101,73 @@ public class GameEntity extends GameObject
     private final Color                                  color               = new Color(0, 0, 0, 0);
 
     private boolean                                      moveable            = true;
+    /**
+     * The timers of flash and wait. They capture this entity, so they are
+     * cancelled, when it is reset for its next use.
+     */
+    private long                                         flashTimer          = TimerManager.INVALID_HANDLE;
+    private long                                         waitTimer           = TimerManager.INVALID_HANDLE;
 
-    private final ConcurrentManagedSet<ExecutionPayload> executionList       = new ConcurrentManagedSet<>(
-            new HashSet<>());
+    /**
+     * Payloads, that were added before the entity entered a scene.
+     */
+    private ExecutionPayload[]                           pendingPayloads;
     private final List<Primitive>                        collisionComponents = new ArrayList<>();
 
+    /**
+     * Entities are updated in parallel by default, because the default update
+     * only changes the entity itself.
+     */
+    public GameEntity()
+    {
+        super();
+        setParallelUpdate(true);
+        transform.setChangeListener(changed -> markMoved());
+    }
+
     @FunctionalInterface
     public interface ExecutionPayload
     {
         boolean tick(float delta);
     }
 
+    /**
+     * Adds a payload, that is executed once per frame by the scene of this
+     * entity, until it returns true or the entity leaves the scene. If called
+     * during a parallel update, the payload is added at the next sync point.
+     */
     public void addExecutionPayload(final ExecutionPayload payload)
     {
-        executionList.add(payload);
+        if (payload == null || isDestroyed())
+        {
+            return;
+        }
+        if (archetype == null)
+        {
+            pendingPayloads = pendingPayloads == null ? new ExecutionPayload[] { payload }
+                    : Arrays.copyOf(pendingPayloads, pendingPayloads.length + 1);
+            pendingPayloads[pendingPayloads.length - 1] = payload;
+            return;
+        }
+        final CommandBuffer commands = CommandBuffer.getActive();
+        if (commands != null)
+        {
+            final Scene target = scene;
+            commands.execute(() -> target.getEntityScheduler().addPayload(this, payload));
+            return;
+        }
+        scene.getEntityScheduler().addPayload(this, payload);
+    }
+
+    /**
+     * @return The payloads, that were added before the entity entered the
+     *         scene, or null. The entity forgets them.
+     */
+    final ExecutionPayload[] takePendingPayloads()
+    {
+        final ExecutionPayload[] pending = pendingPayloads;
+        pendingPayloads = null;
+        return pending;
     }
 
     public final boolean isMoveable()
@@ -120,7 +195,7 @@ public class GameEntity extends GameObject
      */
     public final float getXPosition()
     {
-        return transform.getWorldPosition().getX();
+        return transform.getWorldX();
     }
 
     /**
@@ -128,7 +203,25 @@ public class GameEntity extends GameObject
      */
     public final float getYPosition()
     {
-        return transform.getWorldPosition().getY();
+        return transform.getWorldY();
+    }
+
+    /**
+     * @return The x Coordinate in Worldspace of this entity interpolated
+     *         between the last two simulation steps. Use this for rendering.
+     */
+    public final float getInterpolatedXPosition()
+    {
+        return transform.getInterpolatedX(getWorld().getInterpolationAlpha());
+    }
+
+    /**
+     * @return The y Coordinate in Worldspace of this entity interpolated
+     *         between the last two simulation steps. Use this for rendering.
+     */
+    public final float getInterpolatedYPosition()
+    {
+        return transform.getInterpolatedY(getWorld().getInterpolationAlpha());
     }
 
     /**
@@ -144,8 +237,18 @@ public class GameEntity extends GameObject
         return transform.getWorldPosition();
     }
 
+    /**
+     * Moves this entity. If called during the parallel update of another
+     * entity, the entity is moved at the next sync point.
+     */
     public final void addPosition(final float x, final float y)
     {
+        final CommandBuffer commands = CommandBuffer.getActive();
+        if (commands != null && commands.isForeign(this))
+        {
+            commands.addPosition(this, x, y);
+            return;
+        }
         transform.translate(x, y);
     }
 
@@ -154,12 +257,36 @@ public class GameEntity extends GameObject
         return currentChunk;
     }
 
+    /**
+     * @return True, if the chunk of this entity is too far away from the
+     *         cameras and players to be simulated.
+     */
+    public final boolean isSleeping()
+    {
+        return currentChunk != null && currentChunk.isSleeping();
+    }
+
+    /**
+     * @return The time, that this entity adds to its update in the frame, in
+     *         which its chunk woke up, otherwise 0.
+     */
+    public final float getCatchUpTime()
+    {
+        return currentChunk == null ? 0 : currentChunk.getCatchUpTime();
+    }
+
     /**
      * Sets the position of this entity in Worldspace Coordinates.
      */
     public final void setPosition(final float x, final float y)
     {
-        transform.translate(x - transform.getWorldPosition().getX(), y - transform.getWorldPosition().getY());
+        final CommandBuffer commands = CommandBuffer.getActive();
+        if (commands != null && commands.isForeign(this))
+        {
+            commands.setPosition(this, x, y);
+            return;
+        }
+        transform.translate(x - transform.getWorldX(), y - transform.getWorldY());
     }
 
     public void setZ(final float z)
@@ -187,7 +314,8 @@ public class GameEntity extends GameObject
         } else
         {
             final Color originColor = this.color;
-            TimerManager.get().createTimer(duration, 1, () -> dye(originColor));
+            TimerManager.get().cancelTimer(flashTimer);
+            flashTimer = TimerManager.get().createTimer(duration, 1, () -> dye(originColor));
             dye(color);
         }
     }
@@ -229,6 +357,21 @@ public class GameEntity extends GameObject
     {
         boundingBoxExtends.setX(x);
         boundingBoxExtends.setY(y);
+        markMoved();
+    }
+
+    /**
+     * Records this entity in the moved entities of its scene, which updates
+     * its chunk and its leaf at the beginning of the next frame. Entities,
+     * that are moved again in the same frame, are recorded only once.
+     */
+    private void markMoved()
+    {
+        if (!moved && treeProxy != AabbTree.NONE)
+        {
+            moved = true;
+            scene.markMoved(this);
+        }
     }
 
     /**
@@ -267,7 +410,17 @@ public class GameEntity extends GameObject
      */
     public final boolean containsTag(final String tag)
     {
-        return tag == null ? false : tags.contains(tag);
+        return tag == null ? false : containsTag(Tags.find(tag));
+    }
+
+    /**
+     * @param tag
+     *            The id of the tag, that is looked for
+     * @return true, if this entity contains the given tag
+     */
+    public final boolean containsTag(final int tag)
+    {
+        return tag >= 0 && tag >> 6 < tags.length && (tags[tag >> 6] & 1L << tag) != 0;
     }
 
     /**
@@ -276,10 +429,28 @@ public class GameEntity extends GameObject
      */
     public final void addTag(final String tag)
     {
-        if (tag != null && !containsTag(tag))
+        if (tag != null)
+        {
+            addTag(Tags.intern(tag));
+        }
+    }
+
+    /**
+     * @param tag
+     *            The id of the tag that should be added to this object
+     */
+    public final void addTag(final int tag)
+    {
+        if (tag < 0 || containsTag(tag))
+        {
+            return;
+        }
+        if (tag >> 6 >= tags.length)
         {
-            tags.add(tag);
+            tags = Arrays.copyOf(tags, (tag >> 6) + 1);
         }
+        tags[tag >> 6] |= 1L << tag;
+        tagsChanged(tag);
     }
 
     /**
@@ -290,10 +461,69 @@ public class GameEntity extends GameObject
     {
         if (tag != null)
         {
-            tags.remove(tag);
+            removeTag(Tags.find(tag));
         }
     }
 
+    /**
+     * @param tag
+     *            The id of the tag should be removed from this object
+     */
+    public final void removeTag(final int tag)
+    {
+        if (!containsTag(tag))
+        {
+            return;
+        }
+        tags[tag >> 6] &= ~(1L << tag);
+        tagsChanged(tag);
+    }
+
+    /**
+     * Updates the tag index of the scene. Deferred to the next sync point, if
+     * called during a parallel update.
+     */
+    private void tagsChanged(final int tag)
+    {
+        if (scene == null)
+        {
+            return;
+        }
+        final CommandBuffer commands = CommandBuffer.getActive();
+        if (commands != null)
+        {
+            final Scene target = scene;
+            commands.execute(() -> target.updateTag(this, tag));
+            return;
+        }
+        scene.updateTag(this, tag);
+    }
+
+    /**
+     * @param from
+     *            The first tag id, that is checked
+     * @return The id of the first tag of this entity, that is equal or
+     *         greater than the given id or -1, if there is none.
+     */
+    final int nextTag(final int from)
+    {
+        int word = from >> 6;
+        if (word >= tags.length)
+        {
+            return -1;
+        }
+        long bits = tags[word] & -1L << from;
+        while (bits == 0)
+        {
+            if (++word == tags.length)
+            {
+                return -1;
+            }
+            bits = tags[word];
+        }
+        return (word << 6) + Long.numberOfTrailingZeros(bits);
+    }
+
     /**
      * @param type
      *            The type by which components are searched
@@ -336,10 +566,10 @@ public class GameEntity extends GameObject
      */
     public final <T extends Component> T getComponent(final Class<T> type)
     {
-        final Component comp = componentCache.get(type);
-        if (comp != null)
+        if (archetype != null)
         {
-            return type.cast(comp);
+            final int column = archetype.getColumn(type);
+            return column < 0 ? null : type.cast(archetype.getComponent(column, archetypeRow));
         }
         for (final Component component : components)
         {
@@ -352,7 +582,8 @@ public class GameEntity extends GameObject
     }
 
     /**
-     * Attaches the component to this entity
+     * Attaches the component to this entity. If called during a parallel
+     * update, the component is attached at the next sync point.
      */
     public final void attachComponent(final Component component)
     {
@@ -360,9 +591,24 @@ public class GameEntity extends GameObject
         {
             return;
         }
+        final CommandBuffer commands = CommandBuffer.getActive();
+        if (commands != null)
+        {
+            commands.attachComponent(this, component);
+            return;
+        }
+        if (components.contains(component))
+        {
+            return;
+        }
         components.add(component);
         component.attachTo(this);
-        componentCache.put(component.getClass(), component);
+        if (archetype != null)
+        {
+            scene.getComponentStore().attached(this, component);
+            scene.getComponentScheduler().attached(component);
+            scene.getBounds().refreshSummary(this);
+        }
         component.onAttach();
         if (component instanceof Renderable)
         {
@@ -375,7 +621,8 @@ public class GameEntity extends GameObject
     }
 
     /**
-     * Detaches the given component from this entity
+     * Detaches the given component from this entity. If called during a
+     * parallel update, the component is detached at the next sync point.
      */
     public final void detachComponent(final Component component)
     {
@@ -383,9 +630,17 @@ public class GameEntity extends GameObject
         {
             return;
         }
-        if (components.remove(component) && componentCache.containsValue(component))
+        final CommandBuffer commands = CommandBuffer.getActive();
+        if (commands != null)
         {
-            componentCache.remove(component.getClass());
+            commands.detachComponent(this, component);
+            return;
+        }
+        if (components.remove(component) && archetype != null)
+        {
+            scene.getComponentStore().detached(this, component);
+            scene.getComponentScheduler().detached(component);
+            scene.getBounds().refreshSummary(this);
         }
         if (component instanceof Renderable)
         {
@@ -406,32 +661,78 @@ public class GameEntity extends GameObject
     }
 
     /**
-     * Clears the cache of this entity.
+     * @return The components of this entity in the order they were attached.
      */
-    public final void clearComponentCache()
+    final List<Component> getComponentList()
     {
-        componentCache.clear();
+        return components;
     }
 
-    public void setCurrentChunk()
+    /**
+     * @param type
+     *            The exact type of the searched component
+     * @return The first attached component of exactly the given type or null.
+     */
+    final Component findComponent(final Class<? extends Component> type)
     {
-        final int x = (int) transform.getWorldPosition().getX() / 1400;
-        final int y = (int) transform.getWorldPosition().getY() / 800;
-        if (chunkX != x || chunkY != y)
+        for (final Component component : components)
         {
-            if (currentChunk != null)
+            if (component.getClass() == type)
             {
-                currentChunk.remove(this);
+                return component;
             }
-            chunkX = GMath.clamp(x, 0, numberOfChunks - 1);
-            chunkY = GMath.clamp(y, 0, numberOfChunks - 1);
-            currentChunk = scene.getChunk(chunkX, chunkY);
+        }
+        return null;
+    }
+
+    /**
+     * Moves this entity into the chunk of the spatial hash of its scene, that
+     * contains its position. Has to be called at a sync point.
+     */
+    public void setCurrentChunk()
+    {
+        final SpatialHash grid = scene.getSpatialHash();
+        final int x = grid.getCellX(transform.getWorldX());
+        final int y = grid.getCellY(transform.getWorldY());
+        if (currentChunk == null || currentChunk.getCellX() != x || currentChunk.getCellY() != y)
+        {
+            leaveChunk();
+            currentChunk = grid.get(x, y);
             currentChunk.add(this);
         }
     }
 
+    /**
+     * Removes this entity from its chunk.
+     */
+    final void leaveChunk()
+    {
+        if (currentChunk != null)
+        {
+            currentChunk.remove(this);
+            currentChunk = null;
+        }
+    }
+
+    /**
+     * @return The dense index of the chunk, the entity was last assigned to,
+     *         in the spatial hash of its scene or -1. The index only changes
+     *         at the beginning of a frame, when empty chunks are released.
+     */
+    public final int getChunkIndex()
+    {
+        return currentChunk == null ? -1 : currentChunk.index;
+    }
+
+    /**
+     * @return The remaining lifetime of this entity or LIVE_FOREVER.
+     */
     public float getLifetime()
     {
+        if (lifetimeSlot >= 0)
+        {
+            return (float) (expiration - scene.getEntityScheduler().getTime());
+        }
         return lifetime;
     }
 
@@ -444,6 +745,7 @@ public class GameEntity extends GameObject
         if (lifetime >= 0 || lifetime == GameEntity.LIVE_FOREVER)
         {
             this.lifetime = lifetime;
+            lifetimeChanged();
         }
     }
 
@@ -457,12 +759,44 @@ public class GameEntity extends GameObject
         {
             return;
         }
-        this.lifetime += lifetime;
-        if (getLifetime() <= 0)
+        this.lifetime = getLifetime() + lifetime;
+        if (this.lifetime <= 0)
         {
             this.lifetime = GameEntity.LIVE_FOREVER;
+            lifetimeChanged();
             destroy();
+            return;
         }
+        lifetimeChanged();
+    }
+
+    /**
+     * Sets the lifetime without rescheduling the entity.
+     */
+    final void setRemainingLifetime(final float lifetime)
+    {
+        this.lifetime = lifetime;
+    }
+
+    /**
+     * Reschedules the entity in its scene. Deferred to the next sync point, if
+     * called during a parallel update.
+     */
+    private void lifetimeChanged()
+    {
+        if (archetype == null)
+        {
+            return;
+        }
+        final float remaining = lifetime;
+        final CommandBuffer commands = CommandBuffer.getActive();
+        if (commands != null)
+        {
+            final Scene target = scene;
+            commands.execute(() -> target.getEntityScheduler().lifetimeChanged(this, remaining));
+            return;
+        }
+        scene.getEntityScheduler().lifetimeChanged(this, remaining);
     }
 
     public final boolean isAging()
@@ -478,7 +812,8 @@ public class GameEntity extends GameObject
         {
             component.onDeactivation();
         }
-        TimerManager.get().createTimer(seconds, 1, () ->
+        TimerManager.get().cancelTimer(waitTimer);
+        waitTimer = TimerManager.get().createTimer(seconds, 1, () ->
         {
             activate();
             for (final Component component : components)
@@ -488,30 +823,13 @@ public class GameEntity extends GameObject
         });
     }
 
+    /**
+     * Lifetime and payloads are handled by the scene.
+     */
     @Override
     public void onUpdate(final float delta)
     {
-        if (isAging())
-        {
-            addLifetime(-delta);
-            if (isDestroyed())
-            {
-                return;
-            }
-        }
-
-        for (final ExecutionPayload payload : executionList.getIterable())
-        {
-            if (payload.tick(delta))
-            {
-                executionList.remove(payload);
-            }
-        }
-
-        for (final Component component : components)
-        {
-            component.onUpdate(delta);
-        }
+        //
     }
 
     @Override
@@ -524,6 +842,50 @@ public class GameEntity extends GameObject
     protected void onDestroy()
     {
         scene.removeEntity(this);
+        for (final Primitive primitive : collisionComponents)
+        {
+            if (primitive.getTransform() != null && primitive.getTransform() != transform)
+            {
+                primitive.getTransform().release();
+            }
+        }
+        transform.release();
+    }
+
+    /**
+     * Detaches all components and restores the state of a new entity. Called
+     * before a destroyed entity is reused.
+     */
+    @Override
+    protected void onReset()
+    {
+        for (final Component component : components)
+        {
+            component.onDetach();
+            component.onReset();
+            component.entity = null;
+        }
+        components.clear();
+        collisionComponents.clear();
+        for (final Renderable renderable : renderables)
+        {
+            renderables.remove(renderable);
+        }
+        pendingPayloads = null;
+        TimerManager.get().cancelTimer(flashTimer);
+        TimerManager.get().cancelTimer(waitTimer);
+        flashTimer = TimerManager.INVALID_HANDLE;
+        waitTimer = TimerManager.INVALID_HANDLE;
+        tags = GameEntity.NO_TAGS;
+        lifetime = GameEntity.LIVE_FOREVER;
+        scene = null;
+        currentChunk = null;
+        chunkSlot = -1;
+        transform.reset();
+        zPosition = 0.2f;
+        boundingBoxExtends.set(32, 32);
+        color.setColor(0, 0, 0, 0);
+        moveable = true;
     }
 
     @Override
@@ -544,4 +906,13 @@ public class GameEntity extends GameObject
     {
         return transform;
     }
+
+    /**
+     * @return The slot of the transform of this entity in the
+     *         {@link vine.game.TransformStore}.
+     */
+    public final int getTransformIndex()
+    {
+        return transform.getIndex();
+    }
 }
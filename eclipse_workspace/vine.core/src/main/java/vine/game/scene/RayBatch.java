@@ -0,0 +1,283 @@
+package vine.game.scene;
+
+import vine.util.job.JobSystem;
+import vine.util.job.JobSystem.RangeJob;
+
+/**
+ * Rays, that are traced together, and their results. The rays are stored as
+ * arrays of their components and all results are written into arrays, that
+ * are allocated once, so tracing a batch doesn't allocate for any ray.
+ * <p>
+ * Fill the batch with {@link #add} or write the arrays directly and set the
+ * number of rays with {@link #setSize(int)}. Then trace it with
+ * {@link SceneTracer#rayTrace(RayBatch)}. The nearest hit of every ray is
+ * always recorded. If the batch records more than one hit per ray, the
+ * nearest hits are kept sorted by their distance.
+ * </p>
+ */
+public final class RayBatch
+{
+    /**
+     * The minimal number of rays, that one job traces.
+     */
+    private static final int   GRAIN    = 64;
+
+    private final int          capacity;
+    private final int          maxHits;
+    private final float[]      originsX;
+    private final float[]      originsY;
+    private final float[]      directionsX;
+    private final float[]      directionsY;
+    private final float[]      lengths;
+    /**
+     * The entities, that the rays don't hit, usually their tracers.
+     */
+    private final GameEntity[] ignored;
+    private int                size;
+
+    private final GameEntity[] nearest;
+    private final float[]      nearestDistances;
+    private final GameEntity[] hits;
+    private final float[]      hitDistances;
+    private final int[]        hitCounts;
+
+    private SpatialSnapshot    snapshot;
+    private final RangeJob     traceJob = this::traceRange;
+
+    /**
+     * @param capacity
+     *            The maximal number of rays in the batch
+     * @param maxHitsPerRay
+     *            The number of the nearest hits, that are recorded for every
+     *            ray, or 0 to only record the nearest one
+     */
+    public RayBatch(final int capacity, final int maxHitsPerRay)
+    {
+        this.capacity = capacity;
+        maxHits = Math.max(0, maxHitsPerRay);
+        originsX = new float[capacity];
+        originsY = new float[capacity];
+        directionsX = new float[capacity];
+        directionsY = new float[capacity];
+        lengths = new float[capacity];
+        ignored = new GameEntity[capacity];
+        nearest = new GameEntity[capacity];
+        nearestDistances = new float[capacity];
+        hits = new GameEntity[capacity * maxHits];
+        hitDistances = new float[capacity * maxHits];
+        hitCounts = new int[capacity];
+    }
+
+    /**
+     * Adds a ray to the batch.
+     *
+     * @param tracer
+     *            An entity, that isn't hit by the ray, or null
+     * @param directionX
+     *            The x coordinate of the direction, that doesn't need to be
+     *            normalized
+     * @param length
+     *            The length of the ray
+     * @return The index of the ray or -1, if the batch is full.
+     */
+    public int add(
+            final GameEntity tracer,
+            final float originX,
+            final float originY,
+            final float directionX,
+            final float directionY,
+            final float length)
+    {
+        if (size == capacity)
+        {
+            return -1;
+        }
+        originsX[size] = originX;
+        originsY[size] = originY;
+        directionsX[size] = directionX;
+        directionsY[size] = directionY;
+        lengths[size] = length;
+        ignored[size] = tracer;
+        return size++;
+    }
+
+    /**
+     * Removes all rays and releases the references to the hit entities.
+     */
+    public void clear()
+    {
+        for (int i = 0; i < size; i++)
+        {
+            ignored[i] = null;
+            nearest[i] = null;
+        }
+        for (int i = 0; i < size * maxHits; i++)
+        {
+            hits[i] = null;
+        }
+        size = 0;
+    }
+
+    /**
+     * @param size
+     *            The number of rays, that were written directly into the
+     *            arrays of the batch
+     */
+    public void setSize(final int size)
+    {
+        assert size >= 0 && size <= capacity : "The size exceeds the capacity of the batch";
+        this.size = size;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    public float[] getOriginsX()
+    {
+        return originsX;
+    }
+
+    public float[] getOriginsY()
+    {
+        return originsY;
+    }
+
+    public float[] getDirectionsX()
+    {
+        return directionsX;
+    }
+
+    public float[] getDirectionsY()
+    {
+        return directionsY;
+    }
+
+    public float[] getLengths()
+    {
+        return lengths;
+    }
+
+    public GameEntity[] getIgnoredEntities()
+    {
+        return ignored;
+    }
+
+    /**
+     * @return The nearest entity, that was hit by the ray, or null.
+     */
+    public GameEntity getNearestEntity(final int ray)
+    {
+        return nearest[ray];
+    }
+
+    /**
+     * @return The distance to the nearest hit of the ray or Float.MAX_VALUE.
+     */
+    public float getNearestDistance(final int ray)
+    {
+        return nearestDistances[ray];
+    }
+
+    /**
+     * @return The number of recorded hits of the ray.
+     */
+    public int getHitCount(final int ray)
+    {
+        return hitCounts[ray];
+    }
+
+    /**
+     * @param hit
+     *            A value between 0 and {@link #getHitCount(int)}. Hits are
+     *            sorted by their distance.
+     * @return The entity of the hit.
+     */
+    public GameEntity getHit(final int ray, final int hit)
+    {
+        return hits[ray * maxHits + hit];
+    }
+
+    public float getHitDistance(final int ray, final int hit)
+    {
+        return hitDistances[ray * maxHits + hit];
+    }
+
+    /**
+     * Traces all rays of the batch against the snapshot in parallel jobs.
+     */
+    void trace(final SpatialSnapshot bounds, final JobSystem jobs)
+    {
+        snapshot = bounds;
+        try
+        {
+            jobs.parallelFor(size, RayBatch.GRAIN, traceJob);
+        } finally
+        {
+            snapshot = null;
+        }
+    }
+
+    private void traceRange(final int start, final int end)
+    {
+        for (int ray = start; ray < end; ray++)
+        {
+            nearest[ray] = null;
+            nearestDistances[ray] = Float.MAX_VALUE;
+            hitCounts[ray] = 0;
+            final float directionX = directionsX[ray];
+            final float directionY = directionsY[ray];
+            final float directionLength = (float) Math.sqrt(directionX * directionX + directionY * directionY);
+            if (directionLength > 0)
+            {
+                snapshot.rayCast(this, ray, originsX[ray], originsY[ray], directionX / directionLength,
+                        directionY / directionLength, lengths[ray], ignored[ray]);
+            }
+        }
+    }
+
+    /**
+     * Records a hit of the ray.
+     *
+     * @return The length, that the ray still has to be traced
+     */
+    float record(final int ray, final GameEntity entity, final float distance, final float length)
+    {
+        if (distance < nearestDistances[ray])
+        {
+            nearest[ray] = entity;
+            nearestDistances[ray] = distance;
+        }
+        if (maxHits == 0)
+        {
+            return Math.min(distance, length);
+        }
+        final int base = ray * maxHits;
+        int count = hitCounts[ray];
+        if (count == maxHits)
+        {
+            if (distance >= hitDistances[base + count - 1])
+            {
+                return length;
+            }
+            count--;
+        }
+        int slot = base + count;
+        while (slot > base && hitDistances[slot - 1] > distance)
+        {
+            hits[slot] = hits[slot - 1];
+            hitDistances[slot] = hitDistances[slot - 1];
+            slot--;
+        }
+        hits[slot] = entity;
+        hitDistances[slot] = distance;
+        hitCounts[ray] = count + 1;
+        return count + 1 == maxHits ? hitDistances[base + maxHits - 1] : length;
+    }
+}
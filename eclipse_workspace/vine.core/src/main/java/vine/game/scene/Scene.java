@@ -1,15 +1,27 @@
 package vine.game.scene;
 
-import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import vine.event.EventListener;
+import vine.game.Camera;
+import vine.game.GameObject.GameObjectCallback;
 import vine.game.World;
+import vine.game.primitive.BoxPrimitive;
+import vine.game.screen.Screen;
 import vine.game.tilemap.TileMapSceneProxy;
 import vine.game.tilemap.UniformTileMap;
 import vine.gameplay.PlayerPawn;
+import vine.graphics.FramePacket;
+import vine.graphics.Renderable;
+import vine.graphics.renderer.PrimitiveRenderer;
+import vine.math.Intersection;
 import vine.math.vector.Vec2f;
+import vine.math.vector.Vec3f;
 
 /**
  * @author Steffen
@@ -17,30 +29,63 @@ import vine.math.vector.Vec2f;
  */
 public class Scene
 {
-    private final EventListener   listener = new EventListener();
-    private final Chunk[][]       chunks;
-    private final Set<GameEntity> entities = new HashSet<>();
-    private TileMapSceneProxy         map;
-    private World                 world;
-    private final SceneTracer     tracer;
-    private final CameraManager   cameras  = new CameraManager();
+    private final EventListener      listener       = new EventListener();
+    private final SpatialHash        chunks;
+    private Set<GameEntity>          entities       = new HashSet<>();
+    private TileMapSceneProxy        map;
+    private World                    world;
+    private final SceneTracer        tracer;
+    private final CameraManager      cameras        = new CameraManager();
+    private final ComponentStore     store          = new ComponentStore();
+    private final GameObjectCallback removeCallback = e -> removeEntity((GameEntity) e);
+    private final TagIndex           tags           = new TagIndex();
+    private final ComponentScheduler scheduler      = new ComponentScheduler();
+    private final EntityScheduler    lifetimes      = new EntityScheduler(this);
+    private final AabbTree           bounds         = new AabbTree();
+    /**
+     * The entities, that moved since the beginning of the frame. Entities
+     * move themselves during the parallel update, so any thread may add.
+     */
+    private final Queue<GameEntity>  moved          = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Additional space around the screen, in which entities are still
+     * submitted to the frame packet, because the camera moves until the next
+     * packet is published.
+     */
+    private static final int         CULLING_MARGIN = 100;
+
+    /**
+     * The default size of the chunks of a scene.
+     */
+    public static final int          DEFAULT_CHUNK_WIDTH       = 1400;
+    public static final int          DEFAULT_CHUNK_HEIGHT      = 700;
+    /**
+     * The default distance in chunks around cameras and players, in which
+     * entities are simulated.
+     */
+    public static final int          DEFAULT_SIMULATION_RADIUS = 2;
+    private int                      simulationRadius          = Scene.DEFAULT_SIMULATION_RADIUS;
+    private final List<GameEntity>   anchors                   = new ArrayList<>();
+
+    private float[]                  primitiveUVs;
+    private final List<BoxPrimitive> primitives     = new ArrayList<>();
 
     public Scene()
     {
-        tracer = new SceneTracer(this);
-        chunks = new Chunk[10][10];
-        initializeChunks();
+        this(Scene.DEFAULT_CHUNK_WIDTH, Scene.DEFAULT_CHUNK_HEIGHT);
     }
 
-    private void initializeChunks()
+    /**
+     * @param chunkWidth
+     *            The width of the chunks, that the scene is divided into
+     * @param chunkHeight
+     *            The height of the chunks, that the scene is divided into
+     */
+    public Scene(final int chunkWidth, final int chunkHeight)
     {
-        for (int i = 0; i < 10; i++)
-        {
-            for (int j = 0; j < 10; j++)
-            {
-                chunks[i][j] = new Chunk(1400, 700, 20, 14);
-            }
-        }
+        tracer = new SceneTracer(this);
+        chunks = new SpatialHash(chunkWidth, chunkHeight);
     }
 
     public World getWorld()
@@ -58,22 +103,131 @@ public class Scene
         return cameras;
     }
 
-    protected Chunk[][] getChunks()
+    /**
+     * @return The chunks of this scene.
+     */
+    public SpatialHash getSpatialHash()
     {
         return chunks;
     }
 
-    public void prepareUpdate()
+    /**
+     * @param radius
+     *            The distance in chunks around the active camera and the
+     *            players, in which entities are simulated. Entities of chunks
+     *            further away sleep and catch up the passed time, when their
+     *            chunk wakes up. A negative radius simulates all chunks.
+     */
+    public void setSimulationRadius(final int radius)
+    {
+        simulationRadius = radius;
+    }
+
+    public int getSimulationRadius()
+    {
+        return simulationRadius;
+    }
+
+    /**
+     * Moves the entities into the chunks of their current positions, prepares
+     * the chunks for the update of a frame and decides, which of them are
+     * simulated.
+     *
+     * @param delta
+     *            The time that passed since the last update
+     */
+    public void prepareUpdate(final float delta)
     {
-        for (final Chunk[] chunkArray : chunks)
+        updateSpatialIndex();
+        bounds.publish();
+        chunks.releaseEmptyChunks();
+        collectAnchors();
+        for (int i = 0; i < chunks.size(); i++)
         {
-            for (final Chunk chunk : chunkArray)
+            final Chunk chunk = chunks.getChunk(i);
+            chunk.isActive = false;
+            chunk.updateSleeping(isSimulated(chunk), delta);
+        }
+    }
+
+    /**
+     * Moves the entities, that changed their cell, between the chunks and the
+     * entities, that left their fat boxes since the last call, in the
+     * bounding volume hierarchy. Only the entities, that moved, are visited,
+     * so entities at rest and sleeping chunks cost nothing. Traces of this
+     * frame find the entities at their positions at the beginning of the
+     * frame, which the published snapshot of the hierarchy keeps, while the
+     * entities move.
+     */
+    private void updateSpatialIndex()
+    {
+        GameEntity entity;
+        while ((entity = moved.poll()) != null)
+        {
+            // Entities, that left the scene since they moved, and duplicates
+            // are skipped
+            if (entity.moved && entity.getScene() == this)
             {
-                chunk.isActive = false;
+                entity.moved = false;
+                entity.setCurrentChunk();
+                bounds.update(entity);
             }
         }
     }
 
+    /**
+     * Records an entity, whose chunk and leaf have to be updated at the
+     * beginning of the next frame. Can be called from any thread.
+     */
+    void markMoved(final GameEntity entity)
+    {
+        moved.add(entity);
+    }
+
+    /**
+     * Collects the active camera and the players of this scene, around which
+     * entities are simulated.
+     */
+    private void collectAnchors()
+    {
+        anchors.clear();
+        if (simulationRadius < 0)
+        {
+            return;
+        }
+        final Camera camera = cameras.getActiveCamera();
+        if (camera != null && camera.getEntity() != null)
+        {
+            anchors.add(camera.getEntity());
+        }
+        World.getObjectsByType(getPlayerPawnClass(), anchors);
+    }
+
+    /**
+     * @return True, if the chunk is close enough to an anchor to be
+     *         simulated. Without anchors all chunks are simulated.
+     */
+    private boolean isSimulated(final Chunk chunk)
+    {
+        boolean anchored = false;
+        for (int i = 0; i < anchors.size(); i++)
+        {
+            final GameEntity anchor = anchors.get(i);
+            final Chunk anchorChunk = anchor.getChunk();
+            if (anchor.getScene() != this || anchorChunk == null)
+            {
+                continue;
+            }
+            anchored = true;
+            if (Math.abs(anchorChunk.getCellX() - chunk.getCellX()) <= simulationRadius
+                    && Math.abs(anchorChunk.getCellY() - chunk.getCellY()) <= simulationRadius)
+            {
+                return true;
+            }
+        }
+        return !anchored;
+    }
+
     /**
      * @return All entities that are rendered by this layer
      */
@@ -84,10 +238,113 @@ public class Scene
 
     public boolean removeEntity(final GameEntity entity)
     {
-        return entities.remove(entity);
+        store.remove(entity);
+        scheduler.remove(entity);
+        lifetimes.remove(entity);
+        if (entities.remove(entity))
+        {
+            tags.remove(entity);
+            bounds.remove(entity);
+            entity.leaveChunk();
+            entity.moved = false;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param tag
+     *            A gameplay tag
+     * @return All entities of this scene, that carry the given tag. The set
+     *         must not be modified and changes with the tags of the entities.
+     */
+    public Set<GameEntity> getEntitiesWithTag(final String tag)
+    {
+        return tags.get(Tags.find(tag));
+    }
+
+    /**
+     * @param tag
+     *            The id of an interned tag
+     * @return All entities of this scene, that carry the given tag.
+     */
+    public Set<GameEntity> getEntitiesWithTag(final int tag)
+    {
+        return tags.get(tag);
+    }
+
+    /**
+     * Updates the tag index and the summaries of the bounding volume
+     * hierarchy after a tag of the entity changed.
+     */
+    void updateTag(final GameEntity entity, final int tag)
+    {
+        tags.update(entity, tag, this);
+        bounds.refreshSummary(entity);
     }
 
-    public <T extends GameEntity> WeakReference<T> spawn(
+    /**
+     * @return The archetype storage of the components of all entities in this
+     *         scene.
+     */
+    public ComponentStore getComponentStore()
+    {
+        return store;
+    }
+
+    /**
+     * @return The bounding volume hierarchy over the entities of this scene,
+     *         that traces are answered with.
+     */
+    AabbTree getBounds()
+    {
+        return bounds;
+    }
+
+    ComponentScheduler getComponentScheduler()
+    {
+        return scheduler;
+    }
+
+    EntityScheduler getEntityScheduler()
+    {
+        return lifetimes;
+    }
+
+    /**
+     * Destroys the entities, whose lifetime ran out, executes the payloads of
+     * the entities and updates their components, batched by their class. Has
+     * to be called with an active command buffer, after the entities were
+     * updated.
+     *
+     * @param delta
+     *            The time that passed since the last update
+     */
+    public void update(final float delta)
+    {
+        lifetimes.update(delta);
+        scheduler.update(delta);
+    }
+
+    /**
+     * @param types
+     *            The component types, all found entities have at least one
+     *            component of
+     * @return A query over all entities of this scene, that have components of
+     *         the given types. Keep the query to reuse its cached archetypes.
+     */
+    public ComponentQuery query(final Class<?>... types)
+    {
+        return store.query(types);
+    }
+
+    /**
+     * Instantiates an entity of the given type and adds it to the scene.
+     * 
+     * @return The handle of the spawned entity or {@link World#INVALID_HANDLE},
+     *         if it couldn't be spawned.
+     */
+    public <T extends GameEntity> long spawn(
             final Class<T> type,
             final float x,
             final float y,
@@ -99,13 +356,119 @@ public class Scene
             final boolean blocked = false;
             if (blocked)
             {
-                return null;
+                return World.INVALID_HANDLE;
             }
         }
-        final GameEntity entity = getWorld().instantiate(type, e).get();
+        final long handle = getWorld().instantiate(type, e);
+        final GameEntity entity = World.getObject(handle, GameEntity.class);
+        if (entity == null)
+        {
+            return World.INVALID_HANDLE;
+        }
         entity.setPosition(x, y);
         addEntity(entity);
-        return new WeakReference<>(type.cast(entity));
+        return handle;
+    }
+
+    /**
+     * Initializes an entity, that is spawned by a batch.
+     *
+     * @param <T>
+     *            The type of the spawned entities
+     */
+    @FunctionalInterface
+    public interface BatchInitializer<T extends GameEntity>
+    {
+        /**
+         * Place the entity and attach its components here. Components, that
+         * are shared by many entities, should share their immutable data.
+         *
+         * @param entity
+         *            The spawned entity
+         * @param index
+         *            The index of the entity in the batch
+         */
+        void initialize(T entity, int index);
+    }
+
+    /**
+     * Spawns many entities of the same type. The slots of the entities in the
+     * world and in the set of entities of the scene are reserved once, so
+     * neither grows repeatedly. Every entity is registered with the scene and
+     * its chunk right after its initialization, so it doesn't move between
+     * archetypes, while its components are attached. The bounding volume
+     * hierarchy receives all entities at once at the end, which rebuilds it,
+     * if the batch is at least as large as the scene.
+     *
+     * @param type
+     *            The type of the spawned entities
+     * @param count
+     *            The number of spawned entities
+     * @param initializer
+     *            Called once for every entity, before it is added to the
+     *            scene. Can be null.
+     * @return The handles of the spawned entities in the order of their
+     *         indices. Entities, that couldn't be spawned, have the handle
+     *         {@link World#INVALID_HANDLE}.
+     */
+    public <T extends GameEntity> long[] spawnBatch(
+            final Class<T> type,
+            final int count,
+            final BatchInitializer<T> initializer)
+    {
+        final long[] handles = new long[count];
+        world.reserveObjects(count);
+        reserveEntities(count);
+        final GameEntity[] spawned = new GameEntity[count];
+        int spawnedCount = 0;
+        for (int i = 0; i < count; i++)
+        {
+            handles[i] = world.instantiate(type);
+            final T entity = World.getObject(handles[i], type);
+            if (entity == null)
+            {
+                continue;
+            }
+            entities.add(entity);
+            entity.registerDestructionCallback(removeCallback);
+            entity.setScene(this);
+            if (initializer != null)
+            {
+                initializer.initialize(entity, i);
+            }
+            store.add(entity);
+            scheduler.add(entity);
+            lifetimes.add(entity);
+            tags.add(entity);
+            entity.setCurrentChunk();
+            spawned[spawnedCount++] = entity;
+        }
+        // Initializers may have destroyed entities of the batch
+        int alive = 0;
+        for (int i = 0; i < spawnedCount; i++)
+        {
+            if (spawned[i].getScene() == this && !spawned[i].isDestroyed())
+            {
+                spawned[alive++] = spawned[i];
+            }
+        }
+        bounds.addAll(spawned, alive);
+        return handles;
+    }
+
+    /**
+     * Makes room for the given number of entities in the set of entities. A
+     * set, that would rehash several times while the entities are added, is
+     * replaced by a set, that is large enough, right away.
+     */
+    private void reserveEntities(final int count)
+    {
+        if (count > entities.size())
+        {
+            final Set<GameEntity> reserved = new HashSet<>((int) ((entities.size() + count) / 0.75f) + 1);
+            reserved.addAll(entities);
+            entities = reserved;
+        }
     }
 
     /**
@@ -113,11 +476,12 @@ public class Scene
      *            The x coordinate in multiples of the chunk width
      * @param j
      *            The y coordinate in multiples of the chunk height
-     * @return The chunk corresponding to the given indices.
+     * @return The chunk corresponding to the given indices or null, if it
+     *         contains no entities.
      */
     public Chunk getChunk(final int i, final int j)
     {
-        return chunks[i][j];
+        return chunks.find(i, j);
     }
 
     /**
@@ -131,8 +495,14 @@ public class Scene
         if (!entities.contains(entity))
         {
             entities.add(entity);
-            entity.registerDestructionCallback(e -> entities.remove(e));
+            entity.registerDestructionCallback(removeCallback);
             entity.setScene(this);
+            store.add(entity);
+            scheduler.add(entity);
+            lifetimes.add(entity);
+            tags.add(entity);
+            bounds.add(entity);
+            entity.setCurrentChunk();
         }
     }
 
@@ -159,6 +529,80 @@ public class Scene
         return new Vec2f(100, 100);
     }
 
+    /**
+     * Submits the render state of the active camera and all entities, that
+     * are visible to it, to the given packet. Has to be called by the thread,
+     * that updates the scene, after the update of a frame. The entities, that
+     * moved during the update, are moved in the bounding volume hierarchy
+     * first, so the visible entities are found by a query of the hierarchy,
+     * which only visits the visible part of the scene.
+     *
+     * @param packet
+     *            The packet, that is handed to the render thread.
+     */
+    public void writeFramePacket(final FramePacket packet)
+    {
+        final Camera camera = cameras.getActiveCamera();
+        Vec3f translation = camera.getTranslation(0);
+        final float previousX = translation.getX();
+        final float previousY = translation.getY();
+        translation = camera.getTranslation(1);
+        packet.setCamera(previousX, previousY, translation.getX(), translation.getY(), translation.getZ());
+
+        final Screen screen = world.getScreen();
+        final float posX = translation.getX() - screen.getWidth() / 2 - Scene.CULLING_MARGIN;
+        final float posY = translation.getY() - screen.getHeight() / 2 - 50 - Scene.CULLING_MARGIN;
+        final float width = screen.getWidth() + 2 * Scene.CULLING_MARGIN;
+        final float height = screen.getHeight() + 100 + 2 * Scene.CULLING_MARGIN;
+        updateSpatialIndex();
+        // The fat boxes of the hierarchy only narrow the entities down, so
+        // the exact boxes are still tested
+        bounds.query(posX, posY, posX + width, posY + height, entity ->
+        {
+            if (!entity.isDestroyed() && entity.getColor().getAlpha() <= 0.99f
+                    && Intersection.intersectAabbAabb(
+                            width,
+                            height,
+                            entity.getXPosition() - posX,
+                            entity.getYPosition() - posY,
+                            entity.getBoundingBoxExtends().getX(),
+                            entity.getBoundingBoxExtends().getY(),
+                            null))
+            {
+                submit(packet, entity);
+            }
+        });
+    }
+
+    /**
+     * Submits the renderables and the box primitives of a visible entity to
+     * the packet.
+     */
+    private void submit(final FramePacket packet, final GameEntity entity)
+    {
+        for (final Renderable renderable : entity.getRenderables())
+        {
+            renderable.onRender(packet);
+        }
+        primitives.clear();
+        entity.getComponents(BoxPrimitive.class, primitives);
+        if (!primitives.isEmpty() && primitiveUVs == null)
+        {
+            primitiveUVs = PrimitiveRenderer.getDefaultTexture().getUvQuad(24, 24, 1, 1);
+        }
+        for (final BoxPrimitive primitive : primitives)
+        {
+            packet.submit(
+                    PrimitiveRenderer.getDefaultTexture(),
+                    primitiveUVs,
+                    primitive.getTransform(),
+                    primitive.getExtends().getX(),
+                    primitive.getExtends().getY(),
+                    entity.getZPosition(),
+                    entity.getColor().getColor());
+        }
+    }
+
     public SceneTracer getTracer()
     {
         return tracer;
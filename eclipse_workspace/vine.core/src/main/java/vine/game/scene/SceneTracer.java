@@ -1,19 +1,43 @@
 package vine.game.scene;
 
-import vine.math.GMath;
+import java.util.List;
+
 import vine.math.HitData;
 import vine.math.Intersection;
 import vine.math.vector.Vec2f;
 import vine.math.vector.VectorUtils;
 
-import vine.util.Log;
-
+import vine.game.World;
+import vine.util.job.JobSystem;
+
+/**
+ * Answers traces against the entities of a scene. All traces descend the
+ * bounding volume hierarchy of the scene and only test the exact bounding
+ * boxes of the entities, whose fat boxes overlap the traced shape.
+ * <p>
+ * Only the batched {@link #rayTrace(RayBatch)}, findNearest, findInRadius and
+ * the queries of {@link #acquireSnapshot()} use the snapshot of the beginning
+ * of the frame and are safe on any thread, while entities move. All other
+ * traces, from traverseScene to the sweeps, read the live hierarchy and the
+ * current positions of the entities. Call them on the simulation thread or
+ * from the parallel update of the tracing entity, where entities, that other
+ * threads move, are found at their old or their new position. Entities, that
+ * moved farther than the margin of their fat box since the beginning of the
+ * frame, can be missed by them.
+ * </p>
+ */
 public class SceneTracer
 {
-    public static final float I_CHUNK_WIDTH  = 1 / 1400f;
-    public static final float I_CHUNK_HEIGHT = 1 / 800f;
-    public static final int   CHUNKS         = 9;
-    private final Scene       scene;
+    /**
+     * Traces batches of scenes, that aren't part of a world.
+     */
+    private static final JobSystem                  SERIAL  = new JobSystem(1);
+    /**
+     * The buffers, that searches for the single nearest entity use on every
+     * thread.
+     */
+    private static final ThreadLocal<NearestBuffer> NEAREST = ThreadLocal.withInitial(NearestBuffer::new);
+    private final Scene                             scene;
 
     @FunctionalInterface
     public interface EntityTraverseCheck
@@ -21,11 +45,23 @@ public class SceneTracer
         void traverseEntity(GameEntity entity);
     }
 
+    private static final class NearestBuffer
+    {
+        final GameEntity[] entities  = new GameEntity[1];
+        final float[]      distances = new float[1];
+    }
+
     public SceneTracer(final Scene scene)
     {
         this.scene = scene;
     }
 
+    /**
+     * Visits every entity, whose bounds might overlap the given range of
+     * chunks.
+     *
+     * @see SpatialHash#getCellX(float)
+     */
     public void traverseScene(
             final int startChunkX,
             final int startChunkY,
@@ -33,17 +69,13 @@ public class SceneTracer
             final int endChunkY,
             final EntityTraverseCheck traverser)
     {
-        for (int i = endChunkX - startChunkX; i >= 0; i--)
-        {
-            for (int j = endChunkY - startChunkY; j >= 0; j--)
-            {
-                for (final GameEntity entity : scene.getEntities())
-                // .getChunks()[startChunkX + i][startChunkY + j].getEntities())
-                {
-                    traverser.traverseEntity(entity);
-                }
-            }
-        }
+        final SpatialHash grid = scene.getSpatialHash();
+        scene.getBounds().query(
+                (float) startChunkX * grid.getCellWidth(),
+                (float) startChunkY * grid.getCellHeight(),
+                (float) (endChunkX + 1) * grid.getCellWidth(),
+                (float) (endChunkY + 1) * grid.getCellHeight(),
+                traverser);
     }
 
     public boolean AabbTrace(
@@ -53,24 +85,15 @@ public class SceneTracer
             final Vec2f extend,
             final TraceResult result)
     {
-        final long startTime = System.nanoTime();
-        final int startChunkX = (int) GMath.clamp(origin.getX() * SceneTracer.I_CHUNK_WIDTH, 0, SceneTracer.CHUNKS);
-        final int startChunkY = (int) GMath.clamp(origin.getY() * SceneTracer.I_CHUNK_HEIGHT, 0, SceneTracer.CHUNKS);
-        final int endChunkX = (int) GMath
-                .clamp((origin.getX() + extend.getX()) * SceneTracer.I_CHUNK_WIDTH, 0, SceneTracer.CHUNKS);
-        final int endChunkY = (int) GMath
-                .clamp((origin.getY() + extend.getY()) * SceneTracer.I_CHUNK_HEIGHT, 0, SceneTracer.CHUNKS);
-
-        GameEntity nearestEntity = null;
-        float smallestDistance = Float.MAX_VALUE;
-
-        for (int i = endChunkX - startChunkX; i >= 0; i--)
-        {
-            for (int j = endChunkY - startChunkY; j >= 0; j--)
-            {
-                for (final GameEntity entity : scene.getChunks()[startChunkX + i][startChunkY + j].getEntities())
+        result.prepare();
+        scene.getBounds().query(
+                origin.getX(),
+                origin.getY(),
+                origin.getX() + extend.getX(),
+                origin.getY() + extend.getY(),
+                entity ->
                 {
-                    if ((!ignoreSelf || !tracer.equals(entity)) && Intersection.intersectAabbAabb(
+                    if ((!ignoreSelf || entity != tracer) && Intersection.intersectAabbAabb(
                             entity.getPosition(),
                             entity.getBoundingBoxExtends(),
                             origin,
@@ -79,17 +102,14 @@ public class SceneTracer
                     {
                         final double length = VectorUtils
                                 .length(origin.getX() - entity.getXPosition(), origin.getY() - entity.getYPosition());
-                        if (length < smallestDistance)
+                        if (length < result.getDistance())
                         {
-                            smallestDistance = (float) length;
-                            nearestEntity = entity;
+                            result.setDistance((float) length);
+                            result.setEntity(entity);
                         }
                     }
-                }
-            }
-        }
-        Log.debug("CircleTrace took %d milliseconds", Float.valueOf((System.nanoTime() - startTime) * (1 / 1000000f)));
-        return nearestEntity != null;
+                });
+        return result.getEntity() != null;
     }
 
     public boolean multiAabbTrace(
@@ -100,28 +120,29 @@ public class SceneTracer
     {
         result.prepare();
 
-        final long startTime = System.nanoTime();
-        final int startChunkX = (int) GMath.clamp(origin.getX() * (1 / 1400f), 0, 9);
-        final int startChunkY = (int) GMath.clamp(origin.getY() * (1f / 800), 0, 9);
-        final int endChunkX = (int) GMath.clamp((origin.getX() + extend.getX()) * (1 / 1400f), 0, 9);
-        final int endChunkY = (int) GMath.clamp((origin.getY() + extend.getY()) * (1 / 800), 0, 9);
-
-        final boolean ignoreSelf = tracer != null;
-        traverseScene(startChunkX, startChunkY, endChunkX, endChunkY, entity ->
-        {
-            if (ignoreSelf && entity.compareTo(tracer) != 0 && Intersection
-                    .intersectAabbAabb(entity.getPosition(), entity.getBoundingBoxExtends(), origin, extend, null))
-            {
-                result.getEntities().add(entity);
-                final double length = VectorUtils
-                        .length(origin.getX() - entity.getXPosition(), origin.getY() - entity.getYPosition());
-                if (length < result.getNearestHitDistance())
+        scene.getBounds().query(
+                origin.getX(),
+                origin.getY(),
+                origin.getX() + extend.getX(),
+                origin.getY() + extend.getY(),
+                entity ->
                 {
-                    result.setNearestHitDistance((float) length);
-                }
-            }
-        });
-        Log.debug("multiAabbTrace took %d milliseconds", Float.valueOf((System.nanoTime() - startTime) / 1000000f));
+                    if (entity != tracer && Intersection.intersectAabbAabb(
+                            entity.getPosition(),
+                            entity.getBoundingBoxExtends(),
+                            origin,
+                            extend,
+                            null))
+                    {
+                        result.getEntities().add(entity);
+                        final double length = VectorUtils
+                                .length(origin.getX() - entity.getXPosition(), origin.getY() - entity.getYPosition());
+                        if (length < result.getNearestHitDistance())
+                        {
+                            result.setNearestHitDistance((float) length);
+                        }
+                    }
+                });
         return !result.getEntities().isEmpty();
     }
 
@@ -148,24 +169,14 @@ public class SceneTracer
             final float radius,
             final TraceResult result)
     {
-        final long startTime = System.nanoTime();
-
         assert result != null : "Passed null reference to circleTrace. Traces need a valid result object passed.";
         result.prepare();
 
-        final int startChunkX = (int) GMath
-                .clamp((center.getX() - radius) * SceneTracer.I_CHUNK_WIDTH, 0, SceneTracer.CHUNKS);
-        final int startChunkY = (int) GMath
-                .clamp((center.getY() - radius) * SceneTracer.I_CHUNK_HEIGHT, 0, SceneTracer.CHUNKS);
-        final int endChunkX = (int) GMath
-                .clamp((center.getX() + radius) * SceneTracer.I_CHUNK_WIDTH, 0, SceneTracer.CHUNKS);
-        final int endChunkY = (int) GMath
-                .clamp((center.getY() + radius) * SceneTracer.I_CHUNK_HEIGHT, 0, SceneTracer.CHUNKS);
-
-        final boolean ignoreSelf = tracer != null;
-        traverseScene(startChunkX, startChunkY, endChunkX, endChunkY, entity ->
+        final float x = center.getX();
+        final float y = center.getY();
+        scene.getBounds().query(x - radius, y - radius, x + radius, y + radius, entity ->
         {
-            if (ignoreSelf && entity.compareTo(tracer) != 0 && Intersection
+            if (entity != tracer && Intersection
                     .intersectAabbCircle(entity.getPosition(), entity.getBoundingBoxExtends(), center, radius, null))
             {
                 final double length = VectorUtils
@@ -178,7 +189,6 @@ public class SceneTracer
             }
         });
 
-        Log.debug("CircleTrace took %d milliseconds", Float.valueOf((System.nanoTime() - startTime) * (1 / 1000000f)));
         return result.getDistance() < Float.MAX_VALUE;
     }
 
@@ -207,21 +217,12 @@ public class SceneTracer
     {
         assert result != null;
 
-        final long startTime = System.nanoTime();
         result.prepare();
-        final int startChunkX = (int) GMath
-                .clamp((center.getX() - radius) * SceneTracer.I_CHUNK_WIDTH, 0, SceneTracer.CHUNKS);
-        final int startChunkY = (int) GMath
-                .clamp((center.getY() - radius) * SceneTracer.I_CHUNK_HEIGHT, 0, SceneTracer.CHUNKS);
-        final int endChunkX = (int) GMath
-                .clamp((center.getX() + radius) * SceneTracer.I_CHUNK_WIDTH, 0, SceneTracer.CHUNKS);
-        final int endChunkY = (int) GMath
-                .clamp((center.getY() + radius) * SceneTracer.I_CHUNK_HEIGHT, 0, SceneTracer.CHUNKS);
-
-        final boolean ignoreSelf = tracer != null;
-        traverseScene(startChunkX, startChunkY, endChunkX, endChunkY, entity ->
+        final float x = center.getX();
+        final float y = center.getY();
+        scene.getBounds().query(x - radius, y - radius, x + radius, y + radius, entity ->
         {
-            if (ignoreSelf && entity.compareTo(tracer) != 0 && Intersection
+            if (entity != tracer && Intersection
                     .intersectAabbCircle(entity.getPosition(), entity.getBoundingBoxExtends(), center, radius, null))
             {
                 result.getEntities().add(entity);
@@ -233,7 +234,6 @@ public class SceneTracer
                 }
             }
         });
-        Log.debug("CircleTrace took %d milliseconds", Float.valueOf((System.nanoTime() - startTime) / 1000000f));
         return result.nearestHitDistance < Float.MAX_VALUE;
     }
 
@@ -283,9 +283,6 @@ public class SceneTracer
             final float distance,
             final TraceResult result) throws NullPointerException
     {
-        final HitData hit = new HitData();
-        final long startTime = System.nanoTime();
-
         assert result != null : "Passed null reference to rayTrace. Traces need a valid result object passed.";
         result.prepare();
 
@@ -297,37 +294,21 @@ public class SceneTracer
         final float direcY = directionY * iLength;
         final float iDirecY = 1 / direcY;
 
-        final int startChunkX = (int) GMath.clamp(originX * SceneTracer.I_CHUNK_WIDTH, 0, SceneTracer.CHUNKS);
-        final int startChunkY = (int) GMath.clamp(originY * SceneTracer.I_CHUNK_HEIGHT, 0, SceneTracer.CHUNKS);
-        final int endChunkX = (int) GMath
-                .clamp((originX + distance * directionX * iLength) * SceneTracer.I_CHUNK_WIDTH, 0, SceneTracer.CHUNKS);
-        final int endChunkY = (int) GMath
-                .clamp((originY + distance * directionY * iLength) * SceneTracer.I_CHUNK_HEIGHT, 0, SceneTracer.CHUNKS);
-
-        final boolean ignoreSelf = tracer != null;
-        traverseScene(startChunkX, startChunkY, endChunkX, endChunkY, entity ->
+        scene.getBounds().rayCast(originX, originY, direcX, direcY, distance, (entity, length) ->
         {
-            if (!ignoreSelf || entity.compareTo(tracer) != 0)
+            if (entity == tracer)
             {
-                Intersection.intersectRayAabb(
-                        originX,
-                        originY,
-                        iDirecX,
-                        iDirecY,
-                        entity.getPosition().getX(),
-                        entity.getPosition().getY(),
-                        entity.getBoundingBoxExtends().getX(),
-                        entity.getBoundingBoxExtends().getY(),
-                        hit);
-                final float length = hit.getPenetration();
-                if (length >= distance || length >= result.getDistance())
-                {
-                    result.setDistance(length);
-                    result.setEntity(entity);
-                }
+                return length;
             }
+            final float hit = AabbTree.intersectRay(originX, originY, iDirecX, iDirecY, length, entity);
+            if (hit == AabbTree.MISS || hit >= result.getDistance())
+            {
+                return length;
+            }
+            result.setDistance(hit);
+            result.setEntity(entity);
+            return hit;
         });
-        Log.debug("LineTrace took %d milliseconds", Float.valueOf((System.nanoTime() - startTime) / 1000000f));
         return result.getEntity() != null;
     }
 
@@ -379,62 +360,532 @@ public class SceneTracer
     {
         assert result != null : "Passed null reference to multiRayTrace. MultiTraces need a valid result object passed.";
 
-        final long startTime = System.nanoTime();
         result.prepare();
 
         final double directionLength = VectorUtils.length(directionX, directionY);
         assert directionLength != .0 : "Passed a direction vector with zero length to multiRayTrace.";
         final float inversedDirectionLength = 1f / (float) directionLength;
-        final float iDirectionX = 1 / (directionX * inversedDirectionLength);
-        final float iDirectionY = 1 / (directionY * inversedDirectionLength);
-
-        final HitData hit = new HitData();
-        final int startChunkX = (int) GMath.clamp(originX * SceneTracer.I_CHUNK_WIDTH, 0, SceneTracer.CHUNKS);
-        final int startChunkY = (int) GMath.clamp(originY * SceneTracer.I_CHUNK_HEIGHT, 0, SceneTracer.CHUNKS);
-        final int endChunkX = (int) GMath.clamp(
-                (originX + distance * directionX * inversedDirectionLength) * SceneTracer.I_CHUNK_WIDTH,
-                0,
-                SceneTracer.CHUNKS);
-        final int endChunkY = (int) GMath.clamp(
-                (originY + distance * directionY * inversedDirectionLength) * SceneTracer.I_CHUNK_HEIGHT,
-                0,
-                SceneTracer.CHUNKS);
-
-        final boolean ignoreSelf = tracer != null;
-        traverseScene(startChunkX, startChunkY, endChunkX, endChunkY, (entity) ->
+        final float normalX = directionX * inversedDirectionLength;
+        final float normalY = directionY * inversedDirectionLength;
+        final float iDirectionX = 1 / normalX;
+        final float iDirectionY = 1 / normalY;
+
+        scene.getBounds().rayCast(originX, originY, normalX, normalY, distance, (entity, length) ->
         {
-            if (ignoreSelf && entity.compareTo(tracer) == 0)
+            if (entity == tracer)
             {
-                return;
+                return length;
             }
-            Intersection.intersectRayAabb(
-                    originX,
-                    originY,
-                    iDirectionX,
-                    iDirectionY,
-                    entity.getXPosition(),
-                    entity.getYPosition(),
-                    entity.getBoundingBoxExtends().getX(),
-                    entity.getBoundingBoxExtends().getY(),
-                    hit);
-            final float tracedDistance = hit.getPenetration();
-            if (tracedDistance >= distance)
+            final float tracedDistance = AabbTree
+                    .intersectRay(originX, originY, iDirectionX, iDirectionY, length, entity);
+            if (tracedDistance != AabbTree.MISS)
             {
-                return;
-            }
-            result.getEntities().add(entity);
-            if (tracedDistance < result.getNearestHitDistance())
-            {
-                result.setNearestHitDistance(tracedDistance);
+                result.getEntities().add(entity);
+                if (tracedDistance < result.getNearestHitDistance())
+                {
+                    result.setNearestHitDistance(tracedDistance);
+                }
             }
+            return length;
         });
-        Log.debug("MultiLineTrace took %d milliseconds", Float.valueOf((System.nanoTime() - startTime) / 1000000f));
-        Log.debug(
-                "Chunks x:%d-%d y:%d-%d",
-                Integer.valueOf(startChunkX),
-                Integer.valueOf(endChunkX),
-                Integer.valueOf(startChunkY),
-                Integer.valueOf(endChunkY));
         return result.getNearestHitDistance() < Float.MAX_VALUE;
     }
+
+    /**
+     * Moves a box along the given motion and finds the first entity, that it
+     * touches. Entities, that the box overlaps at the start, are hit at the
+     * time 0.
+     *
+     * @param tracer
+     *            A GameEntity that is ignored when tracing.
+     * @param x
+     *            The smallest x coordinate of the box at the start of the
+     *            motion
+     * @param y
+     *            The smallest y coordinate of the box at the start of the
+     *            motion
+     * @param width
+     *            The width of the box
+     * @param height
+     *            The height of the box
+     * @param motionX
+     *            The distance, that the box moves along the x axis
+     * @param motionY
+     *            The distance, that the box moves along the y axis
+     * @param result
+     *            Receives the hit entity, the distance and time of impact,
+     *            the normal of the hit surface and the smallest corner of the
+     *            box at the time of impact.
+     * @return True, if an entity was hit.
+     */
+    public boolean aabbSweep(
+            final GameEntity tracer,
+            final float x,
+            final float y,
+            final float width,
+            final float height,
+            final float motionX,
+            final float motionY,
+            final TraceResult result)
+    {
+        assert result != null : "Passed null reference to aabbSweep. Traces need a valid result object passed.";
+        result.prepare();
+
+        final float motion = VectorUtils.length(motionX, motionY);
+        final float directionX = motion > 0 ? motionX / motion : 1;
+        final float directionY = motion > 0 ? motionY / motion : 0;
+        final float halfWidth = width / 2;
+        final float halfHeight = height / 2;
+        final float centerX = x + halfWidth;
+        final float centerY = y + halfHeight;
+
+        scene.getBounds().rayCast(centerX, centerY, directionX, directionY, motion, halfWidth, halfHeight,
+                (entity, length) ->
+                {
+                    if (entity == tracer)
+                    {
+                        return length;
+                    }
+                    final float entityX = entity.getXPosition();
+                    final float entityY = entity.getYPosition();
+                    final float hit = SceneTracer.sweepPoint(
+                            centerX,
+                            centerY,
+                            directionX,
+                            directionY,
+                            length,
+                            entityX - halfWidth,
+                            entityY - halfHeight,
+                            entityX + entity.getXExtends() + halfWidth,
+                            entityY + entity.getYExtends() + halfHeight,
+                            result.hitData);
+                    if (hit == AabbTree.MISS)
+                    {
+                        return length;
+                    }
+                    result.setEntity(entity);
+                    result.setDistance(hit);
+                    return hit;
+                });
+        return finishSweep(result, x, y, directionX, directionY, motion);
+    }
+
+    /**
+     * Moves a circle along the given motion and finds the first entity, that
+     * it touches. Entities, that the circle overlaps at the start, are hit at
+     * the time 0.
+     *
+     * @param tracer
+     *            A GameEntity that is ignored when tracing.
+     * @param centerX
+     *            The x coordinate of the center at the start of the motion
+     * @param centerY
+     *            The y coordinate of the center at the start of the motion
+     * @param radius
+     *            The radius of the circle
+     * @param motionX
+     *            The distance, that the circle moves along the x axis
+     * @param motionY
+     *            The distance, that the circle moves along the y axis
+     * @param result
+     *            Receives the hit entity, the distance and time of impact,
+     *            the normal of the hit surface and the center of the circle
+     *            at the time of impact.
+     * @return True, if an entity was hit.
+     */
+    public boolean circleSweep(
+            final GameEntity tracer,
+            final float centerX,
+            final float centerY,
+            final float radius,
+            final float motionX,
+            final float motionY,
+            final TraceResult result)
+    {
+        assert result != null : "Passed null reference to circleSweep. Traces need a valid result object passed.";
+        result.prepare();
+
+        final float motion = VectorUtils.length(motionX, motionY);
+        final float directionX = motion > 0 ? motionX / motion : 1;
+        final float directionY = motion > 0 ? motionY / motion : 0;
+
+        scene.getBounds().rayCast(centerX, centerY, directionX, directionY, motion, radius, radius,
+                (entity, length) ->
+                {
+                    if (entity == tracer)
+                    {
+                        return length;
+                    }
+                    final float entityX = entity.getXPosition();
+                    final float entityY = entity.getYPosition();
+                    final float hit = SceneTracer.sweepCircle(
+                            centerX,
+                            centerY,
+                            directionX,
+                            directionY,
+                            length,
+                            radius,
+                            entityX,
+                            entityY,
+                            entityX + entity.getXExtends(),
+                            entityY + entity.getYExtends(),
+                            result.hitData);
+                    if (hit == AabbTree.MISS)
+                    {
+                        return length;
+                    }
+                    result.setEntity(entity);
+                    result.setDistance(hit);
+                    return hit;
+                });
+        return finishSweep(result, centerX, centerY, directionX, directionY, motion);
+    }
+
+    private static boolean finishSweep(
+            final TraceResult result,
+            final float x,
+            final float y,
+            final float directionX,
+            final float directionY,
+            final float motion)
+    {
+        if (result.getEntity() == null)
+        {
+            result.hitData.setPoint(x + directionX * motion, y + directionY * motion);
+            return false;
+        }
+        final float distance = result.getDistance();
+        result.setTime(motion > 0 ? distance / motion : 0);
+        result.hitData.setPoint(x + directionX * distance, y + directionY * distance);
+        return true;
+    }
+
+    /**
+     * Moves a point along a ray into a box.
+     *
+     * @param hit
+     *            Receives the normal of the face, that the point enters, if
+     *            the box is hit. If the point starts inside the box, the
+     *            normal points to the nearest face.
+     * @return The distance to the box or {@link AabbTree#MISS}.
+     */
+    private static float sweepPoint(
+            final float originX,
+            final float originY,
+            final float directionX,
+            final float directionY,
+            final float length,
+            final float minX,
+            final float minY,
+            final float maxX,
+            final float maxY,
+            final HitData hit)
+    {
+        if (originX > minX && originX < maxX && originY > minY && originY < maxY)
+        {
+            SceneTracer.pushOut(originX, originY, minX, minY, maxX, maxY, hit);
+            return 0;
+        }
+        float near = 0;
+        float far = length;
+        int axis = -1;
+        if (directionX == 0)
+        {
+            if (originX < minX || originX > maxX)
+            {
+                return AabbTree.MISS;
+            }
+        } else
+        {
+            final float t1 = (minX - originX) / directionX;
+            final float t2 = (maxX - originX) / directionX;
+            if (Math.min(t1, t2) > near)
+            {
+                near = Math.min(t1, t2);
+                axis = 0;
+            }
+            far = Math.min(far, Math.max(t1, t2));
+        }
+        if (directionY == 0)
+        {
+            if (originY < minY || originY > maxY)
+            {
+                return AabbTree.MISS;
+            }
+        } else
+        {
+            final float t1 = (minY - originY) / directionY;
+            final float t2 = (maxY - originY) / directionY;
+            if (Math.min(t1, t2) > near)
+            {
+                near = Math.min(t1, t2);
+                axis = 1;
+            }
+            far = Math.min(far, Math.max(t1, t2));
+        }
+        // Points, that only touch the box, while they leave it, don't hit it
+        if (near > far || near == far && axis < 0)
+        {
+            return AabbTree.MISS;
+        }
+        if (axis == 0)
+        {
+            hit.setNormal(-Math.signum(directionX), 0);
+        } else if (axis == 1)
+        {
+            hit.setNormal(0, -Math.signum(directionY));
+        } else
+        {
+            hit.setNormal(-directionX, -directionY);
+        }
+        return near;
+    }
+
+    /**
+     * Moves a circle along a ray into a box. The circle hits the box, where
+     * its center enters the box rounded by the radius. Only in the corners
+     * the rounding differs from the box expanded by the radius.
+     *
+     * @return The distance to the box or {@link AabbTree#MISS}.
+     */
+    private static float sweepCircle(
+            final float centerX,
+            final float centerY,
+            final float directionX,
+            final float directionY,
+            final float length,
+            final float radius,
+            final float minX,
+            final float minY,
+            final float maxX,
+            final float maxY,
+            final HitData hit)
+    {
+        final float offsetX = centerX - Math.max(minX, Math.min(centerX, maxX));
+        final float offsetY = centerY - Math.max(minY, Math.min(centerY, maxY));
+        final float squaredDistance = offsetX * offsetX + offsetY * offsetY;
+        if (squaredDistance < radius * radius)
+        {
+            if (squaredDistance > 0)
+            {
+                hit.setNormal(offsetX, offsetY);
+            } else
+            {
+                SceneTracer.pushOut(centerX, centerY, minX, minY, maxX, maxY, hit);
+            }
+            return 0;
+        }
+        final float distance = SceneTracer.sweepPoint(centerX, centerY, directionX, directionY, length,
+                minX - radius, minY - radius, maxX + radius, maxY + radius, hit);
+        if (distance == AabbTree.MISS)
+        {
+            return AabbTree.MISS;
+        }
+        final float x = centerX + directionX * distance;
+        final float y = centerY + directionY * distance;
+        if (x >= minX && x <= maxX || y >= minY && y <= maxY)
+        {
+            return distance;
+        }
+        // The center enters a corner of the expanded box, so the circle can
+        // only hit the corner of the box
+        final float cornerX = x < minX ? minX : maxX;
+        final float cornerY = y < minY ? minY : maxY;
+        final float toCenterX = centerX - cornerX;
+        final float toCenterY = centerY - cornerY;
+        final float b = toCenterX * directionX + toCenterY * directionY;
+        final float c = toCenterX * toCenterX + toCenterY * toCenterY - radius * radius;
+        final float discriminant = b * b - c;
+        if (b > 0 || discriminant < 0)
+        {
+            return AabbTree.MISS;
+        }
+        final float time = Math.max(0, -b - (float) Math.sqrt(discriminant));
+        if (time > length)
+        {
+            return AabbTree.MISS;
+        }
+        hit.setNormal(toCenterX + directionX * time, toCenterY + directionY * time);
+        return time;
+    }
+
+    /**
+     * Sets the normal of the hit to the direction, in which a point inside the
+     * box leaves it the fastest.
+     */
+    private static void pushOut(
+            final float x,
+            final float y,
+            final float minX,
+            final float minY,
+            final float maxX,
+            final float maxY,
+            final HitData hit)
+    {
+        final float left = x - minX;
+        final float right = maxX - x;
+        final float bottom = y - minY;
+        final float top = maxY - y;
+        final float horizontal = Math.min(left, right);
+        if (horizontal < Math.min(bottom, top))
+        {
+            hit.setNormal(left < right ? -1 : 1, 0);
+        } else
+        {
+            hit.setNormal(0, bottom < top ? -1 : 1);
+        }
+    }
+
+    /**
+     * Pins the snapshot of the spatial index, that was published at the
+     * beginning of the current frame. Queries of the snapshot are consistent
+     * and don't lock, while the entities move and the index is updated for
+     * the next frame. Entities, that were spawned during the frame, aren't
+     * part of it.
+     *
+     * @return The snapshot, that has to be released after the queries.
+     */
+    public SpatialSnapshot acquireSnapshot()
+    {
+        return scene.getBounds().acquire();
+    }
+
+    /**
+     * Traces all rays of the batch in parallel on the job system of the world
+     * of the scene and writes their hits into the batch. The rays are traced
+     * against the snapshot of the current frame, so the entities can move
+     * meanwhile.
+     *
+     * @param batch
+     *            The rays and the buffers for their hits
+     */
+    public void rayTrace(final RayBatch batch)
+    {
+        final World world = scene.getWorld();
+        rayTrace(batch, world == null ? SceneTracer.SERIAL : world.getJobSystem());
+    }
+
+    /**
+     * Traces all rays of the batch in parallel on the given job system and
+     * writes their hits into the batch. Doesn't allocate per ray.
+     *
+     * @param batch
+     *            The rays and the buffers for their hits
+     * @param jobs
+     *            The job system, that traces the rays
+     */
+    public void rayTrace(final RayBatch batch, final JobSystem jobs)
+    {
+        final SpatialSnapshot snapshot = acquireSnapshot();
+        try
+        {
+            batch.trace(snapshot, jobs);
+        } finally
+        {
+            snapshot.release();
+        }
+    }
+
+    /**
+     * Finds the entities, that match the filter and are nearest to the given
+     * point. The distance of an entity is the distance to its bounding box.
+     * Subtrees of the scene without matching entities aren't searched.
+     * Searches the snapshot of the current frame.
+     *
+     * @param tracer
+     *            An entity, that isn't found, or null
+     * @param maxDistance
+     *            The maximal distance of the found entities
+     * @param filter
+     *            The tags and components, that the found entities need
+     * @param nearest
+     *            Receives the nearest entities. Its length is the number of
+     *            entities, that are searched for.
+     * @param distances
+     *            Receives the distances of the found entities in ascending
+     *            order
+     * @return The number of found entities.
+     */
+    public int findNearest(
+            final GameEntity tracer,
+            final float x,
+            final float y,
+            final float maxDistance,
+            final EntityFilter filter,
+            final GameEntity[] nearest,
+            final float[] distances)
+    {
+        assert distances.length >= nearest.length : "Every found entity needs a distance";
+        final SpatialSnapshot snapshot = acquireSnapshot();
+        try
+        {
+            return snapshot.findNearest(x, y, maxDistance, filter, tracer, nearest, distances);
+        } finally
+        {
+            snapshot.release();
+        }
+    }
+
+    /**
+     * @return The entity, that matches the filter and is nearest to the given
+     *         point, or null, if there is none within the maximal distance.
+     * @see #findNearest(GameEntity, float, float, float, EntityFilter,
+     *      GameEntity[], float[])
+     */
+    public GameEntity findNearest(
+            final GameEntity tracer,
+            final float x,
+            final float y,
+            final float maxDistance,
+            final EntityFilter filter)
+    {
+        final NearestBuffer buffer = SceneTracer.NEAREST.get();
+        if (findNearest(tracer, x, y, maxDistance, filter, buffer.entities, buffer.distances) == 0)
+        {
+            return null;
+        }
+        final GameEntity found = buffer.entities[0];
+        buffer.entities[0] = null;
+        return found;
+    }
+
+    /**
+     * Adds all entities, that match the filter and whose bounding boxes
+     * overlap the given circle, to the result. Searches the snapshot of the
+     * current frame.
+     *
+     * @param tracer
+     *            An entity, that isn't found, or null
+     * @param filter
+     *            The tags and components, that the found entities need
+     * @return True, if at least one entity was found.
+     */
+    public boolean findInRadius(
+            final GameEntity tracer,
+            final float x,
+            final float y,
+            final float radius,
+            final EntityFilter filter,
+            final List<GameEntity> result)
+    {
+        final int previousSize = result.size();
+        final float squaredRadius = radius * radius;
+        final SpatialSnapshot snapshot = acquireSnapshot();
+        try
+        {
+            snapshot.query(x - radius, y - radius, x + radius, y + radius, filter,
+                    (entity, minX, minY, maxX, maxY) ->
+                    {
+                        if (entity != tracer
+                                && SpatialSnapshot.squaredDistance(x, y, minX, minY, maxX, maxY) <= squaredRadius)
+                        {
+                            result.add(entity);
+                        }
+                    });
+        } finally
+        {
+            snapshot.release();
+        }
+        return result.size() > previousSize;
+    }
 }
@@ -0,0 +1,213 @@
+package vine.game.scene;
+
+import java.util.Arrays;
+
+/**
+ * An unbounded grid of chunks, that only keeps the chunks, that contain
+ * entities. The chunks are found by their cell coordinates in an open
+ * addressing hash table, so the world can be arbitrarily large and every
+ * chunk covers the same area.
+ * <p>
+ * Besides the table all chunks are kept in a dense array. The index of a
+ * chunk in this array only changes, when empty chunks are released.
+ * </p>
+ * <p>
+ * Not thread safe. Entities change their chunks at sync points.
+ * </p>
+ */
+public final class SpatialHash
+{
+    private static final int SUBDIVISIONS_X = 20;
+    private static final int SUBDIVISIONS_Y = 14;
+
+    private final int        cellWidth;
+    private final int        cellHeight;
+    private final float      inversedCellWidth;
+    private final float      inversedCellHeight;
+
+    /**
+     * Linear probing table of the chunks. The length is a power of two and at
+     * least twice the number of chunks.
+     */
+    private Chunk[]          table          = new Chunk[64];
+    private Chunk[]          chunks         = new Chunk[32];
+    private int              chunkCount;
+
+    /**
+     * @param cellWidth
+     *            The width of a chunk in world units
+     * @param cellHeight
+     *            The height of a chunk in world units
+     */
+    public SpatialHash(final int cellWidth, final int cellHeight)
+    {
+        assert cellWidth > 0 && cellHeight > 0 : "Chunks need a positive size";
+        this.cellWidth = cellWidth;
+        this.cellHeight = cellHeight;
+        inversedCellWidth = 1f / cellWidth;
+        inversedCellHeight = 1f / cellHeight;
+    }
+
+    public int getCellWidth()
+    {
+        return cellWidth;
+    }
+
+    public int getCellHeight()
+    {
+        return cellHeight;
+    }
+
+    /**
+     * @return The x coordinate of the cell, that contains the given x
+     *         coordinate in world space.
+     */
+    public int getCellX(final float x)
+    {
+        return (int) Math.floor(x * inversedCellWidth);
+    }
+
+    /**
+     * @return The y coordinate of the cell, that contains the given y
+     *         coordinate in world space.
+     */
+    public int getCellY(final float y)
+    {
+        return (int) Math.floor(y * inversedCellHeight);
+    }
+
+    /**
+     * @return The number of chunks, that currently exist.
+     */
+    public int size()
+    {
+        return chunkCount;
+    }
+
+    /**
+     * @param index
+     *            A value between 0 and {@link #size()}
+     * @return The chunk with the given dense index.
+     */
+    public Chunk getChunk(final int index)
+    {
+        return chunks[index];
+    }
+
+    /**
+     * @return The chunk of the given cell or null, if the cell contains no
+     *         entities.
+     */
+    public Chunk find(final int cellX, final int cellY)
+    {
+        final int mask = table.length - 1;
+        for (int i = SpatialHash.hash(cellX, cellY) & mask;; i = i + 1 & mask)
+        {
+            final Chunk chunk = table[i];
+            if (chunk == null || chunk.getCellX() == cellX && chunk.getCellY() == cellY)
+            {
+                return chunk;
+            }
+        }
+    }
+
+    /**
+     * @return The chunk of the given cell. It's created, if it doesn't exist.
+     */
+    Chunk get(final int cellX, final int cellY)
+    {
+        final Chunk existing = find(cellX, cellY);
+        if (existing != null)
+        {
+            return existing;
+        }
+        if ((chunkCount + 1) * 2 > table.length)
+        {
+            rehash(table.length * 2);
+        }
+        final Chunk chunk = new Chunk(cellX, cellY, cellWidth, cellHeight, SpatialHash.SUBDIVISIONS_X,
+                SpatialHash.SUBDIVISIONS_Y);
+        insert(chunk);
+        if (chunkCount == chunks.length)
+        {
+            chunks = Arrays.copyOf(chunks, chunkCount * 2);
+        }
+        chunk.index = chunkCount;
+        chunks[chunkCount++] = chunk;
+        return chunk;
+    }
+
+    /**
+     * Releases all chunks without entities. Changes the indices of the
+     * remaining chunks.
+     */
+    void releaseEmptyChunks()
+    {
+        for (int i = chunkCount - 1; i >= 0; i--)
+        {
+            final Chunk chunk = chunks[i];
+            if (!chunk.isEmpty())
+            {
+                continue;
+            }
+            remove(chunk);
+            final Chunk last = chunks[--chunkCount];
+            chunks[i] = last;
+            last.index = i;
+            chunks[chunkCount] = null;
+        }
+    }
+
+    private void insert(final Chunk chunk)
+    {
+        final int mask = table.length - 1;
+        int i = SpatialHash.hash(chunk.getCellX(), chunk.getCellY()) & mask;
+        while (table[i] != null)
+        {
+            i = i + 1 & mask;
+        }
+        table[i] = chunk;
+    }
+
+    /**
+     * Removes the chunk from the table and moves the following chunks of its
+     * probe sequence back, so no tombstones are needed.
+     */
+    private void remove(final Chunk chunk)
+    {
+        final int mask = table.length - 1;
+        int hole = SpatialHash.hash(chunk.getCellX(), chunk.getCellY()) & mask;
+        while (table[hole] != chunk)
+        {
+            hole = hole + 1 & mask;
+        }
+        table[hole] = null;
+        for (int i = hole + 1 & mask; table[i] != null; i = i + 1 & mask)
+        {
+            final int home = SpatialHash.hash(table[i].getCellX(), table[i].getCellY()) & mask;
+            // Moves the chunk, unless its home lies cyclically between the
+            // hole and its slot
+            if ((i - home & mask) >= (i - hole & mask))
+            {
+                table[hole] = table[i];
+                table[i] = null;
+                hole = i;
+            }
+        }
+    }
+
+    private void rehash(final int capacity)
+    {
+        table = new Chunk[capacity];
+        for (int i = 0; i < chunkCount; i++)
+        {
+            insert(chunks[i]);
+        }
+    }
+
+    private static int hash(final int cellX, final int cellY)
+    {
+        final int hash = cellX * 0x9E3779B1 + cellY * 0x85EBCA77;
+        return hash ^ hash >>> 15;
+    }
+}
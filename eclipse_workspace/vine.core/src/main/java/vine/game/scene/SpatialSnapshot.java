@@ -0,0 +1,382 @@
+package vine.game.scene;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import vine.game.scene.AabbTree.Stack;
+
+/**
+ * An immutable copy of the bounding volume hierarchy of a scene, as it was at
+ * the beginning of a frame. The leaves contain the exact bounding boxes of the
+ * entities at that time, so queries neither read the entities nor the tree,
+ * that is changed for the next frame meanwhile. Any number of threads can
+ * query a snapshot without locking.
+ * <p>
+ * Snapshots are acquired with {@link SceneTracer#acquireSnapshot()} and have
+ * to be released, when the query is done. The scene reuses released
+ * snapshots, so a snapshot must not be used after its release.
+ * </p>
+ */
+public final class SpatialSnapshot
+{
+    private static final int    NONE      = -1;
+
+    private final AtomicInteger readers   = new AtomicInteger();
+
+    long                        frame;
+    int                         root      = SpatialSnapshot.NONE;
+    int                         size;
+    int                         nodeCount;
+    float[]                     minX      = new float[0];
+    float[]                     minY      = new float[0];
+    float[]                     maxX      = new float[0];
+    float[]                     maxY      = new float[0];
+    int[]                       children  = new int[0];
+    int[]                       heights   = new int[0];
+    long[]                      summaries = new long[0];
+    GameEntity[]                entities  = new GameEntity[0];
+    /**
+     * The nodes, that changed in the tree since this snapshot was published
+     * last, unless all nodes are outdated, because the snapshot is new or
+     * too many nodes changed.
+     */
+    int[]                       stale     = new int[0];
+    int                         staleCount;
+    boolean                     outdated  = true;
+
+    /**
+     * Receives the entities of a query with their bounding boxes in the
+     * snapshot.
+     */
+    @FunctionalInterface
+    public interface BoxVisitor
+    {
+        void visit(GameEntity entity, float minX, float minY, float maxX, float maxY);
+    }
+
+    /**
+     * @return The number of the frame, whose beginning the snapshot shows.
+     */
+    public long getFrame()
+    {
+        return frame;
+    }
+
+    /**
+     * @return The number of entities in the snapshot.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Ends the use of the snapshot by the calling thread.
+     */
+    public void release()
+    {
+        final int remaining = readers.decrementAndGet();
+        assert remaining >= 0 : "Released a snapshot, that wasn't acquired";
+    }
+
+    /**
+     * Adds a reader to the snapshot.
+     *
+     * @return The number of readers
+     */
+    int pin()
+    {
+        return readers.incrementAndGet();
+    }
+
+    /**
+     * @return True, if a thread still reads the snapshot.
+     */
+    boolean isPinned()
+    {
+        return readers.get() > 0;
+    }
+
+    /**
+     * Records nodes, that changed in the tree. If more than half of the
+     * nodes changed, copying the whole tree is cheaper, so all nodes are
+     * outdated.
+     */
+    void invalidate(final int[] nodes, final int count)
+    {
+        if (outdated)
+        {
+            return;
+        }
+        if (staleCount + count > nodeCount / 2)
+        {
+            outdated = true;
+            staleCount = 0;
+            return;
+        }
+        if (staleCount + count > stale.length)
+        {
+            stale = Arrays.copyOf(stale, Math.max(staleCount + count, stale.length * 2));
+        }
+        System.arraycopy(nodes, 0, stale, staleCount, count);
+        staleCount += count;
+    }
+
+    /**
+     * Makes room for the given number of nodes and releases the references to
+     * the entities of the nodes, that aren't used anymore.
+     */
+    void reserve(final int count)
+    {
+        if (count > heights.length)
+        {
+            final int capacity = Math.max(count, heights.length * 2);
+            minX = Arrays.copyOf(minX, capacity);
+            minY = Arrays.copyOf(minY, capacity);
+            maxX = Arrays.copyOf(maxX, capacity);
+            maxY = Arrays.copyOf(maxY, capacity);
+            children = Arrays.copyOf(children, capacity * 2);
+            heights = Arrays.copyOf(heights, capacity);
+            summaries = Arrays.copyOf(summaries, capacity);
+            entities = Arrays.copyOf(entities, capacity);
+        }
+        if (count < nodeCount)
+        {
+            Arrays.fill(entities, count, nodeCount, null);
+        }
+        nodeCount = count;
+    }
+
+    /**
+     * Visits every entity, that matches the filter and whose bounding box
+     * overlaps the given box. Subtrees without matching entities aren't
+     * entered.
+     */
+    public void query(
+            final float queryMinX,
+            final float queryMinY,
+            final float queryMaxX,
+            final float queryMaxY,
+            final EntityFilter filter,
+            final BoxVisitor visitor)
+    {
+        if (root == SpatialSnapshot.NONE)
+        {
+            return;
+        }
+        final long required = filter.getSummary();
+        final Stack stack = AabbTree.STACKS.get();
+        final int base = stack.top;
+        int[] nodes = stack.reserve(base);
+        int count = base;
+        nodes[count++] = root;
+        try
+        {
+            while (count > base)
+            {
+                final int node = nodes[--count];
+                if ((summaries[node] & required) != required || minX[node] > queryMaxX || minY[node] > queryMaxY
+                        || maxX[node] < queryMinX || maxY[node] < queryMinY)
+                {
+                    continue;
+                }
+                if (heights[node] == 0)
+                {
+                    if (filter.matches(entities[node]))
+                    {
+                        stack.top = count;
+                        visitor.visit(entities[node], minX[node], minY[node], maxX[node], maxY[node]);
+                        nodes = stack.nodes;
+                    }
+                    continue;
+                }
+                nodes = stack.reserve(count);
+                nodes[count++] = children[node * 2];
+                nodes[count++] = children[node * 2 + 1];
+            }
+        } finally
+        {
+            stack.top = base;
+        }
+    }
+
+    /**
+     * Finds the entities, that match the filter and whose bounding boxes are
+     * nearest to the point. The search descends into the nearer child first
+     * and skips subtrees, that are farther away than the farthest entity
+     * found so far or don't contain matching entities.
+     *
+     * @param maxDistance
+     *            The maximal distance of the found entities
+     * @param ignored
+     *            An entity, that isn't found, or null
+     * @param found
+     *            Receives the nearest entities. Its length is the number of
+     *            entities, that are searched for.
+     * @param distances
+     *            Receives the distances of the found entities in ascending
+     *            order. At least as long as found.
+     * @return The number of found entities.
+     */
+    public int findNearest(
+            final float x,
+            final float y,
+            final float maxDistance,
+            final EntityFilter filter,
+            final GameEntity ignored,
+            final GameEntity[] found,
+            final float[] distances)
+    {
+        final int wanted = found.length;
+        if (root == SpatialSnapshot.NONE || wanted == 0)
+        {
+            return 0;
+        }
+        final long required = filter.getSummary();
+        // Squared distances until the end of the search
+        final float maxSquared = maxDistance * maxDistance;
+        int foundCount = 0;
+        final Stack stack = AabbTree.STACKS.get();
+        final int base = stack.top;
+        int[] nodes = stack.reserve(base);
+        int count = base;
+        nodes[count++] = root;
+        try
+        {
+            while (count > base)
+            {
+                final int node = nodes[--count];
+                final float bound = foundCount == wanted ? distances[wanted - 1] : maxSquared;
+                if ((summaries[node] & required) != required)
+                {
+                    continue;
+                }
+                final float distance = squaredDistance(node, x, y);
+                if (distance > bound)
+                {
+                    continue;
+                }
+                if (heights[node] == 0)
+                {
+                    final GameEntity entity = entities[node];
+                    if (entity == ignored || foundCount == wanted && distance >= bound || !filter.matches(entity))
+                    {
+                        continue;
+                    }
+                    int slot = foundCount == wanted ? wanted - 1 : foundCount++;
+                    while (slot > 0 && distances[slot - 1] > distance)
+                    {
+                        found[slot] = found[slot - 1];
+                        distances[slot] = distances[slot - 1];
+                        slot--;
+                    }
+                    found[slot] = entity;
+                    distances[slot] = distance;
+                    continue;
+                }
+                nodes = stack.reserve(count);
+                final int child1 = children[node * 2];
+                final int child2 = children[node * 2 + 1];
+                // The nearer child is pushed last, so it's searched first
+                if (squaredDistance(child1, x, y) < squaredDistance(child2, x, y))
+                {
+                    nodes[count++] = child2;
+                    nodes[count++] = child1;
+                } else
+                {
+                    nodes[count++] = child1;
+                    nodes[count++] = child2;
+                }
+            }
+        } finally
+        {
+            stack.top = base;
+        }
+        for (int i = 0; i < foundCount; i++)
+        {
+            distances[i] = (float) Math.sqrt(distances[i]);
+        }
+        return foundCount;
+    }
+
+    /**
+     * Traces one ray of a batch and records its hits in the batch. Doesn't
+     * allocate, so any number of rays can be traced in parallel.
+     */
+    void rayCast(
+            final RayBatch batch,
+            final int ray,
+            final float originX,
+            final float originY,
+            final float directionX,
+            final float directionY,
+            final float distance,
+            final GameEntity ignored)
+    {
+        if (root == SpatialSnapshot.NONE)
+        {
+            return;
+        }
+        final float iDirectionX = 1 / directionX;
+        final float iDirectionY = 1 / directionY;
+        float length = distance;
+        final Stack stack = AabbTree.STACKS.get();
+        final int base = stack.top;
+        int[] nodes = stack.reserve(base);
+        int count = base;
+        nodes[count++] = root;
+        try
+        {
+            while (count > base)
+            {
+                final int node = nodes[--count];
+                final float hit = AabbTree.intersectRay(originX, originY, iDirectionX, iDirectionY, length, minX[node],
+                        minY[node], maxX[node], maxY[node]);
+                if (hit == AabbTree.MISS)
+                {
+                    continue;
+                }
+                if (heights[node] == 0)
+                {
+                    if (entities[node] != ignored)
+                    {
+                        length = batch.record(ray, entities[node], hit, length);
+                    }
+                    continue;
+                }
+                nodes = stack.reserve(count);
+                nodes[count++] = children[node * 2];
+                nodes[count++] = children[node * 2 + 1];
+            }
+        } finally
+        {
+            stack.top = base;
+        }
+    }
+
+    /**
+     * @return The squared distance from the point to the box of the node, 0
+     *         if the point is inside.
+     */
+    private float squaredDistance(final int node, final float x, final float y)
+    {
+        return SpatialSnapshot.squaredDistance(x, y, minX[node], minY[node], maxX[node], maxY[node]);
+    }
+
+    /**
+     * @return The squared distance from the point to the box, 0 if the point
+     *         is inside.
+     */
+    static float squaredDistance(
+            final float x,
+            final float y,
+            final float boxMinX,
+            final float boxMinY,
+            final float boxMaxX,
+            final float boxMaxY)
+    {
+        final float dx = Math.max(Math.max(boxMinX - x, x - boxMaxX), 0);
+        final float dy = Math.max(Math.max(boxMinY - y, y - boxMaxY), 0);
+        return dx * dx + dy * dy;
+    }
+}
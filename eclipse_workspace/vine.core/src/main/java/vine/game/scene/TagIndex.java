@@ -0,0 +1,88 @@
+package vine.game.scene;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Maps every tag to the entities of a scene, that carry it. Entities are
+ * added and removed, when their tags change or they enter or leave the scene,
+ * so all entities with a tag are found without visiting the others.
+ * <p>
+ * Not thread safe. Tag changes during parallel updates are applied to the
+ * index at the next sync point.
+ * </p>
+ */
+final class TagIndex
+{
+    private final List<Set<GameEntity>> entities = new ArrayList<>();
+
+    /**
+     * Makes the membership of the entity in the set of the tag match the
+     * current tags of the entity.
+     *
+     * @param entity
+     *            An entity, whose tag changed
+     * @param tag
+     *            The id of the tag
+     * @param scene
+     *            The scene, that owns this index
+     */
+    void update(final GameEntity entity, final int tag, final Scene scene)
+    {
+        if (entity.getScene() == scene && !entity.isDestroyed() && entity.containsTag(tag))
+        {
+            getSet(tag).add(entity);
+        } else if (tag < entities.size())
+        {
+            entities.get(tag).remove(entity);
+        }
+    }
+
+    /**
+     * Adds the entity to the sets of all its tags.
+     */
+    void add(final GameEntity entity)
+    {
+        for (int tag = entity.nextTag(0); tag >= 0; tag = entity.nextTag(tag + 1))
+        {
+            getSet(tag).add(entity);
+        }
+    }
+
+    /**
+     * Removes the entity from the sets of all its tags.
+     */
+    void remove(final GameEntity entity)
+    {
+        for (int tag = entity.nextTag(0); tag >= 0; tag = entity.nextTag(tag + 1))
+        {
+            if (tag < entities.size())
+            {
+                entities.get(tag).remove(entity);
+            }
+        }
+    }
+
+    /**
+     * @param tag
+     *            The id of a tag
+     * @return The entities, that carry the tag.
+     */
+    Set<GameEntity> get(final int tag)
+    {
+        return tag < 0 || tag >= entities.size() ? Collections.emptySet()
+                : Collections.unmodifiableSet(entities.get(tag));
+    }
+
+    private Set<GameEntity> getSet(final int tag)
+    {
+        while (entities.size() <= tag)
+        {
+            entities.add(new HashSet<>());
+        }
+        return entities.get(tag);
+    }
+}
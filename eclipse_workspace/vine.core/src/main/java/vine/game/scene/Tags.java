@@ -0,0 +1,66 @@
+package vine.game.scene;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interns gameplay tags into small integer ids, so entities can store their
+ * tags as bits and compare them without comparing strings. Ids are assigned
+ * in the order tags are first used and stay valid for the whole run.
+ */
+public final class Tags
+{
+    /**
+     * The id of tags, that were never interned.
+     */
+    public static final int                   UNKNOWN = -1;
+
+    private static final Map<String, Integer> IDS     = new HashMap<>();
+    private static final List<String>         NAMES   = new ArrayList<>();
+
+    private Tags()
+    {
+    }
+
+    /**
+     * @param tag
+     *            A gameplay tag
+     * @return The id of the tag. A new id is assigned, if the tag is used for
+     *         the first time.
+     */
+    public static synchronized int intern(final String tag)
+    {
+        final Integer id = Tags.IDS.get(tag);
+        if (id != null)
+        {
+            return id;
+        }
+        Tags.NAMES.add(tag);
+        Tags.IDS.put(tag, Tags.NAMES.size() - 1);
+        return Tags.NAMES.size() - 1;
+    }
+
+    /**
+     * @param tag
+     *            A gameplay tag
+     * @return The id of the tag or {@link #UNKNOWN}, if no entity ever had
+     *         the tag.
+     */
+    public static synchronized int find(final String tag)
+    {
+        final Integer id = Tags.IDS.get(tag);
+        return id == null ? Tags.UNKNOWN : id;
+    }
+
+    /**
+     * @param id
+     *            The id of an interned tag
+     * @return The tag, that has the given id.
+     */
+    public static synchronized String getName(final int id)
+    {
+        return Tags.NAMES.get(id);
+    }
+}
@@ -4,9 +4,14 @@ import vine.math.HitData;
 
 public class TraceResult
 {
-    GameEntity entity;
-    HitData    hitData;
-    float      distance;
+    GameEntity    entity;
+    final HitData hitData = new HitData();
+    float         distance;
+    /**
+     * The fraction of the motion of a sweep, after which the swept shape hit
+     * the entity.
+     */
+    float         time;
 
     public GameEntity getEntity()
     {
@@ -28,8 +33,35 @@ public class TraceResult
         this.distance = distance;
     }
 
+    /**
+     * @return The time of impact of a sweep between 0 at the start and 1 at
+     *         the end of the motion. 1, if nothing was hit.
+     */
+    public float getTime()
+    {
+        return time;
+    }
+
+    public void setTime(final float time)
+    {
+        this.time = time;
+    }
+
+    /**
+     * @return The normal of the surface, that a sweep hit, pointing towards
+     *         the swept shape, and the position of the shape at the time of
+     *         impact.
+     */
+    public HitData getHitData()
+    {
+        return hitData;
+    }
+
     public void prepare()
     {
         setDistance(Float.MAX_VALUE);
+        setEntity(null);
+        setTime(1);
+        hitData.getNormal().set(0, 0);
     }
 }
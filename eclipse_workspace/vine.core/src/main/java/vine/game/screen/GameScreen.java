@@ -21,7 +21,8 @@ public class GameScreen implements Screen
 
     /**
      * @param window
-     *            The window, that contains this screen.
+     *            The window, that contains this screen. Null, if the game
+     *            runs headless.
      * @param width
      *            The width of the displayed screen on the window
      * @param height
@@ -35,10 +36,20 @@ public class GameScreen implements Screen
         viewport = new Viewport();
         this.height = height;
         this.width = width;
-        calculateViewport(window.getHeight(), window.getWidth(), (float) height / width);
+        calculateViewport(getWindowHeight(), getWindowWidth(), (float) height / width);
         projection = GameScreen.calculateProjection(width, height);
     }
 
+    private final int getWindowWidth()
+    {
+        return window == null ? width : window.getWidth();
+    }
+
+    private final int getWindowHeight()
+    {
+        return window == null ? height : window.getHeight();
+    }
+
     private final static Mat4f calculateProjection(final float width, final float height)
     {
         return Mat4f.orthographic(-width / 2.f, width / 2.f, -height / 2.f, height / 2.f, -1.0f, 1.0f);
@@ -77,7 +88,7 @@ public class GameScreen implements Screen
     @Override
     public final float getUnitsPerPixel()
     {
-        return (window.getWidth() - viewport.getLeftOffset() * 2.f) / width;
+        return (getWindowWidth() - viewport.getLeftOffset() * 2.f) / width;
     }
 
     @Override
@@ -96,7 +107,7 @@ public class GameScreen implements Screen
     public final void setWidth(final int width)
     {
         this.width = width;
-        calculateViewport(window.getHeight(), window.getWidth(), aspect);
+        calculateViewport(getWindowHeight(), getWindowWidth(), aspect);
         projection = GameScreen.calculateProjection(this.width, height);
     }
 
@@ -104,7 +115,7 @@ public class GameScreen implements Screen
     public final void setHeight(final int height)
     {
         this.height = height;
-        calculateViewport(window.getHeight(), window.getWidth(), aspect);
+        calculateViewport(getWindowHeight(), getWindowWidth(), aspect);
         projection = GameScreen.calculateProjection(width, this.height);
     }
 
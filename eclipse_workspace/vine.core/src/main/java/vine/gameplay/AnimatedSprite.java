@@ -6,10 +6,10 @@ import vine.math.vector.Vec2f;
 import vine.animation.AnimationStateManager;
 import vine.game.Transform;
 import vine.game.scene.Component;
+import vine.graphics.FramePacket;
 import vine.graphics.Renderable;
 import vine.graphics.RgbaTexture;
 import vine.graphics.Sprite;
-import vine.graphics.renderer.SpriteBatch;
 
 /**
  * @author Steffen
@@ -70,26 +70,18 @@ public class AnimatedSprite extends Component implements Sprite, Renderable
     }
 
     @Override
-    public void onRender(final SpriteBatch batcher)
+    public void onRender(final FramePacket packet)
     {
-        batcher.submit(
+        packet.submit(
                 getTexture(),
                 getUVCoordinates(),
-                transform.getWorldPosition().getX(),
-                transform.getWorldPosition().getY(),
+                transform,
                 getSize().getX(),
                 getSize().getY(),
                 entity.getZPosition(),
                 entity.getColor().getColor());
     }
 
-    @Override
-    public void onUpdate(final float delta)
-    {
-        // TODO Auto-generated method stub
-
-    }
-
     @Override
     public void onAttach()
     {
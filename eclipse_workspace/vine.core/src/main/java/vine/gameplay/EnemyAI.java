@@ -1,31 +1,34 @@
 package vine.gameplay;
 
-import java.lang.ref.WeakReference;
-
-import vine.game.World;
 import vine.game.scene.Component;
+import vine.game.scene.EntityFilter;
+import vine.game.scene.GameEntity;
 import vine.math.vector.VectorUtils;
 import vine.math.vector.Vec2f;
 import vine.physics.RigidBody;
 
 public class EnemyAI extends Component
 {
-    WeakReference<PlayerPawn> player;
-    RigidBody                 movement;
+    private static final EntityFilter PLAYERS = EntityFilter.withTags(PlayerPawn.TAG);
+
+    RigidBody                         movement;
 
     @Override
     public void onAttach()
     {
-        player = new WeakReference<>((PlayerPawn) World.getObjectByName("player"));
         movement = entity.getComponent(RigidBody.class);
     }
 
     @Override
     public void onUpdate(final float delta)
     {
-        if (player.get() != null)
+        // Follows the nearest player, so the enemy also works with several
+        // players and after the player respawned
+        final GameEntity player = entity.getScene().getTracer()
+                .findNearest(entity, entity.getXPosition(), entity.getYPosition(), Float.MAX_VALUE, EnemyAI.PLAYERS);
+        if (player != null)
         {
-            final Vec2f playerPosition = player.get().getPosition();
+            final Vec2f playerPosition = player.getPosition();
             if (VectorUtils.squaredLength(
                     playerPosition.getX() - entity.getXPosition(),
                     playerPosition.getY() - entity.getYPosition()) > 150 * 150)
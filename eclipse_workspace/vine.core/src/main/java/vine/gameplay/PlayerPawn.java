@@ -21,11 +21,25 @@ import vine.sound.SoundClip;
  */
 public class PlayerPawn extends GameEntity
 {
+    /**
+     * The tag, that all player pawns carry.
+     */
+    public static final String     TAG            = "player";
+
     AnimationStateManager          animation;
     AudioPlayer                    player         = new AudioPlayer();
     RigidBody                      movement;
     private final MultiTraceResult tmpTraceResult = new MultiTraceResult();
 
+    public PlayerPawn()
+    {
+        super();
+        // The pawn reacts to input and carries the camera, so it is updated
+        // on the simulation thread.
+        setParallelUpdate(false);
+        addTag(PlayerPawn.TAG);
+    }
+
     @Override
     public void onUpdate(final float delta)
     {
@@ -17,13 +17,6 @@ public class SpriteComponent extends Component
         return sprite;
     }
 
-    @Override
-    public void onUpdate(final float delta)
-    {
-        // TODO Auto-generated method stub
-
-    }
-
     @Override
     public void onAttach()
     {
@@ -5,10 +5,10 @@ import vine.math.vector.Vec2f;
 
 import vine.game.Transform;
 import vine.game.scene.Component;
+import vine.graphics.FramePacket;
 import vine.graphics.Renderable;
 import vine.graphics.RgbaTexture;
 import vine.graphics.Sprite;
-import vine.graphics.renderer.SpriteBatch;
 
 /**
  * @author Steffen
@@ -47,6 +47,21 @@ public class StaticSprite extends Component implements Sprite, Renderable
         size.set(width, height);
     }
 
+    /**
+     * Creates a sprite, that shares the texture and the texture coordinates
+     * of the given sprite. Use this for many sprites with the same image.
+     *
+     * @param template
+     *            The sprite, whose data is shared
+     */
+    public StaticSprite(final StaticSprite template)
+    {
+        super();
+        texture = template.texture;
+        textureUVs = template.textureUVs;
+        size.set(template.size);
+    }
+
     /**
      * @return
      */
@@ -63,26 +78,18 @@ public class StaticSprite extends Component implements Sprite, Renderable
     }
 
     @Override
-    public void onRender(final SpriteBatch batcher)
+    public void onRender(final FramePacket packet)
     {
-        batcher.submit(
+        packet.submit(
                 getTexture(),
                 getUVCoordinates(),
-                entity.getXPosition(),
-                entity.getYPosition(),
+                entity.getTransform(),
                 getSize().getX(),
                 getSize().getY(),
                 entity.getZPosition(),
                 entity.getColor().getColor());
     }
 
-    @Override
-    public void onUpdate(final float delta)
-    {
-        // TODO Auto-generated method stub
-
-    }
-
     @Override
     public void onAttach()
     {
@@ -0,0 +1,57 @@
+package vine.graphics;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hands frame packets from the logic thread to the render thread without
+ * locking. The logic thread writes into its own back packet, while the render
+ * thread reads its own front packet. Publishing and acquiring only swap
+ * packets with a third one in the middle, so neither thread ever waits for
+ * the other and both always work on different packets.
+ * <p>
+ * There must be only one writing and one reading thread.
+ * </p>
+ */
+public final class FrameExchange
+{
+    private final AtomicReference<FramePacket> ready = new AtomicReference<>(new FramePacket());
+    private FramePacket                        back  = new FramePacket();
+    private FramePacket                        front = new FramePacket();
+    private long                               published;
+
+    /**
+     * Called by the logic thread.
+     *
+     * @return The cleared packet, that has to be filled with the new frame.
+     */
+    public FramePacket begin()
+    {
+        back.clear();
+        return back;
+    }
+
+    /**
+     * Called by the logic thread after the packet returned by begin is
+     * filled. Makes the packet available to the render thread.
+     */
+    public void publish()
+    {
+        back.sequence = ++published;
+        back = ready.getAndSet(back);
+    }
+
+    /**
+     * Called by the render thread.
+     *
+     * @return The latest published packet. The packet stays valid until the
+     *         next call of acquire.
+     */
+    public FramePacket acquire()
+    {
+        if (ready.get().sequence > front.sequence)
+        {
+            front = ready.getAndSet(front);
+        }
+        return front;
+    }
+}
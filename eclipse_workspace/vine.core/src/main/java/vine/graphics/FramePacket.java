@@ -0,0 +1,227 @@
+package vine.graphics;
+
+import java.util.Arrays;
+
+import vine.game.ITransform;
+
+/**
+ * Contains the render relevant state of one simulated frame. The packet is
+ * written by the logic thread and read by the render thread afterwards, so the
+ * renderer never touches game objects, that are mutated concurrently.
+ * <p>
+ * Every draw stores the previous and the current position, so the render
+ * thread can interpolate between them without asking the simulation.
+ * Texture coordinates are stored by reference and therefore must not be
+ * modified after they are submitted.
+ * </p>
+ */
+public final class FramePacket
+{
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private Texture[]        textures         = new Texture[FramePacket.INITIAL_CAPACITY];
+    private float[][]        uvs              = new float[FramePacket.INITIAL_CAPACITY][];
+    /**
+     * Previous x, previous y, current x and current y of every draw.
+     */
+    private float[]          positions        = new float[FramePacket.INITIAL_CAPACITY * 4];
+    /**
+     * Width, height and z of every draw.
+     */
+    private float[]          dimensions       = new float[FramePacket.INITIAL_CAPACITY * 3];
+    private int[]            colors           = new int[FramePacket.INITIAL_CAPACITY];
+    private int              count;
+
+    private float            cameraPreviousX;
+    private float            cameraPreviousY;
+    private float            cameraX;
+    private float            cameraY;
+    private float            cameraZ;
+    private long             stepTimestamp;
+    long                     sequence;
+
+    /**
+     * Removes all draws of the packet. Keeps the allocated memory.
+     */
+    public void clear()
+    {
+        Arrays.fill(textures, 0, count, null);
+        Arrays.fill(uvs, 0, count, null);
+        count = 0;
+    }
+
+    /**
+     * @param previousX
+     *            The x position of the camera in the previous step
+     * @param previousY
+     *            The y position of the camera in the previous step
+     * @param x
+     *            The x position of the camera in the current step
+     * @param y
+     *            The y position of the camera in the current step
+     * @param z
+     *            The z position of the camera
+     */
+    public void setCamera(final float previousX, final float previousY, final float x, final float y, final float z)
+    {
+        cameraPreviousX = previousX;
+        cameraPreviousY = previousY;
+        cameraX = x;
+        cameraY = y;
+        cameraZ = z;
+    }
+
+    /**
+     * @param stepTimestamp
+     *            The system time in nanoseconds, at which the simulated state
+     *            of this packet was reached.
+     */
+    public void setStepTimestamp(final long stepTimestamp)
+    {
+        this.stepTimestamp = stepTimestamp;
+    }
+
+    /**
+     * @return The system time in nanoseconds, at which the simulated state of
+     *         this packet was reached.
+     */
+    public long getStepTimestamp()
+    {
+        return stepTimestamp;
+    }
+
+    /**
+     * Adds a draw, that is positioned by the given transform.
+     */
+    public void submit(
+            final Texture texture,
+            final float[] textureUVs,
+            final ITransform transform,
+            final float width,
+            final float height,
+            final float z,
+            final int color)
+    {
+        submit(
+                texture,
+                textureUVs,
+                transform.getInterpolatedX(0),
+                transform.getInterpolatedY(0),
+                transform.getInterpolatedX(1),
+                transform.getInterpolatedY(1),
+                width,
+                height,
+                z,
+                color);
+    }
+
+    /**
+     * Adds a draw, that is rendered interpolated between the previous and the
+     * current position.
+     */
+    public void submit(
+            final Texture texture,
+            final float[] textureUVs,
+            final float previousX,
+            final float previousY,
+            final float x,
+            final float y,
+            final float width,
+            final float height,
+            final float z,
+            final int color)
+    {
+        if (count == colors.length)
+        {
+            grow();
+        }
+        textures[count] = texture;
+        uvs[count] = textureUVs;
+        final int position = count * 4;
+        positions[position] = previousX;
+        positions[position + 1] = previousY;
+        positions[position + 2] = x;
+        positions[position + 3] = y;
+        final int dimension = count * 3;
+        dimensions[dimension] = width;
+        dimensions[dimension + 1] = height;
+        dimensions[dimension + 2] = z;
+        colors[count] = color;
+        count++;
+    }
+
+    private void grow()
+    {
+        final int capacity = colors.length * 2;
+        textures = Arrays.copyOf(textures, capacity);
+        uvs = Arrays.copyOf(uvs, capacity);
+        positions = Arrays.copyOf(positions, capacity * 4);
+        dimensions = Arrays.copyOf(dimensions, capacity * 3);
+        colors = Arrays.copyOf(colors, capacity);
+    }
+
+    /**
+     * @return The number of draws in this packet.
+     */
+    public int size()
+    {
+        return count;
+    }
+
+    public Texture getTexture(final int draw)
+    {
+        return textures[draw];
+    }
+
+    public float[] getUVCoordinates(final int draw)
+    {
+        return uvs[draw];
+    }
+
+    public float getX(final int draw, final float alpha)
+    {
+        final float previous = positions[draw * 4];
+        return previous + (positions[draw * 4 + 2] - previous) * alpha;
+    }
+
+    public float getY(final int draw, final float alpha)
+    {
+        final float previous = positions[draw * 4 + 1];
+        return previous + (positions[draw * 4 + 3] - previous) * alpha;
+    }
+
+    public float getWidth(final int draw)
+    {
+        return dimensions[draw * 3];
+    }
+
+    public float getHeight(final int draw)
+    {
+        return dimensions[draw * 3 + 1];
+    }
+
+    public float getZ(final int draw)
+    {
+        return dimensions[draw * 3 + 2];
+    }
+
+    public int getColor(final int draw)
+    {
+        return colors[draw];
+    }
+
+    public float getCameraX(final float alpha)
+    {
+        return cameraPreviousX + (cameraX - cameraPreviousX) * alpha;
+    }
+
+    public float getCameraY(final float alpha)
+    {
+        return cameraPreviousY + (cameraY - cameraPreviousY) * alpha;
+    }
+
+    public float getCameraZ()
+    {
+        return cameraZ;
+    }
+}
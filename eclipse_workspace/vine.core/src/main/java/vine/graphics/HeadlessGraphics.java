@@ -0,0 +1,193 @@
+package vine.graphics;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import vine.graphics.Texture.TextureFilter;
+import vine.graphics.Texture.WrapMode;
+import vine.math.matrix.Mat4f;
+import vine.math.vector.Vec3f;
+
+/**
+ * Graphics implementation, that doesn't need a window or a graphics context.
+ * All calls are ignored, generated objects only get unique ids. Used to load
+ * assets like textures in headless mode.
+ */
+public final class HeadlessGraphics implements Graphics
+{
+    private int ids;
+
+    @Override
+    public void bindTexture2D(final int id)
+    {
+        // Nothing to do without a graphics context.
+    }
+
+    @Override
+    public void bindShader(final int id)
+    {
+        // Nothing to do without a graphics context.
+    }
+
+    @Override
+    public void bindArrayBuffer(final int id)
+    {
+        // Nothing to do without a graphics context.
+    }
+
+    @Override
+    public void bindElementArrayBuffer(final int id)
+    {
+        // Nothing to do without a graphics context.
+    }
+
+    @Override
+    public void bindVertexAttribute(final int bufferId, final FloatBuffer vertices, final VertexAttribute usage)
+    {
+        // Nothing to do without a graphics context.
+    }
+
+    @Override
+    public void bindIndexData(final int bufferId, final IntBuffer indices)
+    {
+        // Nothing to do without a graphics context.
+    }
+
+    @Override
+    public void bindVAO(final int id)
+    {
+        // Nothing to do without a graphics context.
+    }
+
+    @Override
+    public void makeContext(final long l)
+    {
+        // Nothing to do without a graphics context.
+    }
+
+    @Override
+    public void clearBuffer()
+    {
+        // Nothing to do without a graphics context.
+    }
+
+    @Override
+    public void swapBuffer()
+    {
+        // Nothing to do without a graphics context.
+    }
+
+    @Override
+    public void init()
+    {
+        // Nothing to do without a graphics context.
+    }
+
+    @Override
+    public void setViewport(final int x, final int y, final int width, final int height)
+    {
+        // Nothing to do without a graphics context.
+    }
+
+    @Override
+    public int generateTexture()
+    {
+        return ++ids;
+    }
+
+    @Override
+    public void setTextureFilter(final TextureFilter mag, final TextureFilter min)
+    {
+        // Nothing to do without a graphics context.
+    }
+
+    @Override
+    public void setTextureWrapMode(final WrapMode x, final WrapMode y)
+    {
+        // Nothing to do without a graphics context.
+    }
+
+    @Override
+    public void createRgbaTexture2D(final int width, final int height, final int[] data)
+    {
+        // Nothing to do without a graphics context.
+    }
+
+    @Override
+    public int getUniformLocation(final int id, final String name)
+    {
+        return -1;
+    }
+
+    @Override
+    public void storeUniformInt(final int location, final int value)
+    {
+        // Nothing to do without a graphics context.
+    }
+
+    @Override
+    public void storeUniformVector3f(final int location, final Vec3f vector)
+    {
+        // Nothing to do without a graphics context.
+    }
+
+    @Override
+    public void storeUniformMatrix4f(final int location, final Mat4f matrix)
+    {
+        // Nothing to do without a graphics context.
+    }
+
+    @Override
+    public void replaceShaderCode(final String sourceCode, final int shader)
+    {
+        // Nothing to do without a graphics context.
+    }
+
+    @Override
+    public int generateBuffer()
+    {
+        return ++ids;
+    }
+
+    @Override
+    public void reallocateAttributeData(final int vbo, final FloatBuffer vertices)
+    {
+        // Nothing to do without a graphics context.
+    }
+
+    @Override
+    public void reallocateIndicesData(final int ibo, final IntBuffer indicesBuffer)
+    {
+        // Nothing to do without a graphics context.
+    }
+
+    @Override
+    public int generateVAO()
+    {
+        return ++ids;
+    }
+
+    @Override
+    public void setRenderMode(final RenderMode mode)
+    {
+        // Nothing to do without a graphics context.
+    }
+
+    @Override
+    public void setPolygonMode(final PolygonMode mode)
+    {
+        // Nothing to do without a graphics context.
+    }
+
+    @Override
+    public void drawElements(final int count, final DrawPrimitive primitive)
+    {
+        // Nothing to do without a graphics context.
+    }
+
+    @Override
+    public void drawArrays(final int count, final DrawPrimitive primitive)
+    {
+        // Nothing to do without a graphics context.
+    }
+}
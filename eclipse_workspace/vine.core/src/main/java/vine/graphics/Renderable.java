@@ -3,11 +3,17 @@ package vine.graphics;
 import vine.math.vector.Vec2f;
 
 import vine.game.Transform;
-import vine.graphics.renderer.SpriteBatch;
 
 public interface Renderable
 {
-    public void onRender(SpriteBatch batch);
+    /**
+     * Called by the logic thread, when the frame packet for the renderer is
+     * built.
+     *
+     * @param packet
+     *            The packet, the render state has to be submitted to.
+     */
+    public void onRender(FramePacket packet);
 
     Vec2f getSize();
 
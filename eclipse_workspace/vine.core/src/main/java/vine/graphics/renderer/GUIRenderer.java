@@ -19,9 +19,14 @@ import vine.math.matrix.Mat4f;
 public class GUIRenderer
 {
     /**
-     * 
+     * Holds the default assets, so they are loaded on first use instead of
+     * when the class is loaded. The renderer can be referenced without a
+     * graphics context this way.
      */
-    public static final Shader          DEFAULT_SHADER       = AssetManager.loadSync("frag", Shader.class);
+    private static final class ShaderHolder
+    {
+        static final Shader SHADER = AssetManager.loadSync("frag", Shader.class);
+    }
 
     private final Mat4f                 cameraTransformation = Mat4f.identity();
     private VertexBufferObject          opaqueSpriteVBO;
@@ -35,6 +40,14 @@ public class GUIRenderer
     Texture                             currentTexture;
     int                                 size;
 
+    /**
+     * @return The shader, widgets are rendered with by default.
+     */
+    public static Shader getDefaultShader()
+    {
+        return ShaderHolder.SHADER;
+    }
+
     /**
      * @param entity
      *            A entity, that will be rendered
@@ -62,11 +75,11 @@ public class GUIRenderer
      */
     public final void renderGUI(final List<WeakReference<Widget>> widgets, final Screen screen)
     {
-        GUIRenderer.DEFAULT_SHADER.bind();
+        GUIRenderer.getDefaultShader().bind();
         cameraTransformation.getElements()[0 + 3 * 4] = -screen.getWidth() / 2f;
         cameraTransformation.getElements()[1 + 3 * 4] = -screen.getHeight() / 2f;
-        GUIRenderer.DEFAULT_SHADER.setUniformMat4f(ShaderUniforms.VIEW_MATRIX, cameraTransformation);
-        GUIRenderer.DEFAULT_SHADER.setUniformMat4f(ShaderUniforms.PROJECTION_MATRIX, screen.getProjection());
+        GUIRenderer.getDefaultShader().setUniformMat4f(ShaderUniforms.VIEW_MATRIX, cameraTransformation);
+        GUIRenderer.getDefaultShader().setUniformMat4f(ShaderUniforms.PROJECTION_MATRIX, screen.getProjection());
         int sum = 1;
         for (final WeakReference<Widget> widget : widgets)
         {
@@ -88,7 +101,7 @@ public class GUIRenderer
             submit(entity.get());
         }
         flush();
-        GUIRenderer.DEFAULT_SHADER.unbind();
+        GUIRenderer.getDefaultShader().unbind();
         currentTexture = null;
     }
 
@@ -17,8 +17,20 @@ import vine.io.assets.AssetManager;
 
 public class PrimitiveRenderer
 {
-    public static final Shader          DEFAULT_SHADER       = AssetManager.loadSync("frag", Shader.class);
-    public static final RgbaTexture     DEFAULT_TEXTURE      = AssetManager.loadSync("hero", RgbaTexture.class);
+    /**
+     * Holds the default assets, so they are loaded on first use instead of
+     * when the class is loaded. The renderer can be referenced without a
+     * graphics context this way.
+     */
+    private static final class ShaderHolder
+    {
+        static final Shader SHADER = AssetManager.loadSync("frag", Shader.class);
+    }
+
+    private static final class TextureHolder
+    {
+        static final RgbaTexture TEXTURE = AssetManager.loadSync("hero", RgbaTexture.class);
+    }
 
     private final Mat4f                 cameraTransformation = Mat4f.identity();
 
@@ -33,7 +45,23 @@ public class PrimitiveRenderer
             VertexAttribute.COLOR);
     private VertexBufferObject          vbo                  = new VertexBufferObject(0, DrawPrimitive.TRIANGLE,
             vertexPositions, vertexTextureCoords, vertexColors);
-    public Texture                      currentTexture       = SpriteBatch.DEFAULT_TEXTURE;
+    public Texture                      currentTexture       = SpriteBatch.getDefaultTexture();
+
+    /**
+     * @return The shader, primitives are rendered with by default.
+     */
+    public static Shader getDefaultShader()
+    {
+        return ShaderHolder.SHADER;
+    }
+
+    /**
+     * @return The texture, that is used by default.
+     */
+    public static RgbaTexture getDefaultTexture()
+    {
+        return TextureHolder.TEXTURE;
+    }
 
     public void drawLine(final float startX, final float startY, final float endX, final float endY)
     {
@@ -70,20 +98,20 @@ public class PrimitiveRenderer
     public final void prepare(final Scene scene)
     {
         final Screen screen = scene.getWorld().getScreen();
-        SpriteBatch.DEFAULT_SHADER.bind();
+        SpriteBatch.getDefaultShader().bind();
         final Vec3f vector = scene.getCameras().getActiveCamera().getTranslation();
         cameraTransformation.getElements()[3] = -vector.getX();
         cameraTransformation.getElements()[7] = -vector.getY();
         cameraTransformation.getElements()[11] = -vector.getZ();
-        SpriteBatch.DEFAULT_SHADER.setUniformMat4f(ShaderUniforms.VIEW_MATRIX, cameraTransformation);
-        SpriteBatch.DEFAULT_SHADER.setUniformMat4f(ShaderUniforms.PROJECTION_MATRIX, screen.getProjection());
+        SpriteBatch.getDefaultShader().setUniformMat4f(ShaderUniforms.VIEW_MATRIX, cameraTransformation);
+        SpriteBatch.getDefaultShader().setUniformMat4f(ShaderUniforms.PROJECTION_MATRIX, screen.getProjection());
         vbo.bind();
     }
 
     public void finish()
     {
         flush();
-        SpriteBatch.DEFAULT_SHADER.unbind();
+        SpriteBatch.getDefaultShader().unbind();
     }
 
     private void flush()
@@ -1,9 +1,7 @@
 package vine.graphics.renderer;
 
 import vine.math.matrix.MutableMat4f;
-import vine.math.vector.Vec3f;
 
-import vine.game.scene.Scene;
 import vine.game.screen.Screen;
 import vine.graphics.DrawPrimitive;
 import vine.graphics.RgbaTexture;
@@ -21,8 +19,20 @@ import vine.io.assets.AssetManager;
  */
 public class SpriteBatch
 {
-    public static final Shader          DEFAULT_SHADER       = AssetManager.loadSync("frag", Shader.class);
-    public static final RgbaTexture     DEFAULT_TEXTURE      = AssetManager.loadSync("hero", RgbaTexture.class);
+    /**
+     * Holds the default assets, so they are loaded on first use instead of
+     * when the class is loaded. The renderer can be referenced without a
+     * graphics context this way.
+     */
+    private static final class ShaderHolder
+    {
+        static final Shader SHADER = AssetManager.loadSync("frag", Shader.class);
+    }
+
+    private static final class TextureHolder
+    {
+        static final RgbaTexture TEXTURE = AssetManager.loadSync("hero", RgbaTexture.class);
+    }
 
     private final MutableMat4f          cameraTransformation = new MutableMat4f();
 
@@ -40,6 +50,22 @@ public class SpriteBatch
     public Texture                      currentTexture       = null;
     private int                         position             = 0;
 
+    /**
+     * @return The shader, sprites are rendered with by default.
+     */
+    public static Shader getDefaultShader()
+    {
+        return ShaderHolder.SHADER;
+    }
+
+    /**
+     * @return The texture, that is used by default.
+     */
+    public static RgbaTexture getDefaultTexture()
+    {
+        return TextureHolder.TEXTURE;
+    }
+
     public void submit(
             final Texture texture,
             final float[] uvs,
@@ -90,23 +116,25 @@ public class SpriteBatch
     }
 
     /**
-     * @param scene
-     *            The scene, that is rendered
      * @param screen
      *            The screen, that is used to contain the rendered image
+     * @param cameraX
+     *            The x position of the camera
+     * @param cameraY
+     *            The y position of the camera
+     * @param cameraZ
+     *            The z position of the camera
      */
-    public final void prepare(final Scene scene)
+    public final void prepare(final Screen screen, final float cameraX, final float cameraY, final float cameraZ)
     {
-        final Screen screen = scene.getWorld().getScreen();
-        SpriteBatch.DEFAULT_SHADER.bind();
-        final Vec3f vector = scene.getCameras().getActiveCamera().getTranslation();
+        SpriteBatch.getDefaultShader().bind();
         cameraTransformation.getElements()[0] = 1;
         cameraTransformation.getElements()[4 + 1] = 1;
         cameraTransformation.getElements()[8 + 2] = 1;
         cameraTransformation.getElements()[12 + 3] = 1;
-        cameraTransformation.setTranslation(-vector.getX(), -vector.getY(), -vector.getZ());
-        SpriteBatch.DEFAULT_SHADER.setUniformMat4f(ShaderUniforms.VIEW_MATRIX, cameraTransformation);
-        SpriteBatch.DEFAULT_SHADER.setUniformMat4f(ShaderUniforms.PROJECTION_MATRIX, screen.getProjection());
+        cameraTransformation.setTranslation(-cameraX, -cameraY, -cameraZ);
+        SpriteBatch.getDefaultShader().setUniformMat4f(ShaderUniforms.VIEW_MATRIX, cameraTransformation);
+        SpriteBatch.getDefaultShader().setUniformMat4f(ShaderUniforms.PROJECTION_MATRIX, screen.getProjection());
         vbo.bind();
     }
 
@@ -2,11 +2,9 @@ package vine.graphics.renderer;
 
 import vine.math.GMath;
 import vine.math.matrix.MutableMat4f;
-import vine.math.vector.Vec3f;
 
 import java.util.Arrays;
 
-import vine.game.World;
 import vine.game.screen.Screen;
 import vine.game.tilemap.Tile;
 import vine.game.tilemap.UniformTileMap;
@@ -28,19 +26,30 @@ public class TileMapRenderer implements Renderer
     private final int             screenxTiles;
     private final int             screenyTiles;
 
-    private final World           world;
+    private float                 cameraX;
+    private float                 cameraY;
     private float[]               zeroUvs;
     private float[]               uvs;
     private float[]               colors;
     private VertexAttributeBuffer cols;
     private final float[]         colorTemp            = new float[4];
 
-    public TileMapRenderer(final Screen screen, final World world)
+    public TileMapRenderer(final Screen screen)
     {
         screenxTiles = screen.getWidth() / 32 + 2;
         screenyTiles = screen.getHeight() / 32 + 2;
-        //
-        this.world = world;
+    }
+
+    /**
+     * @param x
+     *            The x position of the camera, the map is rendered for
+     * @param y
+     *            The y position of the camera, the map is rendered for
+     */
+    public void setCamera(final float x, final float y)
+    {
+        cameraX = x;
+        cameraY = y;
     }
 
     public void submit(final UniformTileMap map)
@@ -70,21 +79,20 @@ public class TileMapRenderer implements Renderer
     @Override
     public void prepare(final Screen screen)
     {
-        SpriteBatch.DEFAULT_SHADER.bind();
-        final Vec3f vector = world.getScene().getCameras().getActiveCamera().getTranslation();
+        SpriteBatch.getDefaultShader().bind();
         cameraTransformation.getElements()[0] = 1;
         cameraTransformation.getElements()[4 + 1] = 1;
         cameraTransformation.getElements()[8 + 2] = 1;
         cameraTransformation.getElements()[12 + 3] = 1;
         cameraTransformation.setTranslation(//
-                -screen.getWidth() / 2f - vector.getX() % 32f, //
-                -screen.getHeight() / 2f - vector.getY() % 32f, //
+                -screen.getWidth() / 2f - this.cameraX % 32f, //
+                -screen.getHeight() / 2f - this.cameraY % 32f, //
                 0);
-        SpriteBatch.DEFAULT_SHADER.setUniformMat4f(ShaderUniforms.PROJECTION_MATRIX, screen.getProjection());
-        SpriteBatch.DEFAULT_SHADER.setUniformMat4f(ShaderUniforms.VIEW_MATRIX, cameraTransformation);
+        SpriteBatch.getDefaultShader().setUniformMat4f(ShaderUniforms.PROJECTION_MATRIX, screen.getProjection());
+        SpriteBatch.getDefaultShader().setUniformMat4f(ShaderUniforms.VIEW_MATRIX, cameraTransformation);
         //
-        final int cameraX = (int) vector.getX() / 32 - screenxTiles / 2 + 1;
-        final int cameraY = (int) vector.getY() / 32 - screenyTiles / 2 + 1;
+        final int cameraX = (int) this.cameraX / 32 - screenxTiles / 2 + 1;
+        final int cameraY = (int) this.cameraY / 32 - screenyTiles / 2 + 1;
         System.arraycopy(zeroUvs, 0, uvs, 0, uvs.length);
         final int minX = GMath.clampPositive(-cameraX);
         final int minY = GMath.clampPositive(-cameraY);
@@ -109,7 +117,7 @@ public class TileMapRenderer implements Renderer
         tileMap.getTexture().bind();
         vertexBuffer.bind();
         vertexBuffer.draw();
-        SpriteBatch.DEFAULT_SHADER.unbind();
+        SpriteBatch.getDefaultShader().unbind();
     }
 
     @Override
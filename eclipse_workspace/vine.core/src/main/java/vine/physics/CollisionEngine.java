@@ -1,16 +1,34 @@
 package vine.physics;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import vine.game.primitive.Primitive;
 import vine.util.Log;
 import vine.util.Pool;
+import vine.util.job.JobSystem;
 
 public class CollisionEngine
 {
-    CollisionDetection detection = new CollisionDetection();
-    ContactGeneration  contacts  = new ContactGeneration();
+    /**
+     * Minimal number of collision pairs, that are tested by one job.
+     */
+    private static final int NARROWPHASE_GRAIN = 64;
+
+    CollisionDetection       detection         = new CollisionDetection();
+    ContactGeneration        contacts          = new ContactGeneration();
+    private JobSystem        jobs              = new JobSystem(1);
+    /**
+     * The overlapping primitives of every block of collision pairs, that one
+     * job tests.
+     */
+    private Overlaps[]       overlaps          = new Overlaps[0];
+
+    public void setJobSystem(final JobSystem jobs)
+    {
+        this.jobs = jobs;
+    }
 
     public void resolveCollisions(final float delta)
     {
@@ -21,30 +39,70 @@ public class CollisionEngine
         }
         // Log.debug("Collision after broad phase:" +
         // detection.collisionPairsA.size());
-        for (int i = detection.collisionPairsA.size() - 1; i >= 0; i--)
+        final int pairs = detection.collisionPairsA.size();
+        final int blocks = (pairs + CollisionEngine.NARROWPHASE_GRAIN - 1) / CollisionEngine.NARROWPHASE_GRAIN;
+        if (overlaps.length < blocks)
+        {
+            final int created = overlaps.length;
+            overlaps = Arrays.copyOf(overlaps, blocks * 2);
+            for (int block = created; block < overlaps.length; block++)
+            {
+                overlaps[block] = new Overlaps();
+            }
+        }
+        // The primitive tests only read state, so the blocks of pairs are
+        // tested in parallel. Every block records its overlapping primitives,
+        // from which the contacts are generated afterwards on this thread.
+        final Overlaps[] found = overlaps;
+        jobs.parallelFor(blocks, 1, (start, end) ->
+        {
+            for (int block = start; block < end; block++)
+            {
+                final int first = block * CollisionEngine.NARROWPHASE_GRAIN;
+                findOverlaps(found[block], first, Math.min(first + CollisionEngine.NARROWPHASE_GRAIN, pairs));
+            }
+        });
+        for (int block = blocks - 1; block >= 0; block--)
+        {
+            final Overlaps blockOverlaps = found[block];
+            for (int i = 0; i < blockOverlaps.count; i++)
+            {
+                final int pair = blockOverlaps.pairs[i];
+                contacts.generateContact(blockOverlaps.primitivesA[i], detection.collisionPairsA.get(pair),
+                        blockOverlaps.primitivesB[i], detection.collisionPairsB.get(pair));
+            }
+            blockOverlaps.clear();
+        }
+        if (!contacts.contacts.isEmpty())
+        {
+            Log.debug("Need to resolve contacts: %d", Integer.valueOf(contacts.contacts.size()));
+            for (final Contact contact : contacts.contacts)
+            {
+                contact.resolve(delta);
+            }
+        }
+    }
+
+    /**
+     * Records the overlapping primitives of the collision pairs in the range
+     * [start,end) in descending order of the pairs.
+     */
+    private void findOverlaps(final Overlaps found, final int start, final int end)
+    {
+        for (int i = end - 1; i >= start; i--)
         {
             final PhysicsBody p = detection.collisionPairsA.get(i);
             final PhysicsBody q = detection.collisionPairsB.get(i);
-
             for (final Primitive pp : p.getPrimitives())
             {
                 for (final Primitive qq : q.getPrimitives())
                 {
                     if (pp.trace(qq))
                     {
-                        contacts.generateContact(pp, p, qq, q);
+                        found.add(i, pp, qq);
                     }
                 }
             }
-
-        }
-        if (!contacts.contacts.isEmpty())
-        {
-            Log.debug("Need to resolve contacts: %d", Integer.valueOf(contacts.contacts.size()));
-            for (final Contact contact : contacts.contacts)
-            {
-                contact.resolve(delta);
-            }
         }
     }
 
@@ -75,6 +133,39 @@ public class CollisionEngine
         }
     }
 
+    /**
+     * The overlapping primitives of a block of collision pairs together with
+     * the indices of their pairs.
+     */
+    private static class Overlaps
+    {
+        int[]       pairs       = new int[16];
+        Primitive[] primitivesA = new Primitive[16];
+        Primitive[] primitivesB = new Primitive[16];
+        int         count;
+
+        void add(final int pair, final Primitive a, final Primitive b)
+        {
+            if (count == pairs.length)
+            {
+                pairs = Arrays.copyOf(pairs, count * 2);
+                primitivesA = Arrays.copyOf(primitivesA, count * 2);
+                primitivesB = Arrays.copyOf(primitivesB, count * 2);
+            }
+            pairs[count] = pair;
+            primitivesA[count] = a;
+            primitivesB[count] = b;
+            count++;
+        }
+
+        void clear()
+        {
+            Arrays.fill(primitivesA, 0, count, null);
+            Arrays.fill(primitivesB, 0, count, null);
+            count = 0;
+        }
+    }
+
     private static class ContactGeneration
     {
         final Pool<Contact> contactPool = new Pool<>(Contact.class, 5000);
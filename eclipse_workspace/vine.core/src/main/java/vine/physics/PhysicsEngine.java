@@ -1,63 +1,118 @@
 package vine.physics;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 
+import vine.game.TransformStore;
+import vine.util.job.JobSystem;
+
 public class PhysicsEngine
 {
+    /**
+     * Minimal number of bodies, that are integrated by one job.
+     */
+    private static final int                      INTEGRATION_GRAIN = 256;
+
     private final CollisionEngine                 collisions   = new CollisionEngine();
-    private final Comparator<? super PhysicsBody> sorter       = (
-            o1,
-            o2) -> o1.getTransform().getWorldPosition().getX() > o2.getTransform().getWorldPosition().getX() ? 1 : -1;
+    private final SweepAndPrune                   broadphase   = new SweepAndPrune();
     private final List<PhysicsBody>               physicBodies = new ArrayList<>();
+    private JobSystem                             jobs         = new JobSystem(1);
 
     public PhysicsEngine()
     {
     }
 
+    /**
+     * @param jobs
+     *            The job system, that is used to simulate independent bodies
+     *            and collision pairs in parallel.
+     */
+    public void setJobSystem(final JobSystem jobs)
+    {
+        this.jobs = jobs;
+        collisions.setJobSystem(jobs);
+    }
+
     public void update(final float delta)
     {
-        // Integration , velocity and position resolution
-        for (final PhysicsBody p : physicBodies)
+        integrate(delta);
+        detectCollisions();
+        resolveCollisions(delta);
+    }
+
+    /**
+     * Integration , velocity and position resolution. Every body only changes
+     * its own state, so the bodies are integrated in parallel.
+     */
+    public void integrate(final float delta)
+    {
+        jobs.parallelFor(physicBodies.size(), PhysicsEngine.INTEGRATION_GRAIN, (start, end) ->
         {
-            p.onPhysicsUpdate(delta);
-        }
+            for (int i = start; i < end; i++)
+            {
+                physicBodies.get(i).onPhysicsUpdate(delta);
+            }
+        });
+    }
 
-        Collections.sort(physicBodies, sorter);
+    /**
+     * Broadphase, collects the pairs of bodies, whose bounds overlap. The
+     * sweep and prune keeps the pairs across the steps and only updates the
+     * ones, that changed.
+     */
+    public void detectCollisions()
+    {
+        // Child transforms are resolved once here, so the narrowphase jobs
+        // only read the stored world positions.
+        TransformStore.get().updateWorldTransforms(jobs);
+        broadphase.update();
         collisions.prepareCollisionDetection();
-        final int size = physicBodies.size();
-        for (int i = 0; i < size - 1; i++)
+        for (int i = 0; i < broadphase.getPairCount(); i++)
         {
-            final PhysicsBody p = physicBodies.get(i);
-            final float posX = p.getTransform().getWorldPosition().getX() + p.getAabb().getWidth();
-            final float posY = p.getTransform().getWorldPosition().getY();
-            final float height = p.getAabb().getHeight();
-            int a = i + 1;
-            PhysicsBody q = physicBodies.get(a);
-            while (a < size && q.getTransform().getWorldPosition().getX() <= posX)
+            final PhysicsBody p = broadphase.getPairA(i);
+            final PhysicsBody q = broadphase.getPairB(i);
+            // The left body collides with the right one
+            if (p.getTransform().getWorldX() <= q.getTransform().getWorldX())
+            {
+                collisions.addCollisionPair(p, q);
+            } else
             {
-                q = physicBodies.get(a);
-                final float qy = q.getTransform().getWorldPosition().getY();
-                final boolean yOverlap = posY < qy ? qy <= posY + height : posY - qy < q.getAabb().getHeight();
-                if (yOverlap)
-                {
-                    collisions.addCollisionPair(p, q);
-                }
-                a++;
+                collisions.addCollisionPair(q, p);
             }
         }
+    }
+
+    /**
+     * @return The broadphase, that reports the pairs of bodies, that started
+     *         or stopped to overlap in the last step.
+     */
+    public SweepAndPrune getBroadphase()
+    {
+        return broadphase;
+    }
+
+    /**
+     * Narrowphase and contact resolution of the pairs found by the
+     * broadphase.
+     */
+    public void resolveCollisions(final float delta)
+    {
         collisions.resolveCollisions(delta);
     }
 
     public boolean addPhysicBody(final PhysicsBody physicBody)
     {
+        broadphase.add(physicBody);
         return physicBodies.add(physicBody);
     }
 
     public boolean removePhysicBody(final PhysicsBody physicBody)
     {
-        return physicBodies.remove(physicBody);
+        if (!physicBodies.remove(physicBody))
+        {
+            return false;
+        }
+        broadphase.remove(physicBody);
+        return true;
     }
 }
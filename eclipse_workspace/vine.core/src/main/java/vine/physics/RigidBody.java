@@ -104,7 +104,11 @@ public class RigidBody extends Component implements PhysicsBody
     @Override
     public void onPhysicsUpdate(final float delta)
     {
-        integrate(delta / 1000.f);
+        // Bodies in sleeping chunks keep their forces, until they wake up
+        if (entity == null || !entity.isSleeping())
+        {
+            integrate(delta / 1000.f);
+        }
     }
 
     @Override
@@ -120,11 +124,6 @@ public class RigidBody extends Component implements PhysicsBody
         entity.getScene().getWorld().getPhysics().removePhysicBody(this);
     }
 
-    @Override
-    public void onUpdate(final float delta)
-    {//
-    }
-
     @Override
     public void onDeactivation()
     {//
@@ -0,0 +1,478 @@
+package vine.physics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persistent sweep and prune broadphase. The minima and maxima of the bounds
+ * of all bodies are kept sorted on both axes across the steps. Bodies move
+ * only a little per step, so insertion sort restores the order in nearly
+ * linear time.
+ * <p>
+ * Two bounds start to overlap on an axis exactly when the minimum of one of
+ * them is sorted before the maximum of the other. So the pairs of overlapping
+ * bodies are only changed, when the sort swaps such endpoints, and every
+ * update reports the pairs, that were added and removed.
+ * </p>
+ * <p>
+ * The bounds of a body reach from its world position by the width and height
+ * of its axis aligned box. Touching bounds overlap.
+ * </p>
+ * <p>
+ * Removing a body takes constant time. Its pairs and endpoints are removed
+ * by the next update together with those of all other removed bodies.
+ * </p>
+ */
+public final class SweepAndPrune
+{
+    private static final int   NONE      = -1;
+    /**
+     * Marks free slots of the pair table. Never a valid key, as proxies
+     * aren't negative.
+     */
+    private static final long  EMPTY     = -1L;
+
+    private PhysicsBody[]      bodies    = new PhysicsBody[16];
+    private float[]            minX      = new float[16];
+    private float[]            minY      = new float[16];
+    private float[]            maxX      = new float[16];
+    private float[]            maxY      = new float[16];
+    private int[]              nextFree  = new int[16];
+    private int                proxyCount;
+    private int                freeList  = SweepAndPrune.NONE;
+    private int                bodyCount;
+    /**
+     * The proxies of removed bodies, whose pairs and endpoints the next
+     * update removes. They aren't reused before.
+     */
+    private boolean[]          dead      = new boolean[16];
+    private int[]              pending   = new int[16];
+    private int                pendingCount;
+
+    private final Map<PhysicsBody, Integer> proxies = new IdentityHashMap<>();
+
+    /**
+     * The sorted endpoints of every axis. An endpoint is the proxy of its
+     * body shifted left by one, the lowest bit is set for maxima.
+     */
+    private int[]              endsX     = new int[32];
+    private int[]              endsY     = new int[32];
+    private float[]            valuesX   = new float[32];
+    private float[]            valuesY   = new float[32];
+    private int                endCount;
+
+    /**
+     * The keys of the overlapping pairs. Linear probing table, whose length
+     * is a power of two and at least twice the number of pairs.
+     */
+    private long[]             table     = SweepAndPrune.emptyTable(64);
+    /**
+     * The index of the pair of every key in the table in the dense array.
+     */
+    private int[]              indices   = new int[64];
+    private long[]             pairs     = new long[32];
+    private int                pairCount;
+
+    private final List<PhysicsBody> addedA   = new ArrayList<>();
+    private final List<PhysicsBody> addedB   = new ArrayList<>();
+    private final List<PhysicsBody> removedA = new ArrayList<>();
+    private final List<PhysicsBody> removedB = new ArrayList<>();
+
+    /**
+     * @return The number of bodies in the broadphase.
+     */
+    public int size()
+    {
+        return bodyCount;
+    }
+
+    /**
+     * @return The number of pairs of bodies, whose bounds overlap.
+     */
+    public int getPairCount()
+    {
+        return pairCount;
+    }
+
+    /**
+     * @param pair
+     *            A value between 0 and {@link #getPairCount()}
+     * @return The first body of the pair.
+     */
+    public PhysicsBody getPairA(final int pair)
+    {
+        return bodies[(int) (pairs[pair] >>> 32)];
+    }
+
+    /**
+     * @param pair
+     *            A value between 0 and {@link #getPairCount()}
+     * @return The second body of the pair.
+     */
+    public PhysicsBody getPairB(final int pair)
+    {
+        return bodies[(int) pairs[pair]];
+    }
+
+    /**
+     * @return The first bodies of the pairs, that started to overlap in the
+     *         last update.
+     */
+    public List<PhysicsBody> getAddedPairsA()
+    {
+        return addedA;
+    }
+
+    /**
+     * @return The second bodies of the pairs, that started to overlap in the
+     *         last update.
+     */
+    public List<PhysicsBody> getAddedPairsB()
+    {
+        return addedB;
+    }
+
+    /**
+     * @return The first bodies of the pairs, that stopped to overlap in the
+     *         last update or lost a body before it.
+     */
+    public List<PhysicsBody> getRemovedPairsA()
+    {
+        return removedA;
+    }
+
+    /**
+     * @return The second bodies of the pairs, that stopped to overlap in the
+     *         last update or lost a body before it.
+     */
+    public List<PhysicsBody> getRemovedPairsB()
+    {
+        return removedB;
+    }
+
+    /**
+     * Adds the body. Its endpoints are appended and sorted into place by the
+     * next update, which also reports its overlapping pairs.
+     */
+    void add(final PhysicsBody body)
+    {
+        if (proxies.containsKey(body))
+        {
+            return;
+        }
+        final int proxy = allocate();
+        proxies.put(body, proxy);
+        bodies[proxy] = body;
+        readBounds(proxy);
+        if (endCount + 2 > endsX.length)
+        {
+            final int capacity = endsX.length * 2;
+            endsX = Arrays.copyOf(endsX, capacity);
+            endsY = Arrays.copyOf(endsY, capacity);
+            valuesX = Arrays.copyOf(valuesX, capacity);
+            valuesY = Arrays.copyOf(valuesY, capacity);
+        }
+        endsX[endCount] = proxy << 1;
+        endsY[endCount++] = proxy << 1;
+        endsX[endCount] = proxy << 1 | 1;
+        endsY[endCount++] = proxy << 1 | 1;
+        bodyCount++;
+    }
+
+    /**
+     * Removes the body. Its pairs are reported as removed by the next update.
+     */
+    void remove(final PhysicsBody body)
+    {
+        final Integer proxy = proxies.remove(body);
+        if (proxy == null)
+        {
+            return;
+        }
+        if (pendingCount == pending.length)
+        {
+            pending = Arrays.copyOf(pending, pendingCount * 2);
+        }
+        pending[pendingCount++] = proxy;
+        dead[proxy] = true;
+        bodyCount--;
+    }
+
+    /**
+     * Reads the current bounds of all bodies, sorts their endpoints and
+     * updates the overlapping pairs. Replaces the pairs reported by the last
+     * update.
+     */
+    void update()
+    {
+        addedA.clear();
+        addedB.clear();
+        removedA.clear();
+        removedB.clear();
+        if (pendingCount > 0)
+        {
+            releasePending();
+        }
+        for (int proxy = 0; proxy < proxyCount; proxy++)
+        {
+            if (bodies[proxy] != null)
+            {
+                readBounds(proxy);
+            }
+        }
+        for (int i = 0; i < endCount; i++)
+        {
+            valuesX[i] = (endsX[i] & 1) == 0 ? minX[endsX[i] >> 1] : maxX[endsX[i] >> 1];
+            valuesY[i] = (endsY[i] & 1) == 0 ? minY[endsY[i] >> 1] : maxY[endsY[i] >> 1];
+        }
+        sort(endsX, valuesX);
+        sort(endsY, valuesY);
+    }
+
+    /**
+     * Removes the pairs and the endpoints of all removed bodies in one pass
+     * each and frees their proxies.
+     */
+    private void releasePending()
+    {
+        for (int i = pairCount - 1; i >= 0; i--)
+        {
+            final int a = (int) (pairs[i] >>> 32);
+            final int b = (int) pairs[i];
+            if (dead[a] || dead[b])
+            {
+                removePair(a, b);
+            }
+        }
+        compact(endsY);
+        endCount = compact(endsX);
+        for (int i = 0; i < pendingCount; i++)
+        {
+            final int proxy = pending[i];
+            dead[proxy] = false;
+            bodies[proxy] = null;
+            nextFree[proxy] = freeList;
+            freeList = proxy;
+        }
+        pendingCount = 0;
+    }
+
+    /**
+     * Insertion sort of the endpoints of an axis. Moving a minimum before the
+     * maximum of another body can add a pair, moving a maximum before the
+     * minimum of another body separates them on this axis.
+     */
+    private void sort(final int[] ends, final float[] values)
+    {
+        for (int i = 1; i < endCount; i++)
+        {
+            final int end = ends[i];
+            final float value = values[i];
+            final boolean isMax = (end & 1) != 0;
+            int j = i - 1;
+            // Minima are sorted before maxima of the same value, so touching
+            // bounds overlap
+            while (j >= 0 && (value < values[j] || value == values[j] && !isMax && (ends[j] & 1) != 0))
+            {
+                final int other = ends[j];
+                if ((other & 1) != 0 && !isMax)
+                {
+                    if (overlaps(end >> 1, other >> 1))
+                    {
+                        addPair(end >> 1, other >> 1);
+                    }
+                } else if ((other & 1) == 0 && isMax)
+                {
+                    removePair(end >> 1, other >> 1);
+                }
+                ends[j + 1] = other;
+                values[j + 1] = values[j];
+                j--;
+            }
+            ends[j + 1] = end;
+            values[j + 1] = value;
+        }
+    }
+
+    private boolean overlaps(final int a, final int b)
+    {
+        return minX[a] <= maxX[b] && minX[b] <= maxX[a] && minY[a] <= maxY[b] && minY[b] <= maxY[a];
+    }
+
+    private void readBounds(final int proxy)
+    {
+        final PhysicsBody body = bodies[proxy];
+        minX[proxy] = body.getTransform().getWorldX();
+        minY[proxy] = body.getTransform().getWorldY();
+        maxX[proxy] = minX[proxy] + body.getAabb().getWidth();
+        maxY[proxy] = minY[proxy] + body.getAabb().getHeight();
+    }
+
+    private void addPair(final int a, final int b)
+    {
+        final long key = SweepAndPrune.key(a, b);
+        final int mask = table.length - 1;
+        int slot = SweepAndPrune.hash(key) & mask;
+        while (table[slot] != SweepAndPrune.EMPTY)
+        {
+            if (table[slot] == key)
+            {
+                return;
+            }
+            slot = slot + 1 & mask;
+        }
+        if (pairCount == pairs.length)
+        {
+            pairs = Arrays.copyOf(pairs, pairCount * 2);
+        }
+        table[slot] = key;
+        indices[slot] = pairCount;
+        pairs[pairCount++] = key;
+        addedA.add(bodies[Math.min(a, b)]);
+        addedB.add(bodies[Math.max(a, b)]);
+        if (pairCount * 2 > table.length)
+        {
+            rehash(table.length * 2);
+        }
+    }
+
+    /**
+     * Removes the pair from the table and moves the following keys of its
+     * probe sequence back, so no tombstones are needed. The last pair takes
+     * the place of the removed one in the dense array.
+     */
+    private void removePair(final int a, final int b)
+    {
+        final long key = SweepAndPrune.key(a, b);
+        final int mask = table.length - 1;
+        int hole = SweepAndPrune.hash(key) & mask;
+        while (table[hole] != key)
+        {
+            if (table[hole] == SweepAndPrune.EMPTY)
+            {
+                return;
+            }
+            hole = hole + 1 & mask;
+        }
+        final int index = indices[hole];
+        final long last = pairs[--pairCount];
+        pairs[index] = last;
+        if (last != key)
+        {
+            indices[find(last)] = index;
+        }
+        table[hole] = SweepAndPrune.EMPTY;
+        for (int i = hole + 1 & mask; table[i] != SweepAndPrune.EMPTY; i = i + 1 & mask)
+        {
+            final int home = SweepAndPrune.hash(table[i]) & mask;
+            // Moves the key, unless its home lies cyclically between the hole
+            // and its slot
+            if ((i - home & mask) >= (i - hole & mask))
+            {
+                table[hole] = table[i];
+                indices[hole] = indices[i];
+                table[i] = SweepAndPrune.EMPTY;
+                hole = i;
+            }
+        }
+        removedA.add(bodies[Math.min(a, b)]);
+        removedB.add(bodies[Math.max(a, b)]);
+    }
+
+    /**
+     * @return The slot of the key in the table, that has to contain it.
+     */
+    private int find(final long key)
+    {
+        final int mask = table.length - 1;
+        int slot = SweepAndPrune.hash(key) & mask;
+        while (table[slot] != key)
+        {
+            slot = slot + 1 & mask;
+        }
+        return slot;
+    }
+
+    private void rehash(final int capacity)
+    {
+        table = SweepAndPrune.emptyTable(capacity);
+        indices = new int[capacity];
+        final int mask = capacity - 1;
+        for (int i = 0; i < pairCount; i++)
+        {
+            int slot = SweepAndPrune.hash(pairs[i]) & mask;
+            while (table[slot] != SweepAndPrune.EMPTY)
+            {
+                slot = slot + 1 & mask;
+            }
+            table[slot] = pairs[i];
+            indices[slot] = i;
+        }
+    }
+
+    private int allocate()
+    {
+        if (freeList != SweepAndPrune.NONE)
+        {
+            final int proxy = freeList;
+            freeList = nextFree[proxy];
+            return proxy;
+        }
+        if (proxyCount == bodies.length)
+        {
+            final int capacity = proxyCount * 2;
+            bodies = Arrays.copyOf(bodies, capacity);
+            minX = Arrays.copyOf(minX, capacity);
+            minY = Arrays.copyOf(minY, capacity);
+            maxX = Arrays.copyOf(maxX, capacity);
+            maxY = Arrays.copyOf(maxY, capacity);
+            nextFree = Arrays.copyOf(nextFree, capacity);
+            dead = Arrays.copyOf(dead, capacity);
+        }
+        return proxyCount++;
+    }
+
+    /**
+     * Removes the endpoints of the removed bodies from the axis. The order of
+     * the remaining endpoints doesn't change.
+     *
+     * @return The remaining number of endpoints
+     */
+    private int compact(final int[] ends)
+    {
+        int kept = 0;
+        for (int i = 0; i < endCount; i++)
+        {
+            if (!dead[ends[i] >> 1])
+            {
+                ends[kept++] = ends[i];
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * @return The key of the pair, that doesn't depend on the order of the
+     *         proxies.
+     */
+    private static long key(final int a, final int b)
+    {
+        return (long) Math.min(a, b) << 32 | Math.max(a, b);
+    }
+
+    private static int hash(final long key)
+    {
+        final long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ hash >>> 32);
+    }
+
+    private static long[] emptyTable(final int capacity)
+    {
+        final long[] table = new long[capacity];
+        Arrays.fill(table, SweepAndPrune.EMPTY);
+        return table;
+    }
+}
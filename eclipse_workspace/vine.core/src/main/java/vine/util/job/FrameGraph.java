@@ -0,0 +1,134 @@
+package vine.util.job;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Describes the work of one frame as stages with dependencies. Every frame all
+ * stages are executed on the job system. A stage starts after all stages it
+ * depends on are finished, stages without dependencies between each other run
+ * in parallel. The stages themselves can submit parallel sub jobs to the job
+ * system.
+ */
+public final class FrameGraph
+{
+    private final JobSystem            jobs;
+    private final Map<String, Node>    nodes  = new HashMap<>();
+    private final List<Node>           order  = new ArrayList<>();
+    private final List<List<Runnable>> levels = new ArrayList<>();
+    private boolean                    dirty;
+    private float                      delta;
+
+    /**
+     * Work, that is done once per frame.
+     */
+    @FunctionalInterface
+    public interface Stage
+    {
+        /**
+         * @param delta
+         *            The time in milliseconds, that is simulated this frame.
+         */
+        void execute(float delta);
+    }
+
+    private static final class Node
+    {
+        final String       name;
+        final Stage        stage;
+        final List<String> dependencies;
+        int                level = -1;
+
+        Node(final String name, final Stage stage, final List<String> dependencies)
+        {
+            this.name = name;
+            this.stage = stage;
+            this.dependencies = dependencies;
+        }
+    }
+
+    /**
+     * @param jobs
+     *            The job system, that executes the stages.
+     */
+    public FrameGraph(final JobSystem jobs)
+    {
+        this.jobs = jobs;
+    }
+
+    /**
+     * @param name
+     *            The unique name of the stage.
+     * @param stage
+     *            The work of the stage.
+     * @param dependencies
+     *            The names of the stages, that have to be finished before this
+     *            stage starts. All of them have to be added before.
+     * @return This graph.
+     */
+    public synchronized FrameGraph addStage(final String name, final Stage stage, final String... dependencies)
+    {
+        if (nodes.containsKey(name))
+        {
+            throw new IllegalArgumentException("The frame graph already contains a stage named " + name);
+        }
+        for (final String dependency : dependencies)
+        {
+            if (!nodes.containsKey(dependency))
+            {
+                throw new IllegalArgumentException("Stage " + name + " depends on unknown stage " + dependency);
+            }
+        }
+        final Node node = new Node(name, stage, Arrays.asList(dependencies));
+        nodes.put(name, node);
+        order.add(node);
+        dirty = true;
+        return this;
+    }
+
+    /**
+     * Groups the stages by the length of their longest dependency chain. All
+     * stages of one level can be executed in parallel.
+     */
+    private void compile()
+    {
+        levels.clear();
+        for (final Node node : order)
+        {
+            int level = 0;
+            for (final String dependency : node.dependencies)
+            {
+                level = Math.max(level, nodes.get(dependency).level + 1);
+            }
+            node.level = level;
+            while (levels.size() <= level)
+            {
+                levels.add(new ArrayList<>());
+            }
+            levels.get(level).add(() -> node.stage.execute(delta));
+        }
+        dirty = false;
+    }
+
+    /**
+     * Executes all stages and returns after the last one is finished.
+     *
+     * @param delta
+     *            The time in milliseconds, that is simulated this frame.
+     */
+    public synchronized void execute(final float delta)
+    {
+        if (dirty)
+        {
+            compile();
+        }
+        this.delta = delta;
+        for (int i = 0; i < levels.size(); i++)
+        {
+            jobs.invokeAll(levels.get(i));
+        }
+    }
+}
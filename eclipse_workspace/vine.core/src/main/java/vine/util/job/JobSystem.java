@@ -0,0 +1,172 @@
+package vine.util.job;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Executes jobs on a work-stealing thread pool. Jobs can split themselves into
+ * parallel sub jobs, idle worker threads steal the remaining halves from busy
+ * ones.
+ * <p>
+ * A job system with a parallelism of one doesn't create any threads and
+ * executes all jobs on the calling thread.
+ * </p>
+ */
+public final class JobSystem
+{
+    private final ForkJoinPool pool;
+    private final int          parallelism;
+
+    /**
+     * Executes a part of a range of indices.
+     */
+    @FunctionalInterface
+    public interface RangeJob
+    {
+        /**
+         * @param start
+         *            The first index to process
+         * @param end
+         *            The index after the last index to process
+         */
+        void execute(int start, int end);
+    }
+
+    /**
+     * @param parallelism
+     *            The number of worker threads
+     */
+    public JobSystem(final int parallelism)
+    {
+        this.parallelism = Math.max(1, parallelism);
+        pool = this.parallelism == 1 ? null : new ForkJoinPool(this.parallelism, pool ->
+        {
+            final ForkJoinWorkerThread worker = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            worker.setName("job-" + worker.getPoolIndex());
+            return worker;
+        }, null, false);
+    }
+
+    /**
+     * @return The number of threads, that execute jobs in parallel.
+     */
+    public int getParallelism()
+    {
+        return parallelism;
+    }
+
+    /**
+     * Splits the range [0,count) into parts of at least grainSize indices and
+     * executes the job for every part in parallel. Returns after all parts
+     * are executed.
+     *
+     * @param count
+     *            The number of indices to process
+     * @param grainSize
+     *            The minimal number of indices one part contains.
+     * @param job
+     *            The job, that processes a part of the range
+     */
+    public void parallelFor(final int count, final int grainSize, final RangeJob job)
+    {
+        if (count <= 0)
+        {
+            return;
+        }
+        final int grain = Math.max(1, grainSize);
+        if (pool == null || count <= grain)
+        {
+            job.execute(0, count);
+            return;
+        }
+        execute(new RangeTask(job, 0, count, grain));
+    }
+
+    /**
+     * Executes the given jobs in parallel and returns after all of them are
+     * finished.
+     *
+     * @param jobs
+     *            The jobs to execute
+     */
+    public void invokeAll(final List<Runnable> jobs)
+    {
+        if (pool == null || jobs.size() == 1)
+        {
+            for (int i = 0; i < jobs.size(); i++)
+            {
+                jobs.get(i).run();
+            }
+            return;
+        }
+        execute(new RecursiveAction()
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void compute()
+            {
+                final ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[jobs.size()];
+                for (int i = 0; i < tasks.length; i++)
+                {
+                    tasks[i] = ForkJoinTask.adapt(jobs.get(i));
+                }
+                ForkJoinTask.invokeAll(tasks);
+            }
+        });
+    }
+
+    private void execute(final ForkJoinTask<?> task)
+    {
+        if (ForkJoinTask.getPool() == pool)
+        {
+            task.invoke();
+        } else
+        {
+            pool.invoke(task);
+        }
+    }
+
+    /**
+     * Stops the worker threads. Jobs, that are executed afterwards, fail.
+     */
+    public void shutdown()
+    {
+        if (pool != null)
+        {
+            pool.shutdown();
+        }
+    }
+
+    private static final class RangeTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+        private final RangeJob    job;
+        private final int         start;
+        private final int         end;
+        private final int         grain;
+
+        RangeTask(final RangeJob job, final int start, final int end, final int grain)
+        {
+            this.job = job;
+            this.start = start;
+            this.end = end;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (end - start <= grain)
+            {
+                job.execute(start, end);
+                return;
+            }
+            final int middle = start + end >>> 1;
+            ForkJoinTask.invokeAll(new RangeTask(job, start, middle, grain), new RangeTask(job, middle, end, grain));
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package vine.util.reflection;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+import vine.util.Log;
+
+/**
+ * Creates invokers for constructors and methods, that are looked up once and
+ * called without reflection afterwards. Cache the results, the lookups
+ * themselves are expensive.
+ */
+public final class Factories
+{
+    private static final MethodHandles.Lookup LOOKUP         = MethodHandles.lookup();
+    private static final MethodType           SPREAD_INVOKER = MethodType
+            .methodType(void.class, Object.class, Object[].class);
+
+    private Factories()
+    {
+    }
+
+    /**
+     * @param type
+     *            The class, that is instantiated by the supplier
+     * @return A supplier, that calls the public no argument constructor of the
+     *         given class or null, if the class has no such constructor.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Supplier<T> createConstructor(final Class<T> type)
+    {
+        if (Modifier.isAbstract(type.getModifiers()))
+        {
+            Log.exception("Could not instantiate gameobject of class:" + type.getName()
+                    + "\nMaybe you passed a class, that is abstract and or does not inherit Gameobject", null);
+            return null;
+        }
+        final MethodHandle constructor;
+        try
+        {
+            constructor = Factories.LOOKUP.findConstructor(type, MethodType.methodType(void.class));
+        } catch (NoSuchMethodException | IllegalAccessException e)
+        {
+            Log.exception("Could not instantiate gameobject of class:" + type.getName()
+                    + "\n Perhaps you made the constructor private?\n", e);
+            return null;
+        }
+        try
+        {
+            final CallSite site = LambdaMetafactory.metafactory(
+                    Factories.LOOKUP,
+                    "get",
+                    MethodType.methodType(Supplier.class),
+                    MethodType.methodType(Object.class),
+                    constructor,
+                    MethodType.methodType(type));
+            return (Supplier<T>) site.getTarget().invokeExact();
+        } catch (final Throwable e)
+        {
+            // Classes, that can't be linked by a lambda, are created through
+            // the method handle.
+            return () -> Factories.invokeConstructor(constructor, type);
+        }
+    }
+
+    private static <T> T invokeConstructor(final MethodHandle constructor, final Class<T> type)
+    {
+        try
+        {
+            return type.cast(constructor.invoke());
+        } catch (final Throwable e)
+        {
+            Log.exception("Could not instantiate gameobject of class:" + type.getName(), e);
+            return null;
+        }
+    }
+
+    /**
+     * @param type
+     *            The class, whose methods are searched
+     * @param name
+     *            The name of the searched public methods
+     * @return The invokers of all public methods with the given name, indexed
+     *         by their number of parameters. An invoker takes the target and
+     *         an array of all arguments. Indices without method are null. If
+     *         there are several methods with the same number of parameters,
+     *         the method of the most specific class is used.
+     */
+    public static MethodHandle[] findMethodsByArity(final Class<?> type, final String name)
+    {
+        Method[] methods = new Method[0];
+        for (final Method method : type.getMethods())
+        {
+            if (!method.getName().equals(name))
+            {
+                continue;
+            }
+            final int arity = method.getParameterCount();
+            if (arity >= methods.length)
+            {
+                methods = Arrays.copyOf(methods, arity + 1);
+            }
+            final Method existing = methods[arity];
+            if (existing == null || existing.getDeclaringClass().isAssignableFrom(method.getDeclaringClass()))
+            {
+                methods[arity] = method;
+            }
+        }
+        final MethodHandle[] invokers = new MethodHandle[methods.length];
+        for (int i = 0; i < methods.length; i++)
+        {
+            if (methods[i] == null)
+            {
+                continue;
+            }
+            try
+            {
+                invokers[i] = Factories.LOOKUP.unreflect(methods[i])
+                        .asSpreader(Object[].class, i)
+                        .asType(Factories.SPREAD_INVOKER);
+            } catch (final IllegalAccessException e)
+            {
+                Log.exception(
+                        "The " + name + " method you've implemented in the class " + type.toString()
+                                + " is not public.",
+                        e);
+            }
+        }
+        return invokers;
+    }
+
+    /**
+     * @param invoker
+     *            An invoker returned by {@link #findMethodsByArity}
+     * @param target
+     *            The object, on which the method gets invoked
+     * @param params
+     *            The arguments of the method
+     */
+    public static void invoke(final MethodHandle invoker, final Object target, final Object... params)
+    {
+        try
+        {
+            invoker.invokeExact(target, params);
+        } catch (final ClassCastException e)
+        {
+            Log.exception(
+                    "The supplied arguments " + Arrays.toString(params)
+                            + " don't match the defined argument list of the given class "
+                            + target.getClass().toString() + " method.",
+                    e);
+        } catch (final Throwable e)
+        {
+            Log.exception("Method of class " + target.getClass().toString() + " failed.", e);
+        }
+    }
+
+    /**
+     * @param type
+     *            The class, that is checked
+     * @param name
+     *            The name of the method, that is looked for.
+     * @param params
+     *            The parameters, the method requires
+     * @return True, if the given class itself declares a public method with
+     *         the given name and parameters.
+     */
+    public static boolean declaresMethod(final Class<?> type, final String name, final Class<?>... params)
+    {
+        try
+        {
+            return type.getMethod(name, params).getDeclaringClass().equals(type);
+        } catch (final NoSuchMethodException e)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * @param type
+     *            A subclass of base
+     * @param base
+     *            The class, that declares the method
+     * @param name
+     *            The name of a public method
+     * @param params
+     *            The parameter types of the method
+     * @return True, if the class or one of its superclasses below base
+     *         overrides the method.
+     */
+    public static boolean overridesMethod(
+            final Class<?> type,
+            final Class<?> base,
+            final String name,
+            final Class<?>... params)
+    {
+        try
+        {
+            return !type.getMethod(name, params).getDeclaringClass().equals(base);
+        } catch (final NoSuchMethodException e)
+        {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package vine.util.time;
+
+/**
+ * Accumulates passed frame time and converts it into a number of simulation
+ * steps of constant duration. The time that is left over after the last whole
+ * step is used to calculate the interpolation factor between the last two
+ * simulated states.
+ * <p>
+ * If a frame takes so long, that more than the maximum number of steps would
+ * be needed to catch up, the exceeding steps are dropped. The simulation then
+ * runs slower than real time for that frame, instead of spiralling into ever
+ * longer frames.
+ * </p>
+ */
+public final class FixedTimestep
+{
+    private final float   stepDuration;
+    private final long    stepNanos;
+    private final int     maxStepsPerFrame;
+    private float         accumulator;
+    private long          droppedSteps;
+    /**
+     * System time in nanoseconds at which the state of the last simulated
+     * step was reached. Read by the render thread.
+     */
+    private volatile long stepTimestamp = System.nanoTime();
+
+    /**
+     * @param stepDuration
+     *            The duration of one simulation step in milliseconds.
+     * @param maxStepsPerFrame
+     *            The maximum number of steps, that are simulated per call of
+     *            advance.
+     */
+    public FixedTimestep(final float stepDuration, final int maxStepsPerFrame)
+    {
+        if (stepDuration <= 0 || maxStepsPerFrame <= 0)
+        {
+            throw new IllegalArgumentException("Step duration and steps per frame have to be greater than zero.");
+        }
+        this.stepDuration = stepDuration;
+        this.maxStepsPerFrame = maxStepsPerFrame;
+        stepNanos = (long) (stepDuration * 1e6);
+    }
+
+    /**
+     * Adds the given time to the accumulator.
+     *
+     * @param delta
+     *            The time in milliseconds, that passed since the last call.
+     * @return The number of steps, that have to be simulated now.
+     */
+    public int advance(final float delta)
+    {
+        accumulator += delta;
+        int steps = (int) (accumulator / stepDuration);
+        accumulator -= steps * stepDuration;
+        if (steps > maxStepsPerFrame)
+        {
+            droppedSteps += steps - maxStepsPerFrame;
+            steps = maxStepsPerFrame;
+        }
+        if (steps > 0)
+        {
+            stepTimestamp = System.nanoTime() - (long) (accumulator * 1e6);
+        }
+        return steps;
+    }
+
+    /**
+     * @return The duration of one simulation step in milliseconds.
+     */
+    public float getStepDuration()
+    {
+        return stepDuration;
+    }
+
+    /**
+     * @return The time in nanoseconds until the next step is due.
+     */
+    public long getTimeUntilNextStep()
+    {
+        return stepNanos - (long) (accumulator * 1e6);
+    }
+
+    /**
+     * @return The interpolation factor between the previous and the current
+     *         simulated state in the range [0,1]. Can be called from any
+     *         thread.
+     */
+    public float getAlpha()
+    {
+        return getAlpha(stepTimestamp);
+    }
+
+    /**
+     * @param timestamp
+     *            The system time in nanoseconds, at which a simulated state
+     *            was reached.
+     * @return The interpolation factor for a state reached at the given time
+     *         in the range [0,1]. Can be called from any thread.
+     */
+    public float getAlpha(final long timestamp)
+    {
+        final float alpha = (System.nanoTime() - timestamp) / (float) stepNanos;
+        return alpha > 1 ? 1 : alpha;
+    }
+
+    /**
+     * @return The system time in nanoseconds, at which the state of the last
+     *         simulated step was reached.
+     */
+    public long getStepTimestamp()
+    {
+        return stepTimestamp;
+    }
+
+    /**
+     * @return The total number of steps, that were dropped because frames
+     *         overran.
+     */
+    public long getDroppedSteps()
+    {
+        return droppedSteps;
+    }
+}
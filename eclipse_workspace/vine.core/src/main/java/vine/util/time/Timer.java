@@ -1,22 +0,0 @@
-package vine.util.time;
-
-public interface Timer
-{
-
-    void tick(float f);
-
-    void start();
-
-    void reset();
-
-    void stop();
-
-    float getElapsedTime();
-
-    float getDuration();
-
-    boolean isRunning();
-
-    float getId();
-
-}
@@ -1,17 +1,77 @@
 package vine.util.time;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
+/**
+ * Executes callbacks after a given time. Timers are kept in a hierarchical
+ * timing wheel with a resolution of one millisecond, so scheduling and
+ * cancelling take constant time and a tick only visits the timers, that
+ * expire or move to a finer wheel.
+ * <p>
+ * Timers can be created and cancelled from any thread. The requests are
+ * queued and applied at the beginning of the next tick. Ticking and the
+ * queries of running timers have to happen on the thread, that advances the
+ * game time.
+ * </p>
+ */
 public final class TimerManager
 {
-    private static TimerManager     instance;
+    /**
+     * A handle, that never refers to a timer.
+     */
+    public static final long          INVALID_HANDLE = 0;
+    /**
+     * Loop count of timers, that run until they are cancelled.
+     */
+    public static final int           INFINITE       = -1;
 
-    private float                   id;
-    private final List<Timer>       timers       = new ArrayList<>(50);
-    private final Map<Float, Timer> mappedTimers = new HashMap<>(50);
+    private static final TimerManager INSTANCE       = new TimerManager();
+
+    private static final int          SLOT_BITS      = 8;
+    private static final int          SLOTS          = 1 << TimerManager.SLOT_BITS;
+    private static final int          SLOT_MASK      = TimerManager.SLOTS - 1;
+    private static final int          LEVELS         = 4;
+    private static final long         MAX_TICKS      = (1L << TimerManager.SLOT_BITS * TimerManager.LEVELS) - 1;
+    private static final int          NONE           = -1;
+
+    private static final byte         SCHEDULE       = 0;
+    private static final byte         CANCEL         = 1;
+    private static final byte         RESET          = 2;
+
+    private final Queue<Request>      requests       = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Guards the allocation of timer slots, the only state, that is shared
+     * with scheduling threads.
+     */
+    private final Object              slotLock       = new Object();
+    private int[]                     generations    = new int[64];
+    private int[]                     freeSlots      = new int[64];
+    private int                       freeCount;
+    private int                       slotCount;
+
+    /**
+     * First timer of every bucket of all wheels.
+     */
+    private final int[]               heads          = new int[TimerManager.SLOTS * TimerManager.LEVELS];
+    private long[]                    handles        = new long[64];
+    private long[]                    deadlines      = new long[64];
+    private long[]                    started        = new long[64];
+    private long[]                    intervals      = new long[64];
+    private int[]                     loops          = new int[64];
+    private int[]                     next           = new int[64];
+    private int[]                     previous       = new int[64];
+    private int[]                     buckets        = new int[64];
+    private FinishCallback[]          callbacks      = new FinishCallback[64];
+    private int                       activeCount;
+
+    /**
+     * The current time in ticks and the fraction of a tick, that passed since.
+     */
+    private long                      now;
+    private float                     fraction;
 
     @FunctionalInterface
     public interface FinishCallback
@@ -19,55 +79,317 @@ public final class TimerManager
         void invoke();
     }
 
-    public static TimerManager get()
+    /**
+     * A change of a timer, that was requested by any thread.
+     */
+    private static final class Request
     {
-        if (TimerManager.instance == null)
+        private final byte           operation;
+        private final long           handle;
+        private final long           interval;
+        private final int            loopCount;
+        private final FinishCallback callback;
+
+        Request(
+                final byte operation,
+                final long handle,
+                final long interval,
+                final int loopCount,
+                final FinishCallback callback)
         {
-            TimerManager.instance = new TimerManager();
+            this.operation = operation;
+            this.handle = handle;
+            this.interval = interval;
+            this.loopCount = loopCount;
+            this.callback = callback;
         }
-        return TimerManager.instance;
     }
 
-    public float createTimer(final float duration, final int loops, final FinishCallback execute)
+    private TimerManager()
+    {
+        Arrays.fill(heads, TimerManager.NONE);
+    }
+
+    public static TimerManager get()
     {
-        final Timer timer = new ExecutionTimer(duration, loops, execute, this.id++);
-        this.timers.add(timer);
-        this.mappedTimers.put(Float.valueOf(timer.getId()), timer);
-        timer.start();
-        return this.id;
+        return TimerManager.INSTANCE;
     }
 
-    public float getElapsedTime(final float timerId)
+    /**
+     * Creates a timer, that starts with the next tick. Can be called from any
+     * thread.
+     *
+     * @param duration
+     *            The time in seconds between the start and the execution and
+     *            between two executions
+     * @param loops
+     *            The number of executions or {@link #INFINITE}
+     * @param execute
+     *            The callback, that is executed on the ticking thread
+     * @return The handle of the timer
+     */
+    public long createTimer(final float duration, final int loops, final FinishCallback execute)
     {
-        final Timer timer = this.mappedTimers.get(Float.valueOf(timerId));
-        return timer == null ? 0 : timer.getElapsedTime();
+        final long handle = allocate();
+        final long interval = Math.min(TimerManager.MAX_TICKS, Math.max(1, Math.round(duration * 1000.0)));
+        requests.add(new Request(TimerManager.SCHEDULE, handle, interval,
+                loops == TimerManager.INFINITE ? TimerManager.INFINITE : Math.max(1, loops), execute));
+        return handle;
     }
 
-    public boolean resetTimer(final float timerId)
+    /**
+     * Stops the timer without executing it again. Can be called from any
+     * thread.
+     */
+    public void cancelTimer(final long timerId)
     {
-        final Timer timer = this.mappedTimers.get(Float.valueOf(timerId));
-        if (timer != null)
+        if (timerId != TimerManager.INVALID_HANDLE)
         {
-            timer.reset();
-            return true;
+            requests.add(new Request(TimerManager.CANCEL, timerId, 0, 0, null));
         }
-        return false;
     }
 
+    /**
+     * Restarts the current loop of the timer. Can be called from any thread.
+     */
+    public void resetTimer(final long timerId)
+    {
+        if (timerId != TimerManager.INVALID_HANDLE)
+        {
+            requests.add(new Request(TimerManager.RESET, timerId, 0, 0, null));
+        }
+    }
+
+    /**
+     * @return True, if the timer is running. Timers, that were created after
+     *         the last tick, aren't running yet.
+     */
+    public boolean isRunning(final long timerId)
+    {
+        return find(timerId) != TimerManager.NONE;
+    }
+
+    /**
+     * @return The time in seconds, that passed since the start of the current
+     *         loop of the timer or 0, if the timer isn't running.
+     */
+    public float getElapsedTime(final long timerId)
+    {
+        final int slot = find(timerId);
+        return slot == TimerManager.NONE ? 0 : (now - started[slot] + fraction) * 0.001f;
+    }
+
+    /**
+     * Applies the queued requests and executes all timers, that expire in the
+     * passed time.
+     *
+     * @param delta
+     *            The time in milliseconds, that passed since the last tick.
+     */
     public void tick(final float delta)
     {
-        for (int i = this.timers.size() - 1; i >= 0; i--)
+        Request request;
+        while ((request = requests.poll()) != null)
         {
-            final Timer timer = this.timers.get(i);
-            if (timer.isRunning())
+            apply(request);
+        }
+        fraction += delta;
+        final long target = now + (long) fraction;
+        fraction -= (long) fraction;
+        if (activeCount == 0)
+        {
+            now = target;
+            return;
+        }
+        while (now < target)
+        {
+            now++;
+            if ((now & TimerManager.SLOT_MASK) == 0)
+            {
+                cascade(1);
+            }
+            expire((int) (now & TimerManager.SLOT_MASK));
+        }
+    }
+
+    private void apply(final Request request)
+    {
+        if (request.operation == TimerManager.SCHEDULE)
+        {
+            final int slot = (int) (request.handle >>> 32);
+            ensureCapacity(slot + 1);
+            handles[slot] = request.handle;
+            intervals[slot] = request.interval;
+            loops[slot] = request.loopCount;
+            callbacks[slot] = request.callback;
+            started[slot] = now;
+            deadlines[slot] = now + request.interval;
+            activeCount++;
+            insert(slot);
+            return;
+        }
+        final int slot = find(request.handle);
+        if (slot == TimerManager.NONE)
+        {
+            return;
+        }
+        unlink(slot);
+        if (request.operation == TimerManager.CANCEL)
+        {
+            release(slot);
+        } else
+        {
+            started[slot] = now;
+            deadlines[slot] = now + intervals[slot];
+            insert(slot);
+        }
+    }
+
+    /**
+     * Executes all timers of the bucket of the first wheel. Repeating timers
+     * are scheduled relative to their deadline, so they don't drift.
+     */
+    private void expire(final int bucket)
+    {
+        int slot = heads[bucket];
+        heads[bucket] = TimerManager.NONE;
+        while (slot != TimerManager.NONE)
+        {
+            final int following = next[slot];
+            buckets[slot] = TimerManager.NONE;
+            callbacks[slot].invoke();
+            if (loops[slot] != TimerManager.INFINITE && --loops[slot] == 0)
             {
-                timer.tick(delta * 0.001f);
+                release(slot);
             } else
             {
-                this.timers.remove(i);
-                i--;
-                this.mappedTimers.remove(Float.valueOf(timer.getId()));
+                started[slot] = deadlines[slot];
+                deadlines[slot] += intervals[slot];
+                insert(slot);
+            }
+            slot = following;
+        }
+    }
+
+    /**
+     * Moves the timers of the current bucket of the given wheel to the finer
+     * wheels. Called, when all finer wheels completed a turn.
+     */
+    private void cascade(final int level)
+    {
+        final int index = (int) (now >>> TimerManager.SLOT_BITS * level & TimerManager.SLOT_MASK);
+        if (index == 0 && level + 1 < TimerManager.LEVELS)
+        {
+            cascade(level + 1);
+        }
+        final int bucket = level * TimerManager.SLOTS + index;
+        int slot = heads[bucket];
+        heads[bucket] = TimerManager.NONE;
+        while (slot != TimerManager.NONE)
+        {
+            final int following = next[slot];
+            insert(slot);
+            slot = following;
+        }
+    }
+
+    private void insert(final int slot)
+    {
+        final long deadline = deadlines[slot];
+        final long remaining = deadline - now;
+        int level = 0;
+        while (level + 1 < TimerManager.LEVELS && remaining >= 1L << TimerManager.SLOT_BITS * (level + 1))
+        {
+            level++;
+        }
+        final int bucket = level * TimerManager.SLOTS
+                + (int) (deadline >>> TimerManager.SLOT_BITS * level & TimerManager.SLOT_MASK);
+        buckets[slot] = bucket;
+        previous[slot] = TimerManager.NONE;
+        next[slot] = heads[bucket];
+        if (heads[bucket] != TimerManager.NONE)
+        {
+            previous[heads[bucket]] = slot;
+        }
+        heads[bucket] = slot;
+    }
+
+    private void unlink(final int slot)
+    {
+        final int bucket = buckets[slot];
+        if (bucket == TimerManager.NONE)
+        {
+            return;
+        }
+        if (previous[slot] == TimerManager.NONE)
+        {
+            heads[bucket] = next[slot];
+        } else
+        {
+            next[previous[slot]] = next[slot];
+        }
+        if (next[slot] != TimerManager.NONE)
+        {
+            previous[next[slot]] = previous[slot];
+        }
+        buckets[slot] = TimerManager.NONE;
+    }
+
+    /**
+     * @return The slot of the running timer with the given handle or
+     *         {@link #NONE}.
+     */
+    private int find(final long handle)
+    {
+        final int slot = (int) (handle >>> 32);
+        return handle != TimerManager.INVALID_HANDLE && slot < handles.length && handles[slot] == handle ? slot
+                : TimerManager.NONE;
+    }
+
+    private long allocate()
+    {
+        synchronized (slotLock)
+        {
+            final int slot = freeCount > 0 ? freeSlots[--freeCount] : slotCount++;
+            if (slot == generations.length)
+            {
+                generations = Arrays.copyOf(generations, slot * 2);
+            }
+            final int generation = ++generations[slot] == 0 ? ++generations[slot] : generations[slot];
+            return (long) slot << 32 | generation & 0xFFFFFFFFL;
+        }
+    }
+
+    private void release(final int slot)
+    {
+        handles[slot] = TimerManager.INVALID_HANDLE;
+        callbacks[slot] = null;
+        activeCount--;
+        synchronized (slotLock)
+        {
+            if (freeCount == freeSlots.length)
+            {
+                freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
             }
+            freeSlots[freeCount++] = slot;
+        }
+    }
+
+    private void ensureCapacity(final int capacity)
+    {
+        if (capacity <= handles.length)
+        {
+            return;
         }
+        final int size = Math.max(capacity, handles.length * 2);
+        handles = Arrays.copyOf(handles, size);
+        deadlines = Arrays.copyOf(deadlines, size);
+        started = Arrays.copyOf(started, size);
+        intervals = Arrays.copyOf(intervals, size);
+        loops = Arrays.copyOf(loops, size);
+        next = Arrays.copyOf(next, size);
+        previous = Arrays.copyOf(previous, size);
+        buckets = Arrays.copyOf(buckets, size);
+        callbacks = Arrays.copyOf(callbacks, size);
     }
 }
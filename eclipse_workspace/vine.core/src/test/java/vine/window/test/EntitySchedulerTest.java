@@ -0,0 +1,162 @@
+package vine.window.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import vine.game.World;
+import vine.game.scene.GameEntity;
+import vine.game.scene.Scene;
+
+public class EntitySchedulerTest
+{
+    /**
+     * Exactly representable, so lifetimes in multiples of it expire in a
+     * known frame.
+     */
+    private static final float DELTA = 0.125f;
+
+    /**
+     * The expected state of a spawned entity.
+     */
+    private static final class Expected
+    {
+        private final long handle;
+        /**
+         * The time, at which the entity expires, or infinity.
+         */
+        private double     expiration = Double.POSITIVE_INFINITY;
+        private boolean    alive      = true;
+        /**
+         * The number of ticks, after which the payload of the entity
+         * finishes, or 0, if it has none.
+         */
+        private int        limit;
+        private int        expectedTicks;
+        private int        ticks;
+
+        Expected(final long handle)
+        {
+            this.handle = handle;
+        }
+
+        void addPayload(final GameEntity entity, final int ticks)
+        {
+            limit = ticks;
+            entity.addExecutionPayload(delta -> ++this.ticks >= limit);
+        }
+    }
+
+    /**
+     * Spawns entities with random lifetimes and payloads, changes their
+     * lifetimes or destroys them between the frames and compares, which
+     * entities are alive and how often their payloads ticked, with a model,
+     * that checks every entity in every frame.
+     */
+    @Test
+    public void testLifetimesAndPayloads()
+    {
+        final Random random = new Random(5);
+        final World world = new World(null);
+        final Scene scene = world.getScene();
+        final List<Expected> all = new ArrayList<>();
+        double time = 0;
+        for (int frame = 0; frame < 200; frame++)
+        {
+            for (int i = 0; i < 20; i++)
+            {
+                all.add(EntitySchedulerTest.spawn(world, scene, random, time));
+            }
+            for (final Expected expected : all)
+            {
+                if (!expected.alive || random.nextInt(10) != 0)
+                {
+                    continue;
+                }
+                final GameEntity entity = World.getObject(expected.handle, GameEntity.class);
+                final int action = random.nextInt(4);
+                if (action == 0)
+                {
+                    entity.destroy();
+                    expected.alive = false;
+                } else if (action == 1)
+                {
+                    final int frames = 1 + random.nextInt(8);
+                    entity.setLifetime(frames * EntitySchedulerTest.DELTA);
+                    expected.expiration = time + frames * EntitySchedulerTest.DELTA;
+                } else if (action == 2)
+                {
+                    entity.setLifetime(GameEntity.LIVE_FOREVER);
+                    expected.expiration = Double.POSITIVE_INFINITY;
+                } else if (expected.expiration != Double.POSITIVE_INFINITY)
+                {
+                    final int frames = random.nextInt(9) - 4;
+                    entity.addLifetime(frames * EntitySchedulerTest.DELTA);
+                    expected.expiration += frames * EntitySchedulerTest.DELTA;
+                    if (expected.expiration <= time)
+                    {
+                        expected.alive = false;
+                    }
+                }
+            }
+
+            world.update(EntitySchedulerTest.DELTA);
+            time += EntitySchedulerTest.DELTA;
+            for (final Expected expected : all)
+            {
+                if (!expected.alive)
+                {
+                    continue;
+                }
+                // Entities, that expire in this frame, still execute their
+                // payloads in it
+                if (expected.expectedTicks < expected.limit)
+                {
+                    expected.expectedTicks++;
+                }
+                if (expected.expiration <= time)
+                {
+                    expected.alive = false;
+                }
+            }
+            for (final Expected expected : all)
+            {
+                assertEquals(expected.alive, World.getObject(expected.handle) != null);
+                assertEquals(expected.expectedTicks, expected.ticks);
+            }
+        }
+    }
+
+    /**
+     * Spawns an entity, that either gets its lifetime and payload after it
+     * entered the scene or before.
+     */
+    private static Expected spawn(final World world, final Scene scene, final Random random, final double time)
+    {
+        final boolean pending = random.nextBoolean();
+        final long handle = pending ? world.instantiate(GameEntity.class)
+                : scene.spawn(GameEntity.class, random.nextFloat() * 100, random.nextFloat() * 100, true);
+        final GameEntity entity = World.getObject(handle, GameEntity.class);
+        final Expected expected = new Expected(handle);
+        if (random.nextBoolean())
+        {
+            final int frames = 1 + random.nextInt(8);
+            entity.setLifetime(frames * EntitySchedulerTest.DELTA);
+            expected.expiration = time + frames * EntitySchedulerTest.DELTA;
+        }
+        if (random.nextBoolean())
+        {
+            expected.addPayload(entity, 1 + random.nextInt(6));
+        }
+        if (pending)
+        {
+            entity.setPosition(random.nextFloat() * 100, random.nextFloat() * 100);
+            scene.addEntity(entity);
+        }
+        return expected;
+    }
+}
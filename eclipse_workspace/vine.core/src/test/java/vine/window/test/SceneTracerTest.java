@@ -0,0 +1,219 @@
+package vine.window.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import vine.game.scene.EntityFilter;
+import vine.game.scene.GameEntity;
+import vine.game.scene.MultiTraceResult;
+import vine.game.scene.Scene;
+import vine.game.scene.SceneTracer;
+import vine.game.scene.SpatialSnapshot;
+import vine.game.scene.TraceResult;
+import vine.math.vector.Vec2f;
+
+public class SceneTracerTest
+{
+    private static final int   ENTITIES = 2000;
+    private static final float SIZE     = 1000;
+    /**
+     * Distance to the border of a box, within which rounding may decide
+     * whether a ray hits it.
+     */
+    private static final float EPSILON  = 1e-2f;
+
+    private int                visited;
+
+    private static List<GameEntity> populate(final Scene scene, final Random random)
+    {
+        final List<GameEntity> entities = new ArrayList<>();
+        for (int i = 0; i < SceneTracerTest.ENTITIES; i++)
+        {
+            final GameEntity entity = new GameEntity();
+            entity.setPosition(random.nextFloat() * SceneTracerTest.SIZE, random.nextFloat() * SceneTracerTest.SIZE);
+            entity.setBoundingBox(4 + random.nextFloat() * 30, 4 + random.nextFloat() * 30);
+            scene.addEntity(entity);
+            entities.add(entity);
+        }
+        return entities;
+    }
+
+    private static GameEntity spawn(final Scene scene, final Random random)
+    {
+        final GameEntity entity = new GameEntity();
+        entity.setPosition(random.nextFloat() * SceneTracerTest.SIZE, random.nextFloat() * SceneTracerTest.SIZE);
+        entity.setBoundingBox(4 + random.nextFloat() * 30, 4 + random.nextFloat() * 30);
+        scene.addEntity(entity);
+        return entity;
+    }
+
+    /**
+     * Moves, removes and adds random entities between the frames and compares
+     * box, ray and nearest neighbour traces with a test of every entity.
+     */
+    @Test
+    public void testTracesAfterChanges()
+    {
+        final Random random = new Random(11);
+        final Scene scene = new Scene();
+        final List<GameEntity> entities = SceneTracerTest.populate(scene, random);
+        final SceneTracer tracer = scene.getTracer();
+        final MultiTraceResult result = new MultiTraceResult();
+        for (int frame = 0; frame < 10; frame++)
+        {
+            for (int i = 0; i < 300; i++)
+            {
+                final GameEntity entity = entities.get(random.nextInt(entities.size()));
+                if (random.nextBoolean())
+                {
+                    entity.setPosition(random.nextFloat() * SceneTracerTest.SIZE,
+                            random.nextFloat() * SceneTracerTest.SIZE);
+                } else
+                {
+                    entity.addPosition(random.nextFloat() * 40 - 20, random.nextFloat() * 40 - 20);
+                }
+            }
+            for (int i = 0; i < 50; i++)
+            {
+                scene.removeEntity(entities.remove(random.nextInt(entities.size())));
+                entities.add(SceneTracerTest.spawn(scene, random));
+            }
+            scene.prepareUpdate(0);
+
+            for (int query = 0; query < 50; query++)
+            {
+                final float x = random.nextFloat() * SceneTracerTest.SIZE;
+                final float y = random.nextFloat() * SceneTracerTest.SIZE;
+                final float width = random.nextFloat() * 200;
+                final float height = random.nextFloat() * 200;
+                tracer.multiAabbTrace(null, new Vec2f(x, y), new Vec2f(width, height), result);
+                final Set<GameEntity> expected = new HashSet<>();
+                for (final GameEntity entity : entities)
+                {
+                    if (entity.getXPosition() <= x + width && entity.getYPosition() <= y + height
+                            && entity.getXPosition() + entity.getXExtends() >= x
+                            && entity.getYPosition() + entity.getYExtends() >= y)
+                    {
+                        expected.add(entity);
+                    }
+                }
+                assertEquals(expected, new HashSet<>(result.getEntities()));
+
+                SceneTracerTest.checkRay(tracer, entities, random, result);
+                SceneTracerTest.checkNearest(tracer, entities, random);
+            }
+        }
+    }
+
+    private static void checkRay(
+            final SceneTracer tracer,
+            final List<GameEntity> entities,
+            final Random random,
+            final MultiTraceResult result)
+    {
+        final float originX = random.nextFloat() * SceneTracerTest.SIZE;
+        final float originY = random.nextFloat() * SceneTracerTest.SIZE;
+        final double angle = random.nextDouble() * Math.PI * 2;
+        final float directionX = (float) Math.cos(angle);
+        final float directionY = (float) Math.sin(angle);
+        final float distance = random.nextFloat() * 500;
+        tracer.multiRayTrace(null, originX, originY, directionX, directionY, distance, result);
+        final Set<GameEntity> hits = new HashSet<>(result.getEntities());
+        assertTrue(entities.containsAll(hits));
+        for (final GameEntity entity : entities)
+        {
+            // Distances along the ray, in which it is inside the box
+            double near = 0;
+            double far = distance;
+            final double[] origins = { originX, originY };
+            final double[] directions = { directionX, directionY };
+            final double[] minima = { entity.getXPosition(), entity.getYPosition() };
+            final double[] maxima = { minima[0] + entity.getXExtends(), minima[1] + entity.getYExtends() };
+            for (int axis = 0; axis < 2; axis++)
+            {
+                final double t1 = (minima[axis] - origins[axis]) / directions[axis];
+                final double t2 = (maxima[axis] - origins[axis]) / directions[axis];
+                near = Math.max(near, Math.min(t1, t2));
+                far = Math.min(far, Math.max(t1, t2));
+            }
+            if (near < far - SceneTracerTest.EPSILON)
+            {
+                assertTrue(hits.contains(entity));
+            } else if (near > far + SceneTracerTest.EPSILON)
+            {
+                assertFalse(hits.contains(entity));
+            }
+        }
+    }
+
+    private static void checkNearest(final SceneTracer tracer, final List<GameEntity> entities, final Random random)
+    {
+        final float x = random.nextFloat() * SceneTracerTest.SIZE;
+        final float y = random.nextFloat() * SceneTracerTest.SIZE;
+        final GameEntity[] found = new GameEntity[5];
+        final float[] distances = new float[found.length];
+        final int count = tracer.findNearest(null, x, y, Float.MAX_VALUE, EntityFilter.ALL, found, distances);
+        final List<Float> expected = new ArrayList<>();
+        for (final GameEntity entity : entities)
+        {
+            final float right = entity.getXPosition() + entity.getXExtends();
+            final float top = entity.getYPosition() + entity.getYExtends();
+            final float dx = Math.max(Math.max(entity.getXPosition() - x, x - right), 0);
+            final float dy = Math.max(Math.max(entity.getYPosition() - y, y - top), 0);
+            expected.add((float) Math.sqrt(dx * dx + dy * dy));
+        }
+        Collections.sort(expected);
+        assertEquals(found.length, count);
+        for (int i = 0; i < count; i++)
+        {
+            assertTrue(entities.contains(found[i]));
+            assertEquals(expected.get(i), distances[i], SceneTracerTest.EPSILON);
+        }
+    }
+
+    @Test
+    public void testNestedTraversals()
+    {
+        final Scene scene = new Scene();
+        SceneTracerTest.populate(scene, new Random(7));
+        scene.prepareUpdate(0);
+        final SceneTracer tracer = scene.getTracer();
+        final TraceResult result = new TraceResult();
+
+        visited = 0;
+        tracer.traverseScene(0, 0, 1, 2, entity ->
+        {
+            visited++;
+            tracer.rayTrace(entity, entity.getXPosition(), entity.getYPosition(), 1, 1, 200, result);
+        });
+        assertEquals(SceneTracerTest.ENTITIES, visited);
+
+        visited = 0;
+        final List<GameEntity> near = new ArrayList<>();
+        final SpatialSnapshot snapshot = tracer.acquireSnapshot();
+        try
+        {
+            snapshot.query(0, 0, SceneTracerTest.SIZE * 2, SceneTracerTest.SIZE * 2, EntityFilter.ALL,
+                    (entity, minX, minY, maxX, maxY) ->
+                    {
+                        visited++;
+                        tracer.findInRadius(entity, minX, minY, 50, EntityFilter.ALL, near);
+                        tracer.findNearest(entity, minX, minY, Float.MAX_VALUE, EntityFilter.ALL);
+                    });
+        } finally
+        {
+            snapshot.release();
+        }
+        assertEquals(SceneTracerTest.ENTITIES, visited);
+    }
+}
@@ -0,0 +1,215 @@
+package vine.window.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import vine.game.Transform;
+import vine.game.primitive.Primitive;
+import vine.math.geometry.shape.Aabb;
+import vine.math.geometry.shape.MutableAabb;
+import vine.math.vector.Vec2f;
+import vine.physics.CollisionResponse;
+import vine.physics.PhysicsBody;
+import vine.physics.PhysicsEngine;
+import vine.physics.SweepAndPrune;
+
+public class SweepAndPruneTest
+{
+    private static final int SIZE = 1000;
+
+    private int              nextId;
+
+    private final class Body implements PhysicsBody
+    {
+        private final int         id        = nextId++;
+        private final Transform   transform = new Transform();
+        private final MutableAabb box;
+
+        Body(final float width, final float height)
+        {
+            box = new MutableAabb(0, 0, width, height);
+        }
+
+        @Override
+        public void onPhysicsUpdate(final float delta)
+        {
+            //
+        }
+
+        @Override
+        public Transform getTransform()
+        {
+            return transform;
+        }
+
+        @Override
+        public Aabb getAabb()
+        {
+            return box;
+        }
+
+        @Override
+        public CollisionResponse getCollisionResponse()
+        {
+            return null;
+        }
+
+        @Override
+        public List<Primitive> getPrimitives()
+        {
+            return new ArrayList<>();
+        }
+
+        @Override
+        public Vec2f getVelocity()
+        {
+            return null;
+        }
+
+        @Override
+        public float getInvMass()
+        {
+            return 0;
+        }
+
+        @Override
+        public void setVelocity(final Vec2f velocity)
+        {
+            //
+        }
+
+        @Override
+        public Vec2f getPosition()
+        {
+            return null;
+        }
+
+        @Override
+        public void move(final Vec2f assi)
+        {
+            //
+        }
+
+        @Override
+        public boolean isKinematic()
+        {
+            return false;
+        }
+
+        @Override
+        public boolean isAsleep()
+        {
+            return false;
+        }
+
+        boolean overlaps(final Body other)
+        {
+            final float x = transform.getWorldX();
+            final float y = transform.getWorldY();
+            final float otherX = other.transform.getWorldX();
+            final float otherY = other.transform.getWorldY();
+            return x <= otherX + other.box.getWidth() && otherX <= x + box.getWidth()
+                    && y <= otherY + other.box.getHeight() && otherY <= y + box.getHeight();
+        }
+    }
+
+    private static long key(final PhysicsBody a, final PhysicsBody b)
+    {
+        final int first = ((Body) a).id;
+        final int second = ((Body) b).id;
+        return (long) Math.min(first, second) << 32 | Math.max(first, second);
+    }
+
+    private static Set<Long> keys(final List<PhysicsBody> a, final List<PhysicsBody> b)
+    {
+        final Set<Long> keys = new HashSet<>();
+        for (int i = 0; i < a.size(); i++)
+        {
+            keys.add(SweepAndPruneTest.key(a.get(i), b.get(i)));
+        }
+        return keys;
+    }
+
+    /**
+     * Adds, moves and removes random bodies and compares the pairs and the
+     * added and removed pairs of every step with a test of all pairs.
+     */
+    @Test
+    public void testPairsAfterChanges()
+    {
+        final Random random = new Random(3);
+        final PhysicsEngine engine = new PhysicsEngine();
+        final SweepAndPrune broadphase = engine.getBroadphase();
+        final List<Body> bodies = new ArrayList<>();
+        Set<Long> previous = new HashSet<>();
+        for (int step = 0; step < 200; step++)
+        {
+            if (step % 10 == 0)
+            {
+                for (int i = 0; i < 30; i++)
+                {
+                    final Body body = new Body(5 + random.nextInt(100), 5 + random.nextInt(100));
+                    body.transform.translate(random.nextInt(SweepAndPruneTest.SIZE),
+                            random.nextInt(SweepAndPruneTest.SIZE));
+                    bodies.add(body);
+                    engine.addPhysicBody(body);
+                }
+            }
+            if (step % 7 == 0)
+            {
+                for (int i = 0; i < 15 && !bodies.isEmpty(); i++)
+                {
+                    engine.removePhysicBody(bodies.remove(random.nextInt(bodies.size())));
+                }
+            }
+            for (final Body body : bodies)
+            {
+                if (random.nextInt(20) == 0)
+                {
+                    body.transform.translate(random.nextInt(SweepAndPruneTest.SIZE) - body.transform.getWorldX(),
+                            0);
+                } else
+                {
+                    body.transform.translate(random.nextInt(21) - 10, random.nextInt(21) - 10);
+                }
+            }
+            engine.detectCollisions();
+
+            final Set<Long> expected = new HashSet<>();
+            for (int i = 0; i < bodies.size(); i++)
+            {
+                for (int j = i + 1; j < bodies.size(); j++)
+                {
+                    if (bodies.get(i).overlaps(bodies.get(j)))
+                    {
+                        expected.add(SweepAndPruneTest.key(bodies.get(i), bodies.get(j)));
+                    }
+                }
+            }
+            final Set<Long> pairs = new HashSet<>();
+            for (int i = 0; i < broadphase.getPairCount(); i++)
+            {
+                pairs.add(SweepAndPruneTest.key(broadphase.getPairA(i), broadphase.getPairB(i)));
+            }
+            assertEquals(expected.size(), broadphase.getPairCount());
+            assertEquals(expected, pairs);
+
+            final Set<Long> added = new HashSet<>(expected);
+            added.removeAll(previous);
+            final Set<Long> removed = new HashSet<>(previous);
+            removed.removeAll(expected);
+            assertEquals(added, SweepAndPruneTest.keys(broadphase.getAddedPairsA(), broadphase.getAddedPairsB()));
+            assertEquals(removed,
+                    SweepAndPruneTest.keys(broadphase.getRemovedPairsA(), broadphase.getRemovedPairsB()));
+            previous = expected;
+        }
+        assertEquals(bodies.size(), broadphase.size());
+    }
+}
@@ -0,0 +1,41 @@
+package vine.window.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.junit.Test;
+
+import vine.util.time.TimerManager;
+
+public class TimerManagerTest
+{
+    private int repeated;
+    private int cancelled;
+    private int delayed;
+
+    @Test
+    public void testTimers()
+    {
+        final TimerManager timers = TimerManager.get();
+        timers.createTimer(0.01f, 3, () -> repeated++);
+        final long cancelledTimer = timers.createTimer(0.05f, TimerManager.INFINITE, () -> cancelled++);
+        timers.createTimer(70, 1, () -> delayed++);
+        timers.tick(0);
+        timers.cancelTimer(cancelledTimer);
+        for (int i = 0; i < 100; i++)
+        {
+            timers.tick(1);
+        }
+        assertEquals(3, repeated);
+        assertEquals(0, cancelled);
+        assertFalse(timers.isRunning(cancelledTimer));
+
+        for (int i = 100; i < 69999; i++)
+        {
+            timers.tick(1);
+        }
+        assertEquals(0, delayed);
+        timers.tick(1);
+        assertEquals(1, delayed);
+    }
+}